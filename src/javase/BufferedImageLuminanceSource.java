@@ -17,10 +17,16 @@ package javase;
 
 
 import main.java.com.google.zxing.LuminanceSource;
+import main.java.com.google.zxing.Palette;
+import main.java.com.google.zxing.common.ImageRowReader;
 
 import java.awt.Graphics2D;
 import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.SampleModel;
 import java.awt.image.WritableRaster;
 
 /**
@@ -37,6 +43,8 @@ public final class BufferedImageLuminanceSource extends LuminanceSource {
   private final BufferedImage image;
   private final int left;
   private final int top;
+  // The luminances backing image, row by row, or null if its raster has another layout
+  private final byte[] luminances;
 
   public BufferedImageLuminanceSource(BufferedImage image) {
     this(image, 0, 0, image.getWidth(), image.getHeight());
@@ -56,16 +64,14 @@ public final class BufferedImageLuminanceSource extends LuminanceSource {
 
       this.image = new BufferedImage(sourceWidth, sourceHeight, BufferedImage.TYPE_BYTE_GRAY);
 
-      WritableRaster raster = this.image.getRaster();
+      // Pixels are read straight from the raster for the common image types, and the
+      // luminances written straight into the array of the new image
+      ImageRowReader reader = new ImageRowReader(image);
+      byte[] output = ((DataBufferByte) this.image.getRaster().getDataBuffer()).getData();
       int[] buffer = new int[width];
       for (int y = top; y < top + height; y++) {
-    	//System.out.println("\npixel:");
-        image.getRGB(left, y, width, 1, buffer, 0, sourceWidth);
-        /*System.out.println("getRED = " + ((buffer[100] >> 16) & 0xFF));
-        System.out.println("getGREEN = " + ((buffer[100] >> 8) & 0xFF));
-        System.out.println("getBLUE = " + ((buffer[100] >> 0) & 0xFF));*/
-        for (int x = 0; x < width; x++) {
-          //System.out.print(buffer[x]+"-");
+        reader.readRow(left, y, width, buffer);
+        for (int x = 0, offset = y * sourceWidth + left; x < width; x++, offset++) {
           int pixel = buffer[x];
 
           // The color of fully-transparent pixels is irrelevant. They are often, technically, fully-transparent
@@ -76,18 +82,42 @@ public final class BufferedImageLuminanceSource extends LuminanceSource {
           }
 
           // .229R + 0.587G + 0.114B (YUV/YIQ for PAL and NTSC)
-          buffer[x] =
-              (306 * ((pixel >> 16) & 0xFF) +
-               601 * ((pixel >> 8) & 0xFF) +
-               117 * (pixel & 0xFF) +
-               0x200) >> 10;
+          output[offset] = (byte)
+              ((306 * ((pixel >> 16) & 0xFF) +
+                601 * ((pixel >> 8) & 0xFF) +
+                117 * (pixel & 0xFF) +
+                0x200) >> 10);
         }
-        raster.setPixels(left, y, width, 1, buffer);
       }
 
     }
     this.left = left;
     this.top = top;
+    this.luminances = backingArray(this.image);
+  }
+
+  /**
+   * @return the array backing a grey image if it holds exactly its pixels row by row, otherwise
+   *  null
+   */
+  private static byte[] backingArray(BufferedImage image) {
+    WritableRaster raster = image.getRaster();
+    DataBuffer buffer = raster.getDataBuffer();
+    SampleModel sampleModel = raster.getSampleModel();
+    if (buffer instanceof DataBufferByte
+        && buffer.getNumBanks() == 1
+        && buffer.getOffset() == 0
+        && raster.getSampleModelTranslateX() == 0
+        && raster.getSampleModelTranslateY() == 0
+        && sampleModel instanceof ComponentSampleModel) {
+      ComponentSampleModel componentModel = (ComponentSampleModel) sampleModel;
+      if (componentModel.getPixelStride() == 1
+          && componentModel.getScanlineStride() == image.getWidth()
+          && componentModel.getBandOffsets()[0] == 0) {
+        return ((DataBufferByte) buffer).getData();
+      }
+    }
+    return null;
   }
   
   public BufferedImage getImage(){
@@ -103,6 +133,10 @@ public final class BufferedImageLuminanceSource extends LuminanceSource {
     if (row == null || row.length < width) {
       row = new byte[width];
     }
+    if (luminances != null) {
+      System.arraycopy(luminances, (top + y) * image.getWidth() + left, row, 0, width);
+      return row;
+    }
     // The underlying raster of image consists of bytes with the luminance values
     image.getRaster().getDataElements(left, top + y, width, 1, row);
     return row;
@@ -113,6 +147,18 @@ public final class BufferedImageLuminanceSource extends LuminanceSource {
     int width = getWidth();
     int height = getHeight();
     int area = width * height;
+    if (luminances != null) {
+      int dataWidth = image.getWidth();
+      // If the caller asks for the entire underlying image, give them the array itself
+      if (width == dataWidth && height == image.getHeight()) {
+        return luminances;
+      }
+      byte[] matrix = new byte[area];
+      for (int y = 0, inputOffset = top * dataWidth + left; y < height; y++, inputOffset += dataWidth) {
+        System.arraycopy(luminances, inputOffset, matrix, y * width, width);
+      }
+      return matrix;
+    }
     byte[] matrix = new byte[area];
     // The underlying raster of image consists of area bytes with the luminance values
     image.getRaster().getDataElements(left, top, width, height, matrix);
@@ -132,7 +178,7 @@ public final class BufferedImageLuminanceSource extends LuminanceSource {
   }
   
   @Override
-  public int[][] getPalette() {
+  public Palette getPalette() {
 	  //TODO
 	  return null;
   }
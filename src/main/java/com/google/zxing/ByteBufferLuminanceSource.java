@@ -0,0 +1,162 @@
+package main.java.com.google.zxing;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>A luminance source around an 8-bit plane held in a {@link ByteBuffer}, such as a direct buffer
+ * filled by a native capture library, a {@code FileChannel} read or shared memory, with the option
+ * to crop to a rectangle within the full data. Frames are read in place, so they never have to be
+ * copied onto the heap: the binarizers only ask for one row at a time.</p>
+ *
+ * <p>Rows may be padded ({@code rowStride} larger than the width) and samples may be interleaved
+ * with other channels ({@code pixelStride} larger than 1), like the planes of an
+ * {@code android.media.Image}. The buffer is never modified, and its position and limit are
+ * ignored: the plane starts at index 0.</p>
+ *
+ * @author Francesco Benedetto
+ *
+ */
+public final class ByteBufferLuminanceSource extends LuminanceSource {
+
+  private final ByteBuffer plane;
+  private final int rowStride;
+  private final int pixelStride;
+  private final int dataWidth;
+  private final int dataHeight;
+  private final int left;
+  private final int top;
+
+  /**
+   * @param plane the luminances, row by row without padding
+   * @param dataWidth width of the plane
+   * @param dataHeight height of the plane
+   */
+  public ByteBufferLuminanceSource(ByteBuffer plane, int dataWidth, int dataHeight) {
+    this(plane, dataWidth, 1, dataWidth, dataHeight, 0, 0, dataWidth, dataHeight);
+  }
+
+  /**
+   * @param plane the luminances, starting at index 0
+   * @param rowStride distance in bytes between the first samples of two rows
+   * @param pixelStride distance in bytes between two samples of a row
+   * @param dataWidth width of the plane
+   * @param dataHeight height of the plane
+   * @param left left of the crop rectangle
+   * @param top top of the crop rectangle
+   * @param width width of the crop rectangle
+   * @param height height of the crop rectangle
+   */
+  public ByteBufferLuminanceSource(ByteBuffer plane,
+                                   int rowStride,
+                                   int pixelStride,
+                                   int dataWidth,
+                                   int dataHeight,
+                                   int left,
+                                   int top,
+                                   int width,
+                                   int height) {
+    super(width, height);
+
+    if (left + width > dataWidth || top + height > dataHeight) {
+      throw new IllegalArgumentException("Crop rectangle does not fit within image data.");
+    }
+    if (pixelStride < 1 || rowStride < (dataWidth - 1) * pixelStride + 1) {
+      throw new IllegalArgumentException("Strides do not fit a row of " + dataWidth + " pixels");
+    }
+    if (plane.capacity() < (dataHeight - 1) * rowStride + (dataWidth - 1) * pixelStride + 1) {
+      throw new IllegalArgumentException("Buffer is too short for " + dataWidth + 'x' + dataHeight);
+    }
+
+    // A view of our own, whose position and limit nobody else moves
+    this.plane = plane.duplicate();
+    this.plane.clear();
+    this.rowStride = rowStride;
+    this.pixelStride = pixelStride;
+    this.dataWidth = dataWidth;
+    this.dataHeight = dataHeight;
+    this.left = left;
+    this.top = top;
+  }
+
+  @Override
+  public byte[] getRow(int y, byte[] row) {
+    if (y < 0 || y >= getHeight()) {
+      throw new IllegalArgumentException("Requested row is outside the image: " + y);
+    }
+    int width = getWidth();
+    if (row == null || row.length < width) {
+      row = new byte[width];
+    }
+    readRow(plane, (y + top) * rowStride + left * pixelStride, pixelStride, row, 0, width);
+    return row;
+  }
+
+  /**
+   * Copies the crop rectangle onto the heap. The binarizers of this project read rows instead.
+   */
+  @Override
+  public byte[] getMatrix() {
+    int width = getWidth();
+    int height = getHeight();
+
+    // If the caller asks for the entire plane of a heap buffer without padding, give them the
+    // array itself. The docs specifically warn that result.length must be ignored.
+    if (width == dataWidth && height == dataHeight && pixelStride == 1 && rowStride == dataWidth
+        && plane.hasArray() && plane.arrayOffset() == 0) {
+      return plane.array();
+    }
+
+    byte[] matrix = new byte[width * height];
+    for (int y = 0, index = top * rowStride + left * pixelStride; y < height; y++, index += rowStride) {
+      readRow(plane, index, pixelStride, matrix, y * width, width);
+    }
+    return matrix;
+  }
+
+  /**
+   * Reads {@code length} samples starting at {@code index}, without touching the position of the
+   * buffer, so that several threads can read the same buffer.
+   */
+  static void readRow(ByteBuffer buffer, int index, int pixelStride, byte[] output, int offset, int length) {
+    if (pixelStride == 1) {
+      ByteBuffer view = buffer.duplicate();
+      view.position(index);
+      view.get(output, offset, length);
+    } else {
+      for (int i = 0; i < length; i++, index += pixelStride) {
+        output[offset + i] = buffer.get(index);
+      }
+    }
+  }
+
+  @Override
+  public byte[][] getByteMatrix() {
+    // Luminance only
+    return null;
+  }
+
+  @Override
+  public Palette getPalette() {
+    // Luminance only
+    return null;
+  }
+
+  @Override
+  public boolean isCropSupported() {
+    return true;
+  }
+
+  @Override
+  public LuminanceSource crop(int left, int top, int width, int height) {
+    return new ByteBufferLuminanceSource(plane,
+                                         rowStride,
+                                         pixelStride,
+                                         dataWidth,
+                                         dataHeight,
+                                         this.left + left,
+                                         this.top + top,
+                                         width,
+                                         height);
+  }
+
+}
@@ -0,0 +1,220 @@
+package main.java.com.google.zxing;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>A colour source around interleaved 8-bit red, green and blue samples held in a
+ * {@link ByteBuffer}, such as a window of a memory-mapped PPM file, with the option to crop to a
+ * rectangle within the full data. The samples are read in place, a row at a time by
+ * {@link #getRGBRow(int, byte[], byte[], byte[])}: only the colour planes handed to the eager
+ * binarizers by {@link #getByteMatrix()} are copied onto the heap, and they cover the crop
+ * rectangle only.</p>
+ *
+ * <p>Rows may be padded ({@code rowStride} larger than {@code pixelStride} times the width), and
+ * pixels may carry more samples after the blue one ({@code pixelStride} 4 for RGBX). The buffer is
+ * never modified, and its position and limit are ignored: the data starts at index 0. The palette
+ * is estimated once, over the crop rectangle given to the constructor.</p>
+ *
+ * @author Francesco Benedetto
+ *
+ */
+public final class ByteBufferRGBSource extends LuminanceSource {
+
+  private final ByteBuffer pixels;
+  private final int rowStride;
+  private final int pixelStride;
+  private final int dataWidth;
+  private final int dataHeight;
+  private final int left;
+  private final int top;
+  private final Palette palette;
+
+  /**
+   * @param pixels red, green and blue of each pixel, starting at index 0
+   * @param rowStride distance in bytes between the first pixels of two rows
+   * @param pixelStride distance in bytes between two pixels of a row, at least 3
+   * @param dataWidth width of the image
+   * @param dataHeight height of the image
+   * @param left left of the crop rectangle
+   * @param top top of the crop rectangle
+   * @param width width of the crop rectangle
+   * @param height height of the crop rectangle
+   */
+  public ByteBufferRGBSource(ByteBuffer pixels,
+                             int rowStride,
+                             int pixelStride,
+                             int dataWidth,
+                             int dataHeight,
+                             int left,
+                             int top,
+                             int width,
+                             int height) {
+    this(pixels, rowStride, pixelStride, dataWidth, dataHeight, left, top, width, height, null);
+  }
+
+  private ByteBufferRGBSource(ByteBuffer pixels,
+                              int rowStride,
+                              int pixelStride,
+                              int dataWidth,
+                              int dataHeight,
+                              int left,
+                              int top,
+                              int width,
+                              int height,
+                              Palette palette) {
+    super(width, height);
+
+    if (left + width > dataWidth || top + height > dataHeight) {
+      throw new IllegalArgumentException("Crop rectangle does not fit within image data.");
+    }
+    if (pixelStride < 3 || rowStride < dataWidth * pixelStride) {
+      throw new IllegalArgumentException("Strides do not fit a row of " + dataWidth + " pixels");
+    }
+    if (pixels.capacity() < (dataHeight - 1) * rowStride + dataWidth * pixelStride) {
+      throw new IllegalArgumentException("Buffer is too short for " + dataWidth + 'x' + dataHeight);
+    }
+
+    // A view of our own, whose position and limit nobody else moves
+    this.pixels = pixels.duplicate();
+    this.pixels.clear();
+    this.rowStride = rowStride;
+    this.pixelStride = pixelStride;
+    this.dataWidth = dataWidth;
+    this.dataHeight = dataHeight;
+    this.left = left;
+    this.top = top;
+    this.palette = palette != null ? palette : estimatePalette();
+  }
+
+  /**
+   * Copies the interleaved samples of one row of the crop rectangle, without touching the position
+   * of the buffer.
+   *
+   * @param samples at least getWidth() * pixelStride long
+   */
+  private void readSamples(int y, byte[] samples) {
+    ByteBuffer view = pixels.duplicate();
+    view.position((y + top) * rowStride + left * pixelStride);
+    view.get(samples, 0, getWidth() * pixelStride);
+  }
+
+  /**
+   * @return the luminance of one row, computed like
+   *  {@code javase.BufferedImageLuminanceSource} does
+   */
+  @Override
+  public byte[] getRow(int y, byte[] row) {
+    if (y < 0 || y >= getHeight()) {
+      throw new IllegalArgumentException("Requested row is outside the image: " + y);
+    }
+    int width = getWidth();
+    if (row == null || row.length < width) {
+      row = new byte[width];
+    }
+    // Read in place with absolute gets, so that the row costs no scratch on the heap
+    ByteBuffer pixels = this.pixels;
+    for (int x = 0, i = (y + top) * rowStride + left * pixelStride; x < width; x++, i += pixelStride) {
+      // .229R + 0.587G + 0.114B (YUV/YIQ for PAL and NTSC)
+      row[x] = (byte) ((306 * (pixels.get(i) & 0xFF) +
+                        601 * (pixels.get(i + 1) & 0xFF) +
+                        117 * (pixels.get(i + 2) & 0xFF) +
+                        0x200) >> 10);
+    }
+    return row;
+  }
+
+  /**
+   * Fetches the red, green and blue samples of one row, read in place.
+   *
+   * @param y The row to fetch, which must be in [0,getHeight())
+   * @param reds receives the red sample of each pixel; at least getWidth() long
+   * @param greens receives the green sample of each pixel; at least getWidth() long
+   * @param blues receives the blue sample of each pixel; at least getWidth() long
+   */
+  public void getRGBRow(int y, byte[] reds, byte[] greens, byte[] blues) {
+    if (y < 0 || y >= getHeight()) {
+      throw new IllegalArgumentException("Requested row is outside the image: " + y);
+    }
+    int width = getWidth();
+    ByteBuffer pixels = this.pixels;
+    for (int x = 0, i = (y + top) * rowStride + left * pixelStride; x < width; x++, i += pixelStride) {
+      reds[x] = pixels.get(i);
+      greens[x] = pixels.get(i + 1);
+      blues[x] = pixels.get(i + 2);
+    }
+  }
+
+  @Override
+  public byte[] getMatrix() {
+    int width = getWidth();
+    int height = getHeight();
+    byte[] matrix = new byte[width * height];
+    byte[] row = new byte[width];
+    for (int y = 0; y < height; y++) {
+      row = getRow(y, row);
+      System.arraycopy(row, 0, matrix, y * width, width);
+    }
+    return matrix;
+  }
+
+  /**
+   * @return new red, green and blue planes of the crop rectangle
+   */
+  @Override
+  public byte[][] getByteMatrix() {
+    int width = getWidth();
+    int height = getHeight();
+    byte[] reds = new byte[width * height];
+    byte[] greens = new byte[width * height];
+    byte[] blues = new byte[width * height];
+    byte[] samples = new byte[width * pixelStride];
+    for (int y = 0, offset = 0; y < height; y++) {
+      readSamples(y, samples);
+      for (int i = 0; i < samples.length; i += pixelStride, offset++) {
+        reds[offset] = samples[i];
+        greens[offset] = samples[i + 1];
+        blues[offset] = samples[i + 2];
+      }
+    }
+    return new byte[][] {reds, greens, blues};
+  }
+
+  @Override
+  public Palette getPalette() {
+    return palette;
+  }
+
+  private Palette estimatePalette() {
+    int width = getWidth();
+    int height = getHeight();
+    Palette.Estimator estimator = new Palette.Estimator();
+    byte[] samples = new byte[width * pixelStride];
+    for (int y = 0; y < height; y++) {
+      readSamples(y, samples);
+      for (int i = 0; i < samples.length; i += pixelStride) {
+        estimator.add(((samples[i] & 0xFF) << 16) | ((samples[i + 1] & 0xFF) << 8) | (samples[i + 2] & 0xFF));
+      }
+    }
+    return estimator.build();
+  }
+
+  @Override
+  public boolean isCropSupported() {
+    return true;
+  }
+
+  @Override
+  public LuminanceSource crop(int left, int top, int width, int height) {
+    return new ByteBufferRGBSource(pixels,
+                                   rowStride,
+                                   pixelStride,
+                                   dataWidth,
+                                   dataHeight,
+                                   this.left + left,
+                                   this.top + top,
+                                   width,
+                                   height,
+                                   palette);
+  }
+
+}
@@ -83,4 +83,11 @@ public enum EncodeHintType {
    *   a positive number (1, 2, .. 32) specifies a normaol (non-compact) Aztec code
    */
    AZTEC_LAYERS,
+
+  /**
+   * Specifies an {@link java.util.concurrent.Executor} on which the HCC QR Code encoder scores the
+   * eight mask patterns concurrently (type {@link java.util.concurrent.Executor}). If absent, the
+   * patterns are scored one after another on the calling thread.
+   */
+  MASK_SELECTION_EXECUTOR,
 }
@@ -59,7 +59,7 @@ public final class InvertedLuminanceSource extends LuminanceSource {
   }
   
   @Override
-  public int[][] getPalette() {
+  public Palette getPalette() {
 	  //TODO
 	  return null;
   }
@@ -156,6 +156,11 @@ public abstract class LuminanceSource {
     return result.toString();
   }
   
-  public abstract int[][] getPalette();
+  /**
+   * @return the red, green, black and white actually found in the image, or null if this source
+   *  does not estimate them. Each source computes its own palette, so decoding several images
+   *  concurrently is safe.
+   */
+  public abstract Palette getPalette();
 
 }
@@ -6,13 +6,25 @@ import main.java.com.google.zxing.common.BitVectorMatrix;
 public final class MyBinaryBitmap {
 	
 	  private final SimpleBinarizer binarizer;
+	  private final boolean lazy;
 	  private BitVectorMatrix matrix;
 
 	  public MyBinaryBitmap(SimpleBinarizer binarizer) {
+	    this(binarizer, false);
+	  }
+
+	  /**
+	   * @param binarizer binarizer of the image
+	   * @param lazy whether {@link #getBlackMatrix()} may binarize only the parts of the image that
+	   *  are searched, see {@link SimpleBinarizer#getLazyBlackMatrix()}. Worth it when codes cover a
+	   *  small part of large frames
+	   */
+	  public MyBinaryBitmap(SimpleBinarizer binarizer, boolean lazy) {
 	    if (binarizer == null) {
 	      throw new IllegalArgumentException("Binarizer must be non-null.");
 	    }
 	    this.binarizer = binarizer;
+	    this.lazy = lazy;
 	  }
 
 	  /**
@@ -60,7 +72,7 @@ public final class MyBinaryBitmap {
 	    //    1D Reader finds a barcode before the 2D Readers run.
 	    // 2. This work will only be done once even if the caller installs multiple 2D Readers.
 	    if (matrix == null) {
-	      matrix = binarizer.getBlackMatrix();
+	      matrix = lazy ? binarizer.getLazyBlackMatrix() : binarizer.getBlackMatrix();
 	    }
 	    return matrix;
 	  }
@@ -84,7 +96,7 @@ public final class MyBinaryBitmap {
 	   */
 	  public MyBinaryBitmap crop(int left, int top, int width, int height) {
 	    LuminanceSource newSource = binarizer.getLuminanceSource().crop(left, top, width, height);
-	    return new MyBinaryBitmap(binarizer.createBinarizer(newSource));
+	    return new MyBinaryBitmap(binarizer.createBinarizer(newSource), lazy);
 	  }
 
 	  /**
@@ -102,7 +114,7 @@ public final class MyBinaryBitmap {
 	   */
 	  public MyBinaryBitmap rotateCounterClockwise() {
 	    LuminanceSource newSource = binarizer.getLuminanceSource().rotateCounterClockwise();
-	    return new MyBinaryBitmap(binarizer.createBinarizer(newSource));
+	    return new MyBinaryBitmap(binarizer.createBinarizer(newSource), lazy);
 	  }
 
 	  /**
@@ -113,7 +125,7 @@ public final class MyBinaryBitmap {
 	   */
 	  public MyBinaryBitmap rotateCounterClockwise45() {
 	    LuminanceSource newSource = binarizer.getLuminanceSource().rotateCounterClockwise45();
-	    return new MyBinaryBitmap(binarizer.createBinarizer(newSource));
+	    return new MyBinaryBitmap(binarizer.createBinarizer(newSource), lazy);
 	  }
 
 	  @Override
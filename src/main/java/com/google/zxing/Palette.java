@@ -0,0 +1,174 @@
+package main.java.com.google.zxing;
+
+/**
+ * <p>The four colours actually printed in an HCC QR Code image: for each of red, green, black
+ * and white it holds the pixel of the image which is closest to the ideal colour. Colours are
+ * packed as 0xRRGGBB.</p>
+ *
+ * <p>Instances are immutable, so they can be shared between threads. Use {@link Estimator} to
+ * build one from the pixels of an image.</p>
+ *
+ * @author Francesco Benedetto
+ *
+ */
+public final class Palette {
+
+  // indices of the colours in toArray()
+  public static final int RED = 0;
+  public static final int GREEN = 1;
+  public static final int BLACK = 2;
+  public static final int WHITE = 3;
+
+  /** The ideal colours, used when there is no pixel to estimate the palette from. */
+  public static final Palette IDEAL = new Palette(0xFF0000, 0x00FF00, 0x000000, 0xFFFFFF);
+
+  private final int red;
+  private final int green;
+  private final int black;
+  private final int white;
+
+  public Palette(int red, int green, int black, int white) {
+    this.red = red & 0xFFFFFF;
+    this.green = green & 0xFFFFFF;
+    this.black = black & 0xFFFFFF;
+    this.white = white & 0xFFFFFF;
+  }
+
+  public int getRed() {
+    return red;
+  }
+
+  public int getGreen() {
+    return green;
+  }
+
+  public int getBlack() {
+    return black;
+  }
+
+  public int getWhite() {
+    return white;
+  }
+
+  /**
+   * @param index one of {@link #RED}, {@link #GREEN}, {@link #BLACK} or {@link #WHITE}
+   * @return the colour, as 0xRRGGBB
+   */
+  public int getColor(int index) {
+    switch (index) {
+      case RED:
+        return red;
+      case GREEN:
+        return green;
+      case BLACK:
+        return black;
+      case WHITE:
+        return white;
+      default:
+        throw new IllegalArgumentException("Invalid colour index: " + index);
+    }
+  }
+
+  /**
+   * @return a new array of the four colours (red, green, black, white), each as {r, g, b}
+   */
+  public int[][] toArray() {
+    int[][] result = new int[4][];
+    for (int i = 0; i < 4; i++) {
+      int color = getColor(i);
+      result[i] = new int[] {(color >> 16) & 0xFF, (color >> 8) & 0xFF, color & 0xFF};
+    }
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof Palette)) {
+      return false;
+    }
+    Palette other = (Palette) o;
+    return red == other.red && green == other.green && black == other.black && white == other.white;
+  }
+
+  @Override
+  public int hashCode() {
+    return ((red * 31 + green) * 31 + black) * 31 + white;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("red=#%06X green=#%06X black=#%06X white=#%06X", red, green, black, white);
+  }
+
+  /**
+   * <p>Estimates a {@link Palette} in a single pass over the pixels of an image, keeping for each
+   * colour the first pixel with the smallest squared euclidean distance from the ideal one.
+   * Nothing is allocated per pixel. An instance must not be shared between threads.</p>
+   */
+  public static final class Estimator {
+
+    private int red = IDEAL.red;
+    private int green = IDEAL.green;
+    private int black = IDEAL.black;
+    private int white = IDEAL.white;
+    private int minDistFromRed = Integer.MAX_VALUE;
+    private int minDistFromGreen = Integer.MAX_VALUE;
+    private int minDistFromBlack = Integer.MAX_VALUE;
+    private int minDistFromWhite = Integer.MAX_VALUE;
+
+    /**
+     * @param pixel a pixel as 0x(AA)RRGGBB; the alpha channel is ignored
+     */
+    public void add(int pixel) {
+      int r = (pixel >> 16) & 0xFF;
+      int g = (pixel >> 8) & 0xFF;
+      int b = pixel & 0xFF;
+      int rr = r * r;
+      int gg = g * g;
+      int bb = b * b;
+      int notR = (255 - r) * (255 - r);
+      int notG = (255 - g) * (255 - g);
+
+      int dist = notR + gg + bb;
+      if (minDistFromRed > dist) {
+        minDistFromRed = dist;
+        red = pixel;
+      }
+      dist = rr + notG + bb;
+      if (minDistFromGreen > dist) {
+        minDistFromGreen = dist;
+        green = pixel;
+      }
+      dist = rr + gg + bb;
+      if (minDistFromBlack > dist) {
+        minDistFromBlack = dist;
+        black = pixel;
+      }
+      dist = notR + notG + (255 - b) * (255 - b);
+      if (minDistFromWhite > dist) {
+        minDistFromWhite = dist;
+        white = pixel;
+      }
+    }
+
+    /**
+     * @param pixels pixels as 0x(AA)RRGGBB
+     * @param offset index of the first pixel to add
+     * @param length number of pixels to add
+     */
+    public void add(int[] pixels, int offset, int length) {
+      for (int i = offset; i < offset + length; i++) {
+        add(pixels[i]);
+      }
+    }
+
+    /**
+     * @return the palette of the pixels added so far; {@link #IDEAL} colours for the ones which
+     * could not be estimated yet
+     */
+    public Palette build() {
+      return new Palette(red, green, black, white);
+    }
+  }
+
+}
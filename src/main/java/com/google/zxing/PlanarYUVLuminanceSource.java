@@ -112,7 +112,7 @@ public final class PlanarYUVLuminanceSource extends LuminanceSource {
   }
   
   @Override
-  public int[][] getPalette() {
+  public Palette getPalette() {
 	  //TODO
 	  return null;
   }
@@ -130,7 +130,7 @@ public final class RGBLuminanceSource extends LuminanceSource {
   }
   
   @Override
-  public int[][] getPalette() {
+  public Palette getPalette() {
 	//TODO
   	return null;
   }
@@ -8,14 +8,7 @@ public final class RGBSource extends LuminanceSource {
 	private final int left;
 	private final int top;
 	
-	//rbg components
-    private static final int[] red = {255, 0, 0};
-    private static final int[] green = {0, 255, 0};
-	private static final int[] black = {0, 0, 0};
-	private static final int[] white = {255, 255, 255};
-		
-	//palette
-	private static int[][] palette = new int[4][3];
+	private final Palette palette;
 	
 	public RGBSource(int width, int height, int[] pixels) {
 	    super(width, height);
@@ -29,93 +22,22 @@ public final class RGBSource extends LuminanceSource {
 	    // up front, which is the same as the Y channel of the YUVLuminanceSource in the real app.
 	    rgbValues = new byte[3][width * height];
 	    
-	    double[] distances = new double[4];
-	    double minDistFromRed = Double.MAX_VALUE;
-	    double minDistFromGreen = Double.MAX_VALUE;
-	    double minDistFromBlack = Double.MAX_VALUE;
-	    double minDistFromWhite = Double.MAX_VALUE;
-	    
+	    Palette.Estimator estimator = new Palette.Estimator();
 	    for (int y = 0; y < height; y++) {
 	      int offset = y * width;
 	      for (int x = 0; x < width; x++) {
 	        int pixel = pixels[offset + x];
-	        int r = (pixel >> 16) & 0xff;
-	        int g = (pixel >> 8) & 0xff;
-	        int b = pixel & 0xff;
-	        
-	        int[] a = new int[3];
-	        a[0] = r;
-	        a[1] = g;
-	        a[2] = b;
-	        
-	        distances = euclideanDistance(a);
-	        
-	                	
-        	if (minDistFromRed > distances[0]) {
-        		minDistFromRed = distances[0];
-        		palette[0] = a;
-        	}
-        	if (minDistFromGreen > distances[1]) {
-        		minDistFromGreen = distances[1];
-        		palette[1] = a;
-        	}
-        	if (minDistFromBlack > distances[2]) {
-        		minDistFromBlack = distances[2];
-        		palette[2] = a;
-        	}
-        	if (minDistFromWhite > distances[3]) {
-        		minDistFromWhite = distances[3];
-        		palette[3] = a;
-        	}
-	        
-	        rgbValues[0][offset + x] = (byte) r;
-	        rgbValues[1][offset + x] = (byte) g;
-	        rgbValues[2][offset + x] = (byte) b;
+	        estimator.add(pixel);
+	        rgbValues[0][offset + x] = (byte) (pixel >> 16);
+	        rgbValues[1][offset + x] = (byte) (pixel >> 8);
+	        rgbValues[2][offset + x] = (byte) pixel;
 	      }
 	    }
+	    palette = estimator.build();
 	}
 	
-	public double[] euclideanDistance (int[] rgbValues) {
-    	double[] dist = new double[4];
-    	
-    	double a1 = (rgbValues[0]-red[0]);
-    	double a2 = (rgbValues[1]-red[1]);
-    	double a3 = (rgbValues[2]-red[2]);
-    	
-    	double redSum = a1*a1 + a2*a2 + a3*a3;
-		//double distFromRed = Math.sqrt(redSum);
-		dist[0] = redSum;
-		
-		double b1 = (rgbValues[0]-green[0]);
-    	double b2 = (rgbValues[1]-green[1]);
-    	double b3 = (rgbValues[2]-green[2]);
-    	
-		
-		double greenSum = b1*b1 + b2*b2 +b3*b3;
-		//double distFromGreen = Math.sqrt(greenSum);
-		dist[1] = greenSum;
-		
-		double c1 = (rgbValues[0]-black[0]);
-    	double c2 = (rgbValues[1]-black[1]);
-    	double c3 = (rgbValues[2]-black[2]);
-		
-		double blackSum = c1*c1 + c2*c2 + c3*c3;
-		//double distFromBlack = Math.sqrt(blackSum);
-		dist[2] = blackSum;
-		
-		double d1 = (rgbValues[0]-white[0]);
-    	double d2 = (rgbValues[1]-white[1]);
-    	double d3 = (rgbValues[2]-white[2]);
-		
-		double whiteSum = d1*d1 + d2*d2 + d3*d3;
-		//double distFromWhite = Math.sqrt(whiteSum);
-		dist[3] = whiteSum;
-		
-		return dist;
-    }
-	
 	@Override
-	public int[][] getPalette() {
+	public Palette getPalette() {
     	return palette;
     }
 	
@@ -125,7 +47,8 @@ public final class RGBSource extends LuminanceSource {
             int left,
             int top,
             int width,
-            int height) {
+            int height,
+            Palette palette) {
 		super(width, height);
 		if (left + width > dataWidth || top + height > dataHeight) {
 			throw new IllegalArgumentException("Crop rectangle does not fit within image data.");
@@ -135,6 +58,7 @@ public final class RGBSource extends LuminanceSource {
 		this.dataHeight = dataHeight;
 		this.left = left;
 		this.top = top;
+		this.palette = palette;
     }
 	
 	@Override
@@ -201,7 +125,8 @@ public final class RGBSource extends LuminanceSource {
 	                         this.left + left,
 	                         this.top + top,
 	                         width,
-	                         height);
+	                         height,
+	                         palette);
 	  }
 
 }
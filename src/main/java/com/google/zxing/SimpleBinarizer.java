@@ -2,6 +2,7 @@ package main.java.com.google.zxing;
 
 import main.java.com.google.zxing.common.BitArray;
 import main.java.com.google.zxing.common.BitVectorMatrix;
+import main.java.com.google.zxing.common.LazyBitVectorMatrix;
 
 public abstract class SimpleBinarizer {
 	
@@ -42,6 +43,18 @@ public abstract class SimpleBinarizer {
 	   */
 	  public abstract BitVectorMatrix getBlackMatrix() throws NotFoundException;
 
+	  /**
+	   * Like {@link #getBlackMatrix()}, but may return a {@link LazyBitVectorMatrix}, which only
+	   * binarizes the parts of the image that are read. The default implementation binarizes the
+	   * whole image up front.
+	   *
+	   * @return The 2D array of bits for the image, binarized on demand or not.
+	   * @throws NotFoundException if image can't be binarized to make a matrix
+	   */
+	  public BitVectorMatrix getLazyBlackMatrix() throws NotFoundException {
+	    return getBlackMatrix();
+	  }
+
 	  /**
 	   * Creates a new object with the same type as this Binarizer implementation, but with pristine
 	   * state. This is needed because Binarizer implementations may be stateful, e.g. keeping a cache
@@ -0,0 +1,342 @@
+package main.java.com.google.zxing;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>A colour source around a YUV 4:2:0 frame from a camera, in NV21, NV12 or I420 layout, with
+ * the option to crop to a rectangle within the full data. Like {@link PlanarYUVLuminanceSource},
+ * the luminance is the Y plane itself; the colours come from the Y plane and the chroma samples
+ * shared by each 2x2 block of pixels, so the frame never has to be converted to RGB first.</p>
+ *
+ * <p>The planes may also be given as {@link ByteBuffer}s with their own row and pixel strides,
+ * like those of an {@code android.media.Image} in {@code YUV_420_888}: direct buffers are read in
+ * place and never copied onto the heap.</p>
+ *
+ * <p>{@link main.java.com.google.zxing.common.RGBLookupBinarizer} classifies the pixels straight
+ * from Y, U and V. {@link #getByteMatrix()} converts to RGB planes for the other colour binarizers.
+ * Cropping shares the frame without copying it.</p>
+ *
+ * @author Francesco Benedetto
+ *
+ */
+public final class YUVColorSource extends LuminanceSource {
+
+  /** Layout of the chroma samples, which follow the Y plane. */
+  public enum Format {
+    /** Interleaved V and U samples (Android camera default). */
+    NV21,
+    /** Interleaved U and V samples. */
+    NV12,
+    /** A plane of U samples, then a plane of V samples. */
+    I420
+  }
+
+  // Pixels sampled to estimate the palette: one per chroma sample
+  private static final int PALETTE_SAMPLE_STEP = 2;
+
+  private final ByteBuffer yPlane;
+  private final int yRowStride;
+  private final ByteBuffer uPlane;
+  private final ByteBuffer vPlane;
+  private final int chromaRowStride;
+  private final int chromaPixelStride;
+  private final int dataWidth;
+  private final int dataHeight;
+  private final int left;
+  private final int top;
+  private final Palette palette;
+
+  /**
+   * @param yuvData the frame, starting with the Y plane
+   * @param format layout of the chroma samples
+   * @param dataWidth width of the frame
+   * @param dataHeight height of the frame
+   * @param left left of the crop rectangle
+   * @param top top of the crop rectangle
+   * @param width width of the crop rectangle
+   * @param height height of the crop rectangle
+   */
+  public YUVColorSource(byte[] yuvData,
+                        Format format,
+                        int dataWidth,
+                        int dataHeight,
+                        int left,
+                        int top,
+                        int width,
+                        int height) {
+    this(ByteBuffer.wrap(yuvData),
+         dataWidth,
+         chromaPlane(yuvData, format, dataWidth, dataHeight, true),
+         chromaPlane(yuvData, format, dataWidth, dataHeight, false),
+         format == Format.I420 ? (dataWidth + 1) / 2 : 2 * ((dataWidth + 1) / 2),
+         format == Format.I420 ? 1 : 2,
+         dataWidth,
+         dataHeight,
+         left,
+         top,
+         width,
+         height,
+         null);
+  }
+
+  /**
+   * @param yPlane the Y samples, starting at index 0, one byte per pixel
+   * @param yRowStride distance in bytes between the first samples of two rows of yPlane
+   * @param uPlane the U samples, starting at index 0, one per 2x2 block of pixels
+   * @param vPlane the V samples, starting at index 0, one per 2x2 block of pixels
+   * @param chromaRowStride distance in bytes between the first samples of two rows of uPlane and vPlane
+   * @param chromaPixelStride distance in bytes between two samples of a row of uPlane and vPlane
+   * @param dataWidth width of the frame
+   * @param dataHeight height of the frame
+   * @param left left of the crop rectangle
+   * @param top top of the crop rectangle
+   * @param width width of the crop rectangle
+   * @param height height of the crop rectangle
+   */
+  public YUVColorSource(ByteBuffer yPlane,
+                        int yRowStride,
+                        ByteBuffer uPlane,
+                        ByteBuffer vPlane,
+                        int chromaRowStride,
+                        int chromaPixelStride,
+                        int dataWidth,
+                        int dataHeight,
+                        int left,
+                        int top,
+                        int width,
+                        int height) {
+    this(yPlane, yRowStride, uPlane, vPlane, chromaRowStride, chromaPixelStride,
+         dataWidth, dataHeight, left, top, width, height, null);
+  }
+
+  private YUVColorSource(ByteBuffer yPlane,
+                         int yRowStride,
+                         ByteBuffer uPlane,
+                         ByteBuffer vPlane,
+                         int chromaRowStride,
+                         int chromaPixelStride,
+                         int dataWidth,
+                         int dataHeight,
+                         int left,
+                         int top,
+                         int width,
+                         int height,
+                         Palette palette) {
+    super(width, height);
+
+    if (left + width > dataWidth || top + height > dataHeight) {
+      throw new IllegalArgumentException("Crop rectangle does not fit within image data.");
+    }
+    int chromaWidth = (dataWidth + 1) / 2;
+    int chromaHeight = (dataHeight + 1) / 2;
+    if (yRowStride < dataWidth
+        || chromaPixelStride < 1
+        || chromaRowStride < (chromaWidth - 1) * chromaPixelStride + 1) {
+      throw new IllegalArgumentException("Strides do not fit a row of " + dataWidth + " pixels");
+    }
+    int chromaSize = (chromaHeight - 1) * chromaRowStride + (chromaWidth - 1) * chromaPixelStride + 1;
+    if (yPlane.capacity() < (dataHeight - 1) * yRowStride + dataWidth
+        || uPlane.capacity() < chromaSize
+        || vPlane.capacity() < chromaSize) {
+      throw new IllegalArgumentException("Planes are too short for a frame of "
+                                         + dataWidth + 'x' + dataHeight);
+    }
+
+    // Views of our own, whose positions and limits nobody else moves
+    this.yPlane = yPlane.duplicate();
+    this.yPlane.clear();
+    this.uPlane = uPlane.duplicate();
+    this.uPlane.clear();
+    this.vPlane = vPlane.duplicate();
+    this.vPlane.clear();
+    this.yRowStride = yRowStride;
+    this.chromaRowStride = chromaRowStride;
+    this.chromaPixelStride = chromaPixelStride;
+    this.dataWidth = dataWidth;
+    this.dataHeight = dataHeight;
+    this.left = left;
+    this.top = top;
+    this.palette = palette != null ? palette : estimatePalette();
+  }
+
+  /**
+   * @return a buffer over the U (or V) samples of a frame in one array, starting at index 0
+   */
+  private static ByteBuffer chromaPlane(byte[] yuvData, Format format, int dataWidth, int dataHeight, boolean u) {
+    int offset = dataWidth * dataHeight;
+    int chromaSize = ((dataWidth + 1) / 2) * ((dataHeight + 1) / 2);
+    if (yuvData.length < offset + 2 * chromaSize) {
+      throw new IllegalArgumentException("Data is too short for a " + format + " frame of "
+                                         + dataWidth + 'x' + dataHeight);
+    }
+    switch (format) {
+      case NV21:
+        offset += u ? 1 : 0;
+        break;
+      case NV12:
+        offset += u ? 0 : 1;
+        break;
+      default:
+        offset += u ? 0 : chromaSize;
+        break;
+    }
+    return ByteBuffer.wrap(yuvData, offset, yuvData.length - offset).slice();
+  }
+
+  @Override
+  public byte[] getRow(int y, byte[] row) {
+    if (y < 0 || y >= getHeight()) {
+      throw new IllegalArgumentException("Requested row is outside the image: " + y);
+    }
+    int width = getWidth();
+    if (row == null || row.length < width) {
+      row = new byte[width];
+    }
+    ByteBufferLuminanceSource.readRow(yPlane, (y + top) * yRowStride + left, 1, row, 0, width);
+    return row;
+  }
+
+  /**
+   * Fetches the chroma of each pixel of one row: every sample is shared by a 2x2 block of pixels.
+   *
+   * @param y The row to fetch, which must be in [0,getHeight())
+   * @param u receives the U (blue difference) value of each pixel; at least getWidth() long
+   * @param v receives the V (red difference) value of each pixel; at least getWidth() long
+   */
+  public void getChromaRow(int y, byte[] u, byte[] v) {
+    if (y < 0 || y >= getHeight()) {
+      throw new IllegalArgumentException("Requested row is outside the image: " + y);
+    }
+    int width = getWidth();
+    int rowOffset = ((y + top) >> 1) * chromaRowStride;
+    ByteBuffer uPlane = this.uPlane;
+    ByteBuffer vPlane = this.vPlane;
+    int x = 0;
+    int dataX = left;
+    if ((dataX & 1) != 0) {
+      // The first pixel shares its sample with a pixel left of the crop rectangle
+      int index = rowOffset + (dataX >> 1) * chromaPixelStride;
+      u[0] = uPlane.get(index);
+      v[0] = vPlane.get(index);
+      x++;
+      dataX++;
+    }
+    for (int index = rowOffset + (dataX >> 1) * chromaPixelStride; x < width; x += 2, index += chromaPixelStride) {
+      byte uSample = uPlane.get(index);
+      byte vSample = vPlane.get(index);
+      u[x] = uSample;
+      v[x] = vSample;
+      if (x + 1 < width) {
+        u[x + 1] = uSample;
+        v[x + 1] = vSample;
+      }
+    }
+  }
+
+  @Override
+  public byte[] getMatrix() {
+    int width = getWidth();
+    int height = getHeight();
+
+    // If the caller asks for the entire Y plane of an array without padding, save the copy and
+    // give them the original data. The docs specifically warn that result.length must be ignored.
+    if (width == dataWidth && height == dataHeight && yRowStride == dataWidth
+        && yPlane.hasArray() && yPlane.arrayOffset() == 0) {
+      return yPlane.array();
+    }
+
+    byte[] matrix = new byte[width * height];
+    for (int y = 0, index = top * yRowStride + left; y < height; y++, index += yRowStride) {
+      ByteBufferLuminanceSource.readRow(yPlane, index, 1, matrix, y * width, width);
+    }
+    return matrix;
+  }
+
+  /**
+   * Converts the frame to red, green and blue planes. Prefer a binarizer which reads Y, U and V
+   * directly, as this costs three bytes per pixel.
+   */
+  @Override
+  public byte[][] getByteMatrix() {
+    int width = getWidth();
+    int height = getHeight();
+    byte[][] matrix = new byte[3][width * height];
+    byte[] luma = new byte[width];
+    byte[] u = new byte[width];
+    byte[] v = new byte[width];
+    for (int y = 0, offset = 0; y < height; y++) {
+      getRow(y, luma);
+      getChromaRow(y, u, v);
+      for (int x = 0; x < width; x++, offset++) {
+        int rgb = toRGB(luma[x] & 0xFF, u[x] & 0xFF, v[x] & 0xFF);
+        matrix[0][offset] = (byte) (rgb >> 16);
+        matrix[1][offset] = (byte) (rgb >> 8);
+        matrix[2][offset] = (byte) rgb;
+      }
+    }
+    return matrix;
+  }
+
+  @Override
+  public Palette getPalette() {
+    return palette;
+  }
+
+  /**
+   * Converts full-range (JFIF) YUV to RGB, as delivered by camera drivers.
+   *
+   * @return the colour as 0xRRGGBB
+   */
+  public static int toRGB(int y, int u, int v) {
+    int cb = u - 128;
+    int cr = v - 128;
+    int r = y + ((359 * cr) >> 8);
+    int g = y - ((88 * cb + 183 * cr) >> 8);
+    int b = y + ((454 * cb) >> 8);
+    return (clamp(r) << 16) | (clamp(g) << 8) | clamp(b);
+  }
+
+  private static int clamp(int value) {
+    return value < 0 ? 0 : value > 255 ? 255 : value;
+  }
+
+  private Palette estimatePalette() {
+    int width = getWidth();
+    int height = getHeight();
+    Palette.Estimator estimator = new Palette.Estimator();
+    byte[] luma = new byte[width];
+    byte[] u = new byte[width];
+    byte[] v = new byte[width];
+    for (int y = 0; y < height; y += PALETTE_SAMPLE_STEP) {
+      getRow(y, luma);
+      getChromaRow(y, u, v);
+      for (int x = 0; x < width; x += PALETTE_SAMPLE_STEP) {
+        estimator.add(toRGB(luma[x] & 0xFF, u[x] & 0xFF, v[x] & 0xFF));
+      }
+    }
+    return estimator.build();
+  }
+
+  @Override
+  public boolean isCropSupported() {
+    return true;
+  }
+
+  @Override
+  public LuminanceSource crop(int left, int top, int width, int height) {
+    return new YUVColorSource(yPlane,
+                              yRowStride,
+                              uPlane,
+                              vPlane,
+                              chromaRowStride,
+                              chromaPixelStride,
+                              dataWidth,
+                              dataHeight,
+                              this.left + left,
+                              this.top + top,
+                              width,
+                              height,
+                              palette);
+  }
+
+}
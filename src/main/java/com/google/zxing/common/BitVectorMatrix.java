@@ -1,7 +1,23 @@
 package main.java.com.google.zxing.common;
 
+import java.util.Arrays;
+
+/**
+ * <p>Represents a 2D matrix of HCC modules. Each module is stored as two bits held in two separate
+ * planes: plane 0 is set for black and red modules, plane 1 is set for black and green modules.
+ * White modules have neither bit set.</p>
+ *
+ * <p>Each plane uses the same layout as {@link BitMatrix}: a 1-D array of 32-bit ints in which
+ * every row begins with a new int and the least significant bits represent lower x values.</p>
+ */
 public class BitVectorMatrix {
 	
+	// Color indices returned by getColorIndex(): bit 0 mirrors plane 0, bit 1 mirrors plane 1.
+	public static final int WHITE = 0;
+	public static final int RED = 1;
+	public static final int GREEN = 2;
+	public static final int BLACK = 3;
+	
 	private final int width;
 	private final int height;
     private final int rowSize;
@@ -26,6 +42,14 @@ public class BitVectorMatrix {
 	    this(dimension, dimension);
 	}
 	
+	/**
+	 * <p>Gets both bits of the requested module. This allocates a new array on every call, so
+	 * prefer {@link #getColorIndex(int, int)} or the per-plane getters in loops.</p>
+	 *
+	 * @param x The horizontal component (i.e. which column)
+	 * @param y The vertical component (i.e. which row)
+	 * @return a new array holding the plane 0 and plane 1 bits of the module
+	 */
 	public boolean[] get(int x, int y) {
 	   int offset = y * rowSize + (x / 32);
 	   boolean[] result = new boolean[2];
@@ -34,6 +58,175 @@ public class BitVectorMatrix {
 	   return result;
 	}
 	
+	/**
+	 * @param x The horizontal component (i.e. which column)
+	 * @param y The vertical component (i.e. which row)
+	 * @return value of the plane 0 bit (set for black and red modules)
+	 */
+	public boolean getPlane0(int x, int y) {
+	    return ((bits1[y * rowSize + (x / 32)] >>> (x & 0x1f)) & 1) != 0;
+	}
+	
+	/**
+	 * @param x The horizontal component (i.e. which column)
+	 * @param y The vertical component (i.e. which row)
+	 * @return value of the plane 1 bit (set for black and green modules)
+	 */
+	public boolean getPlane1(int x, int y) {
+	    return ((bits2[y * rowSize + (x / 32)] >>> (x & 0x1f)) & 1) != 0;
+	}
+	
+	/**
+	 * <p>Gets both bits of the requested module packed in an int, reading each plane once.</p>
+	 *
+	 * @param x The horizontal component (i.e. which column)
+	 * @param y The vertical component (i.e. which row)
+	 * @return one of {@link #WHITE}, {@link #RED}, {@link #GREEN} or {@link #BLACK}
+	 */
+	public int getColorIndex(int x, int y) {
+	    int offset = y * rowSize + (x / 32);
+	    int shift = x & 0x1f;
+	    return ((bits1[offset] >>> shift) & 1) | (((bits2[offset] >>> shift) & 1) << 1);
+	}
+	
+	/**
+	 * @param x The horizontal component (i.e. which column)
+	 * @param y The vertical component (i.e. which row)
+	 * @return true iff both bits of the module are set
+	 */
+	public boolean isBlack(int x, int y) {
+	    return getColorIndex(x, y) == BLACK;
+	}
+	
+	/**
+	 * @param x The horizontal component (i.e. which column)
+	 * @param y The vertical component (i.e. which row)
+	 * @return true iff neither bit of the module is set
+	 */
+	public boolean isWhite(int x, int y) {
+	    return getColorIndex(x, y) == WHITE;
+	}
+	
+	/**
+	 * <p>Copies the words of one row of a plane. Bit {@code x & 0x1f} of word {@code x / 32} holds
+	 * the value of column x.</p>
+	 *
+	 * @param plane 0 or 1
+	 * @param y The row to retrieve
+	 * @param words An optional caller-allocated array. If null or too small, a new array is allocated.
+	 * @return The words of the requested row; only the first {@link #getRowSize()} are meaningful
+	 */
+	public int[] getRowWords(int plane, int y, int[] words) {
+	    if (words == null || words.length < rowSize) {
+	      words = new int[rowSize];
+	    }
+	    System.arraycopy(plane == 0 ? bits1 : bits2, y * rowSize, words, 0, rowSize);
+	    return words;
+	}
+	
+	/**
+	 * <p>Like {@link #getRowWords(int, int, int[])}, copying only the words which hold columns
+	 * fromX to toX - 1, at the same indices of words. The others are left as they are.</p>
+	 *
+	 * @param words An optional caller-allocated array. If null or too small, a new array is allocated.
+	 * @return The words of the requested row
+	 */
+	public int[] getRowWords(int plane, int y, int fromX, int toX, int[] words) {
+	    if (words == null || words.length < rowSize) {
+	      words = new int[rowSize];
+	    }
+	    int fromWord = fromX >> 5;
+	    int toWord = (toX + 31) >> 5;
+	    if (fromWord < toWord) {
+	      System.arraycopy(plane == 0 ? bits1 : bits2, y * rowSize + fromWord, words, fromWord, toWord - fromWord);
+	    }
+	    return words;
+	}
+	
+	/**
+	 * <p>Overwrites the words of one row of a plane, in the layout of
+	 * {@link #getRowWords(int, int, int[])}. Bits past the width of the matrix must be 0.</p>
+	 *
+	 * @param plane 0 or 1
+	 * @param y The row to set
+	 * @param words At least {@link #getRowSize()} words
+	 */
+	public void setRowWords(int plane, int y, int[] words) {
+	    System.arraycopy(words, 0, plane == 0 ? bits1 : bits2, y * rowSize, rowSize);
+	}
+
+	/**
+	 * <p>Overwrites a single word of both planes of a row, in the layout of
+	 * {@link #getRowWords(int, int, int[])}. Used by {@link LazyBitVectorMatrix} to fill its tiles
+	 * without going through its own overrides.</p>
+	 */
+	final void setWords(int y, int word, int plane0Bits, int plane1Bits) {
+	    int offset = y * rowSize + word;
+	    bits1[offset] = plane0Bits;
+	    bits2[offset] = plane1Bits;
+	}
+
+	/**
+	 * @return The number of 32-bit words used to store one row of a plane
+	 */
+	public int getRowSize() {
+	    return rowSize;
+	}
+
+	/**
+	 * <p>Run-length encodes the black modules of one row, that is the modules with both bits set.
+	 * The runs are read a word at a time from both planes, so the cost is in the number of runs
+	 * and words rather than in the number of modules.</p>
+	 *
+	 * @param y The row to encode
+	 * @param runs At least {@link #getWidth()} + 1 long. Receives the lengths of the runs from
+	 *  left to right, alternately white and black, starting with a white run which is empty if
+	 *  the row starts with a black module
+	 * @return The number of runs written, whose lengths add up to the width of the matrix
+	 */
+	public int getBlackRuns(int y, int[] runs) {
+	    return getBlackRuns(y, 0, width, runs);
+	}
+
+	/**
+	 * <p>Like {@link #getBlackRuns(int, int[])}, for columns fromX to toX - 1 of the row only.</p>
+	 *
+	 * @param runs At least toX - fromX + 1 long
+	 * @return The number of runs written, whose lengths add up to toX - fromX
+	 */
+	public int getBlackRuns(int y, int fromX, int toX, int[] runs) {
+	    int offset = y * rowSize;
+	    int numRuns = 0;
+	    int x = fromX;
+	    boolean black = false;
+	    while (x < toX) {
+	      int end = Math.min(toX, nextBlackTransition(offset, x, black));
+	      runs[numRuns++] = end - x;
+	      x = end;
+	      black = !black;
+	    }
+	    return numRuns;
+	}
+
+	/**
+	 * @return the first column from x on, in the row starting at offset, which is black if black
+	 *  is false and not black otherwise, or the width of the matrix if there is none
+	 */
+	private int nextBlackTransition(int offset, int x, boolean black) {
+	    int w = x >>> 5;
+	    int word = bits1[offset + w] & bits2[offset + w];
+	    // The bits past the width are 0, so a black run always ends within the row
+	    int changes = (black ? ~word : word) & (-1 << (x & 0x1f));
+	    while (changes == 0) {
+	      if (++w == rowSize) {
+	        return width;
+	      }
+	      word = bits1[offset + w] & bits2[offset + w];
+	      changes = black ? ~word : word;
+	    }
+	    return Math.min(width, (w << 5) + Integer.numberOfTrailingZeros(changes));
+	}
+	
 	/**
 	* <p>Flips the given bit.</p>
 	*
@@ -46,6 +239,23 @@ public class BitVectorMatrix {
 	    bits2[offset] ^= 1 << (x & 0x1f);
 	}
 	
+	/**
+	 * <p>Flips the given bit of a single plane.</p>
+	 *
+	 * @param x The horizontal component (i.e. which column)
+	 * @param y The vertical component (i.e. which row)
+	 * @param destination the plane to flip, 0 or 1
+	 */
+	public void flip(int x, int y, int destination) {
+	    int offset = y * rowSize + (x / 32);
+	    if (destination == 0) {
+	    	bits1[offset] ^= 1 << (x & 0x1f);
+	    }
+	    else {
+	    	bits2[offset] ^= 1 << (x & 0x1f);
+	    }
+	}
+	
 	/**
 	   * <p>Sets a square region of the bit matrix to true.</p>
 	   *
@@ -89,6 +299,30 @@ public class BitVectorMatrix {
 		    
 	  }
 	  
+	  /**
+	   * <p>Sets the bits of a module from a packed color index, as returned by
+	   * {@link #getColorIndex(int, int)}. Like {@link #set(int, int, int)}, bits are only ever set,
+	   * never cleared.</p>
+	   *
+	   * @param x The horizontal component (i.e. which column)
+	   * @param y The vertical component (i.e. which row)
+	   * @param colorIndex one of {@link #WHITE}, {@link #RED}, {@link #GREEN} or {@link #BLACK}
+	   */
+	  public void setColorIndex(int x, int y, int colorIndex) {
+		    int offset = y * rowSize + (x / 32);
+		    int bit = 1 << (x & 0x1f);
+		    bits1[offset] |= -(colorIndex & 1) & bit;
+		    bits2[offset] |= -((colorIndex >> 1) & 1) & bit;
+	  }
+	  
+	  /**
+	   * Clears all bits of both planes (sets every module to white), so that the matrix can be reused.
+	   */
+	  public void clear() {
+		    Arrays.fill(bits1, 0);
+		    Arrays.fill(bits2, 0);
+	  }
+	  
 	  /**
 	   * This is useful in detecting a corner of a 'pure' barcode.
 	   *
@@ -146,26 +380,22 @@ public class BitVectorMatrix {
 	  
 	  @Override
 	  public String toString() {
-	    StringBuilder result = new StringBuilder(height * (width + 1));
+	    StringBuilder result = new StringBuilder(height * (2 * width + 1));
 	    for (int y = 0; y < height; y++) {
 	      for (int x = 0; x < width; x++) {
-	    	  boolean[] temp = this.get(x, y);
-			  String nero = "b";
-			  String white = "w";
-			  String red = "r";
-			  String green = "g";
-			  if (temp[0] && temp[1]) {
-				  result.append(nero+";");
-			  }
-			  else if (temp[0] && !temp[1]) {
-				  result.append(red+";");
-			  }
-			  else if (!temp[0] && temp[1]) {
-				  result.append(green+";");
-			  }
-			  else 
-				  result.append(white+";");
-	        
+	    	  switch (getColorIndex(x, y)) {
+	    	    case BLACK:
+	    	      result.append("b;");
+	    	      break;
+	    	    case RED:
+	    	      result.append("r;");
+	    	      break;
+	    	    case GREEN:
+	    	      result.append("g;");
+	    	      break;
+	    	    default:
+	    	      result.append("w;");
+	    	  }
 	      }
 	      result.append('\n');
 	    }
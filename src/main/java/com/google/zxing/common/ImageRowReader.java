@@ -0,0 +1,135 @@
+package main.java.com.google.zxing.common;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * <p>Reads rows of pixels of a {@link BufferedImage} as packed ARGB ints, like
+ * {@link BufferedImage#getRGB(int, int, int, int, int[], int, int)}.</p>
+ *
+ * <p>For the usual layouts ({@code TYPE_INT_RGB}, {@code TYPE_INT_ARGB}, {@code TYPE_3BYTE_BGR}
+ * and {@code TYPE_BYTE_GRAY}) the pixels are read straight from the array backing the raster,
+ * rather than converted one by one through the colour model. Other types go through
+ * {@code getRGB}. Grey pixels are returned with their raw value in the three channels.</p>
+ *
+ * @author Francesco Benedetto
+ *
+ */
+public final class ImageRowReader {
+
+  private static final int GENERIC = 0;
+  private static final int INT_RGB = 1;
+  private static final int INT_ARGB = 2;
+  private static final int BYTE_BGR = 3;
+  private static final int BYTE_GRAY = 4;
+
+  private final BufferedImage image;
+  private final int layout;
+  private final int[] ints;
+  private final byte[] bytes;
+  // Index in the data array of pixel (0, 0), and distances between pixels and rows
+  private final int origin;
+  private final int pixelStride;
+  private final int scanlineStride;
+  // Offsets of the red, green and blue samples from the index of a pixel, for byte layouts
+  private final int redOffset;
+  private final int greenOffset;
+  private final int blueOffset;
+
+  public ImageRowReader(BufferedImage image) {
+    this.image = image;
+    WritableRaster raster = image.getRaster();
+    DataBuffer buffer = raster.getDataBuffer();
+    SampleModel sampleModel = raster.getSampleModel();
+    int translateX = raster.getSampleModelTranslateX();
+    int translateY = raster.getSampleModelTranslateY();
+    int type = image.getType();
+
+    int layout = GENERIC;
+    int[] ints = null;
+    byte[] bytes = null;
+    int pixelStride = 1;
+    int scanlineStride = 0;
+    int[] bandOffsets = {0, 0, 0};
+    if ((type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)
+        && buffer instanceof DataBufferInt
+        && buffer.getNumBanks() == 1
+        && sampleModel instanceof SinglePixelPackedSampleModel) {
+      layout = type == BufferedImage.TYPE_INT_RGB ? INT_RGB : INT_ARGB;
+      ints = ((DataBufferInt) buffer).getData();
+      scanlineStride = ((SinglePixelPackedSampleModel) sampleModel).getScanlineStride();
+    } else if ((type == BufferedImage.TYPE_3BYTE_BGR || type == BufferedImage.TYPE_BYTE_GRAY)
+        && buffer instanceof DataBufferByte
+        && buffer.getNumBanks() == 1
+        && sampleModel instanceof ComponentSampleModel) {
+      ComponentSampleModel componentModel = (ComponentSampleModel) sampleModel;
+      layout = type == BufferedImage.TYPE_3BYTE_BGR ? BYTE_BGR : BYTE_GRAY;
+      bytes = ((DataBufferByte) buffer).getData();
+      pixelStride = componentModel.getPixelStride();
+      scanlineStride = componentModel.getScanlineStride();
+      int[] offsets = componentModel.getBandOffsets();
+      if (layout == BYTE_BGR) {
+        // Bands are red, green and blue, whatever their order in memory
+        bandOffsets = offsets;
+      } else {
+        bandOffsets = new int[] {offsets[0], offsets[0], offsets[0]};
+      }
+    }
+    this.layout = layout;
+    this.ints = ints;
+    this.bytes = bytes;
+    this.pixelStride = pixelStride;
+    this.scanlineStride = scanlineStride;
+    this.origin = buffer.getOffset() - translateY * scanlineStride - translateX * pixelStride;
+    this.redOffset = bandOffsets[0];
+    this.greenOffset = bandOffsets[1];
+    this.blueOffset = bandOffsets[2];
+  }
+
+  /**
+   * @return true if the pixels are read from the array backing the raster, false if they go
+   *  through {@code getRGB}
+   */
+  public boolean isDirect() {
+    return layout != GENERIC;
+  }
+
+  /**
+   * Reads pixels left to left + width - 1 of row y as 0xAARRGGBB ints; alpha is 0xFF for
+   * layouts without it.
+   *
+   * @param row destination, at least width long
+   */
+  public void readRow(int left, int y, int width, int[] row) {
+    int index = origin + y * scanlineStride + left * pixelStride;
+    switch (layout) {
+      case INT_RGB:
+        for (int x = 0; x < width; x++) {
+          row[x] = ints[index + x] | 0xFF000000;
+        }
+        break;
+      case INT_ARGB:
+        System.arraycopy(ints, index, row, 0, width);
+        break;
+      case BYTE_BGR:
+      case BYTE_GRAY:
+        for (int x = 0; x < width; x++, index += pixelStride) {
+          row[x] = 0xFF000000
+              | ((bytes[index + redOffset] & 0xFF) << 16)
+              | ((bytes[index + greenOffset] & 0xFF) << 8)
+              | (bytes[index + blueOffset] & 0xFF);
+        }
+        break;
+      default:
+        image.getRGB(left, y, width, 1, row, 0, width);
+        break;
+    }
+  }
+
+}
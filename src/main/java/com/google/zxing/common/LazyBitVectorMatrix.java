@@ -0,0 +1,302 @@
+package main.java.com.google.zxing.common;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * <p>{@link BitVectorMatrix} of a binarized image whose modules are only classified when they are
+ * first read, a tile of 32x32 pixels at a time. A tile is one word of 32 rows of each plane, so it
+ * is filled with whole words and the parts of the image which are never searched are never
+ * binarized at all.</p>
+ *
+ * <p>Every getter and setter first binarizes the tiles it touches, so the matrix behaves exactly
+ * like one binarized up front. The finders also ask it for {@link #getCandidateRegion()}, found by
+ * a coarse pass over two rows per tile, and scan only that part of the image.</p>
+ *
+ * <p>Tiles may be binarized from any number of threads; each is binarized once.</p>
+ *
+ * @author Francesco Benedetto
+ *
+ */
+public final class LazyBitVectorMatrix extends BitVectorMatrix {
+
+	  /**
+	   * Classifies the pixels of an image into the two planes of a {@link BitVectorMatrix}.
+	   */
+	  public interface RowBinarizer {
+
+	    /**
+	     * Classifies the pixels of row y covered by words fromWord to toWord - 1 of a row of the
+	     * matrix, into the same words of plane0 and plane1. Bits past the width must be 0.
+	     */
+	    void binarize(int y, int fromWord, int toWord, int[] plane0, int[] plane1);
+	  }
+
+	  private static final int TILE_SIZE_POWER = 5;
+	  private static final int TILE_SIZE = 1 << TILE_SIZE_POWER;
+	  // Tiles around the ones holding edges which are part of the candidate region too
+	  private static final int REGION_MARGIN_TILES = 1;
+	  // Colours of the tiles in the coarse pass, besides the colour indices
+	  private static final int MIXED = -1;
+	  private static final int UNSEEN = -2;
+
+	  private final RowBinarizer binarizer;
+	  private final int tilesX;
+	  private final int tilesY;
+	  // 1 once the tile has been binarized
+	  private final AtomicIntegerArray binarized;
+	  // Scratch rows of the binarizer, only used while holding the lock
+	  private final int[] plane0;
+	  private final int[] plane1;
+	  private int binarizedTiles;
+	  private volatile int[] candidateRegion;
+
+	  public LazyBitVectorMatrix(int width, int height, RowBinarizer binarizer) {
+	    super(width, height);
+	    if (binarizer == null) {
+	      throw new IllegalArgumentException("Binarizer must be non-null.");
+	    }
+	    this.binarizer = binarizer;
+	    this.tilesX = getRowSize();
+	    this.tilesY = (height + TILE_SIZE - 1) >> TILE_SIZE_POWER;
+	    this.binarized = new AtomicIntegerArray(tilesX * tilesY);
+	    this.plane0 = new int[tilesX];
+	    this.plane1 = new int[tilesX];
+	  }
+
+	  /**
+	   * <p>Finds the part of the image which may hold a code, without binarizing any tile: two rows
+	   * of every tile are classified, a quarter and three quarters of the way down, and the tiles
+	   * where they are not all of one colour hold an edge. The region is the bounding box of these
+	   * tiles, grown by one tile on each side. The rows looked at are 16 pixels apart, so any code
+	   * at least that high crosses some of them.</p>
+	   *
+	   * @return left, top, width and height of the region, all 0 if the image is of one colour
+	   */
+	  public int[] getCandidateRegion() {
+	    int[] region = candidateRegion;
+	    if (region == null) {
+	      region = findCandidateRegion();
+	      candidateRegion = region;
+	    }
+	    return region.clone();
+	  }
+
+	  /**
+	   * @return the number of tiles binarized so far
+	   */
+	  public synchronized int getBinarizedTiles() {
+	    return binarizedTiles;
+	  }
+
+	  /**
+	   * @return the number of tiles of the image
+	   */
+	  public int getTiles() {
+	    return tilesX * tilesY;
+	  }
+
+	  @Override
+	  public boolean[] get(int x, int y) {
+	    checkTile(x, y);
+	    return super.get(x, y);
+	  }
+
+	  @Override
+	  public boolean getPlane0(int x, int y) {
+	    checkTile(x, y);
+	    return super.getPlane0(x, y);
+	  }
+
+	  @Override
+	  public boolean getPlane1(int x, int y) {
+	    checkTile(x, y);
+	    return super.getPlane1(x, y);
+	  }
+
+	  @Override
+	  public int getColorIndex(int x, int y) {
+	    checkTile(x, y);
+	    return super.getColorIndex(x, y);
+	  }
+
+	  @Override
+	  public int[] getRowWords(int plane, int y, int[] words) {
+	    checkTiles(0, getWidth(), y, y + 1);
+	    return super.getRowWords(plane, y, words);
+	  }
+
+	  @Override
+	  public int[] getRowWords(int plane, int y, int fromX, int toX, int[] words) {
+	    checkTiles(fromX, toX, y, y + 1);
+	    return super.getRowWords(plane, y, fromX, toX, words);
+	  }
+
+	  @Override
+	  public void setRowWords(int plane, int y, int[] words) {
+	    // The other rows of the tiles must not be binarized over it later
+	    checkTiles(0, getWidth(), y, y + 1);
+	    super.setRowWords(plane, y, words);
+	  }
+
+	  @Override
+	  public int getBlackRuns(int y, int fromX, int toX, int[] runs) {
+	    // Words past toX may be read while looking for the end of the last run, which is cut at toX
+	    checkTiles(fromX, toX, y, y + 1);
+	    return super.getBlackRuns(y, fromX, toX, runs);
+	  }
+
+	  @Override
+	  public void flip(int x, int y) {
+	    checkTile(x, y);
+	    super.flip(x, y);
+	  }
+
+	  @Override
+	  public void flip(int x, int y, int destination) {
+	    checkTile(x, y);
+	    super.flip(x, y, destination);
+	  }
+
+	  @Override
+	  public void setRegion(int left, int top, int width, int height, int destination) {
+	    if (top >= 0 && left >= 0 && width >= 1 && height >= 1
+	        && left + width <= getWidth() && top + height <= getHeight()) {
+	      checkTiles(left, left + width, top, top + height);
+	    }
+	    super.setRegion(left, top, width, height, destination);
+	  }
+
+	  @Override
+	  public void set(int x, int y, int destination) {
+	    checkTile(x, y);
+	    super.set(x, y, destination);
+	  }
+
+	  @Override
+	  public void setColorIndex(int x, int y, int colorIndex) {
+	    checkTile(x, y);
+	    super.setColorIndex(x, y, colorIndex);
+	  }
+
+	  @Override
+	  public synchronized void clear() {
+	    // Nothing is left to binarize
+	    for (int tile = 0; tile < binarized.length(); tile++) {
+	      binarized.set(tile, 1);
+	    }
+	    super.clear();
+	  }
+
+	  @Override
+	  public int[] getTopLeftOnBit() {
+	    checkTiles(0, getWidth(), 0, getHeight());
+	    return super.getTopLeftOnBit();
+	  }
+
+	  @Override
+	  public int[] getBottomRightOnBit() {
+	    checkTiles(0, getWidth(), 0, getHeight());
+	    return super.getBottomRightOnBit();
+	  }
+
+	  private void checkTile(int x, int y) {
+	    int tile = (y >> TILE_SIZE_POWER) * tilesX + (x >> TILE_SIZE_POWER);
+	    if (binarized.get(tile) == 0) {
+	      binarizeTile(tile);
+	    }
+	  }
+
+	  /**
+	   * Binarizes the tiles holding columns fromX to toX - 1 of rows fromY to toY - 1, if needed.
+	   */
+	  private void checkTiles(int fromX, int toX, int fromY, int toY) {
+	    if (fromX >= toX || fromY >= toY) {
+	      return;
+	    }
+	    int lastTileX = (toX - 1) >> TILE_SIZE_POWER;
+	    int lastTileY = (toY - 1) >> TILE_SIZE_POWER;
+	    for (int tileY = fromY >> TILE_SIZE_POWER; tileY <= lastTileY; tileY++) {
+	      for (int tileX = fromX >> TILE_SIZE_POWER; tileX <= lastTileX; tileX++) {
+	        int tile = tileY * tilesX + tileX;
+	        if (binarized.get(tile) == 0) {
+	          binarizeTile(tile);
+	        }
+	      }
+	    }
+	  }
+
+	  private synchronized void binarizeTile(int tile) {
+	    if (binarized.get(tile) != 0) {
+	      // Binarized by another thread meanwhile
+	      return;
+	    }
+	    int word = tile % tilesX;
+	    int top = (tile / tilesX) << TILE_SIZE_POWER;
+	    int bottom = Math.min(top + TILE_SIZE, getHeight());
+	    for (int y = top; y < bottom; y++) {
+	      binarizer.binarize(y, word, word + 1, plane0, plane1);
+	      setWords(y, word, plane0[word], plane1[word]);
+	    }
+	    binarizedTiles++;
+	    binarized.set(tile, 1);
+	  }
+
+	  private synchronized int[] findCandidateRegion() {
+	    int width = getWidth();
+	    int height = getHeight();
+	    // Bits of the last word within the width
+	    int lastMask = -1 >>> (-width & 0x1f);
+	    int[] colors = new int[tilesX];
+	    int minTileX = tilesX;
+	    int maxTileX = -1;
+	    int minTileY = tilesY;
+	    int maxTileY = -1;
+	    for (int tileY = 0; tileY < tilesY; tileY++) {
+	      int top = tileY << TILE_SIZE_POWER;
+	      int tileHeight = Math.min(TILE_SIZE, height - top);
+	      for (int tileX = 0; tileX < tilesX; tileX++) {
+	        colors[tileX] = UNSEEN;
+	      }
+	      for (int y = top + tileHeight / 4; y <= top + 3 * tileHeight / 4; y += Math.max(1, tileHeight / 2)) {
+	        binarizer.binarize(y, 0, tilesX, plane0, plane1);
+	        for (int tileX = 0; tileX < tilesX; tileX++) {
+	          int color = wordColor(plane0[tileX], plane1[tileX], tileX == tilesX - 1 ? lastMask : -1);
+	          if (colors[tileX] == UNSEEN) {
+	            colors[tileX] = color;
+	          } else if (colors[tileX] != color) {
+	            colors[tileX] = MIXED;
+	          }
+	        }
+	      }
+	      for (int tileX = 0; tileX < tilesX; tileX++) {
+	        if (colors[tileX] == MIXED) {
+	          minTileX = Math.min(minTileX, tileX);
+	          maxTileX = Math.max(maxTileX, tileX);
+	          minTileY = Math.min(minTileY, tileY);
+	          maxTileY = tileY;
+	        }
+	      }
+	    }
+	    if (maxTileX < 0) {
+	      return new int[4];
+	    }
+	    int left = Math.max(0, minTileX - REGION_MARGIN_TILES) << TILE_SIZE_POWER;
+	    int top = Math.max(0, minTileY - REGION_MARGIN_TILES) << TILE_SIZE_POWER;
+	    int right = Math.min(width, (maxTileX + 1 + REGION_MARGIN_TILES) << TILE_SIZE_POWER);
+	    int bottom = Math.min(height, (maxTileY + 1 + REGION_MARGIN_TILES) << TILE_SIZE_POWER);
+	    return new int[] {left, top, right - left, bottom - top};
+	  }
+
+	  /**
+	   * @return the colour index of a word whose pixels are all of one colour, {@link #MIXED} otherwise
+	   */
+	  private static int wordColor(int plane0Bits, int plane1Bits, int mask) {
+	    int bits0 = plane0Bits & mask;
+	    int bits1 = plane1Bits & mask;
+	    if ((bits0 != 0 && bits0 != mask) || (bits1 != 0 && bits1 != mask)) {
+	      return MIXED;
+	    }
+	    return (bits0 == 0 ? 0 : 1) | (bits1 == 0 ? 0 : 2);
+	  }
+
+}
@@ -0,0 +1,195 @@
+package main.java.com.google.zxing.common;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import main.java.com.google.zxing.ByteBufferLuminanceSource;
+import main.java.com.google.zxing.ByteBufferRGBSource;
+import main.java.com.google.zxing.LuminanceSource;
+
+/**
+ * <p>An uncompressed image file too large to be loaded on the heap, such as a sheet scanned at
+ * 600 dpi: binary PGM ({@code P5}) or PPM ({@code P6}) with 8-bit samples, or raw grey or RGB
+ * samples without header.</p>
+ *
+ * <p>Nothing is read up front but the header. {@link #getTile(int, int, int, int)} memory-maps the
+ * rows of one window of the image, and the operating system pages in the part of the file that the
+ * returned source actually reads, so the heap only ever holds what the binarizer makes of a
+ * tile.</p>
+ *
+ * @author Francesco Benedetto
+ *
+ */
+public final class MappedImageFile implements Closeable {
+
+  private final FileChannel channel;
+  private final int width;
+  private final int height;
+  private final int channels;
+  // Position in the file of the first sample
+  private final long dataOffset;
+
+  private MappedImageFile(FileChannel channel, int width, int height, int channels, long dataOffset)
+      throws IOException {
+    if (width < 1 || height < 1) {
+      throw new IllegalArgumentException("Both dimensions must be greater than 0");
+    }
+    if (channels != 1 && channels != 3) {
+      throw new IllegalArgumentException("Only grey or RGB samples are supported: " + channels);
+    }
+    if (channel.size() < dataOffset + (long) width * height * channels) {
+      throw new IOException("File is too short for " + width + 'x' + height + " pixels");
+    }
+    this.channel = channel;
+    this.width = width;
+    this.height = height;
+    this.channels = channels;
+    this.dataOffset = dataOffset;
+  }
+
+  /**
+   * Opens a binary PGM or PPM file with samples of at most 8 bits.
+   *
+   * @throws IOException if the file cannot be read or is not such a file
+   */
+  public static MappedImageFile open(Path path) throws IOException {
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      // The header is a few dozen bytes, unless it holds long comments
+      ByteBuffer header = ByteBuffer.allocate((int) Math.min(channel.size(), 4096));
+      while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+        // keep reading
+      }
+      header.flip();
+      if (header.remaining() < 2 || header.get() != 'P') {
+        throw new IOException("Not a PGM or PPM file: " + path);
+      }
+      byte kind = header.get();
+      if (kind != '5' && kind != '6') {
+        throw new IOException("Only binary PGM (P5) and PPM (P6) files are supported: " + path);
+      }
+      int width = readHeaderNumber(header);
+      int height = readHeaderNumber(header);
+      int maxValue = readHeaderNumber(header);
+      if (maxValue < 1 || maxValue > 255) {
+        throw new IOException("Only samples of at most 8 bits are supported: " + path);
+      }
+      // A single whitespace character separates the header from the samples
+      if (!header.hasRemaining()) {
+        throw new IOException("Truncated header: " + path);
+      }
+      header.get();
+      return new MappedImageFile(channel, width, height, kind == '5' ? 1 : 3, header.position());
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Opens a file of raw 8-bit samples, row by row without padding.
+   *
+   * @param headerLength number of bytes to skip before the first sample
+   * @param channels 1 for grey samples, 3 for interleaved red, green and blue ones
+   * @throws IOException if the file cannot be read or is too short
+   */
+  public static MappedImageFile openRaw(Path path, int width, int height, int channels, long headerLength)
+      throws IOException {
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      return new MappedImageFile(channel, width, height, channels, headerLength);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  private static int readHeaderNumber(ByteBuffer header) throws IOException {
+    int c = skipWhitespaceAndComments(header);
+    if (c < '0' || c > '9') {
+      throw new IOException("Malformed header");
+    }
+    long value = 0;
+    while (c >= '0' && c <= '9') {
+      value = value * 10 + (c - '0');
+      if (value > Integer.MAX_VALUE) {
+        throw new IOException("Malformed header");
+      }
+      if (!header.hasRemaining()) {
+        throw new IOException("Truncated header");
+      }
+      c = header.get();
+    }
+    // Leave the character which ended the number to be read next
+    header.position(header.position() - 1);
+    return (int) value;
+  }
+
+  private static int skipWhitespaceAndComments(ByteBuffer header) throws IOException {
+    while (header.hasRemaining()) {
+      int c = header.get();
+      if (c == '#') {
+        while (header.hasRemaining() && c != '\n' && c != '\r') {
+          c = header.get();
+        }
+      } else if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+        return c;
+      }
+    }
+    throw new IOException("Truncated header");
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * @return 1 for grey images, 3 for RGB ones
+   */
+  public int getChannels() {
+    return channels;
+  }
+
+  /**
+   * Maps one window of the image. The rows of the window are mapped as a whole, so
+   * {@code height} rows of the image must take less than 2 GB.
+   *
+   * @return a {@link ByteBufferLuminanceSource} for grey images, a {@link ByteBufferRGBSource} for
+   *  RGB ones, whose coordinates start at the top-left corner of the window
+   * @throws IOException if the window cannot be mapped
+   */
+  public LuminanceSource getTile(int left, int top, int width, int height) throws IOException {
+    if (left < 0 || top < 0 || width < 1 || height < 1
+        || left + width > this.width || top + height > this.height) {
+      throw new IllegalArgumentException("Tile does not fit within the image");
+    }
+    long rowBytes = (long) this.width * channels;
+    long size = rowBytes * height;
+    if (size > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Tile rows take more than 2 GB");
+    }
+    MappedByteBuffer rows = channel.map(FileChannel.MapMode.READ_ONLY, dataOffset + rowBytes * top, size);
+    if (channels == 1) {
+      return new ByteBufferLuminanceSource(rows, (int) rowBytes, 1, this.width, height, left, 0, width, height);
+    }
+    return new ByteBufferRGBSource(rows, (int) rowBytes, 3, this.width, height, left, 0, width, height);
+  }
+
+  /**
+   * Closes the file. Sources returned by {@link #getTile(int, int, int, int)} remain readable.
+   */
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+}
@@ -1,9 +1,21 @@
 package main.java.com.google.zxing.common;
 
+import java.util.Arrays;
+
 import main.java.com.google.zxing.NotFoundException;
 
+/**
+ * <p>Default {@link MyGridSampler}. It holds no state, so one instance can be used by any number
+ * of threads.</p>
+ *
+ * <p>The transform is stepped from one module to the next: the numerators and the denominator
+ * of the homography are updated by addition, in double precision so that the error does not
+ * build up across the largest versions, leaving one division per module. The module is read
+ * with one fetch per plane and its bits are collected in the words of the output row, which are
+ * then written at once.</p>
+ */
 public class MyDefaultGridSampler extends MyGridSampler {
-	
+
 	  @Override
 	  public BitVectorMatrix sampleGrid(BitVectorMatrix image,
 	                              int dimensionX,
@@ -29,44 +41,77 @@ public class MyDefaultGridSampler extends MyGridSampler {
 	                              int dimensionX,
 	                              int dimensionY,
 	                              PerspectiveTransform transform) throws NotFoundException {
+	    return sampleGrid(image, dimensionX, dimensionY, transform, null);
+	  }
+
+	  @Override
+	  public BitVectorMatrix sampleGrid(BitVectorMatrix image,
+	                              int dimensionX,
+	                              int dimensionY,
+	                              PerspectiveTransform transform,
+	                              BitVectorMatrix reuse) throws NotFoundException {
 	    if (dimensionX <= 0 || dimensionY <= 0) {
 	      throw NotFoundException.getNotFoundInstance();      
 	    }
-	    BitVectorMatrix bits = new BitVectorMatrix(dimensionX, dimensionY);
-	    float[] points = new float[2 * dimensionX];
+	    BitVectorMatrix bits;
+	    if (reuse != null && reuse.getWidth() == dimensionX && reuse.getHeight() == dimensionY) {
+	      // Every row is overwritten
+	      bits = reuse;
+	    } else {
+	      bits = new BitVectorMatrix(dimensionX, dimensionY);
+	    }
+	    int width = image.getWidth();
+	    int height = image.getHeight();
+	    int[] plane0 = new int[bits.getRowSize()];
+	    int[] plane1 = new int[bits.getRowSize()];
+	    // Sample the centers of the modules
+	    double[] differences = transform.forwardDifferences(0.5f, 0.5f);
+	    double rowX = differences[0];
+	    double rowY = differences[1];
+	    double rowDenominator = differences[2];
+	    double stepX = differences[3];
+	    double stepY = differences[4];
+	    double stepDenominator = differences[5];
 	    for (int y = 0; y < dimensionY; y++) {
-	      int max = points.length;
-	      float iValue = (float) y + 0.5f;
-	      for (int x = 0; x < max; x += 2) {
-	        points[x] = (float) (x / 2) + 0.5f;
-	        points[x + 1] = iValue;
-	      }
-	      transform.transformPoints(points);
-	      // Quick check to see if points transformed to something inside the image;
-	      // sufficient to check the endpoints
-	      checkAndNudgePoints(image, points);
-	      try {
-	        for (int x = 0; x < max; x += 2) {
-	          if (image.get((int) points[x], (int) points[x + 1])[0] && image.get((int) points[x], (int) points[x + 1])[1]) {
-	            // Black(-ish) pixel
-	            bits.set(x / 2, y, 0);
-	            bits.set(x / 2, y, 1);
-	          }
-	          else if (image.get((int) points[x], (int) points[x + 1])[0] && !image.get((int) points[x], (int) points[x + 1])[1])
-	        	  bits.set(x / 2, y, 0);
-	          else if (!image.get((int) points[x], (int) points[x + 1])[0] && image.get((int) points[x], (int) points[x + 1])[1])
-	        	  bits.set(x / 2, y, 1);
+	      double numeratorX = rowX;
+	      double numeratorY = rowY;
+	      double denominator = rowDenominator;
+	      for (int x = 0; x < dimensionX; x++) {
+	        double scale = 1.0 / denominator;
+	        double pointX = numeratorX * scale;
+	        double pointY = numeratorY * scale;
+	        // Points barely (less than 1 pixel) off the image are nudged back onto it, as
+	        // checkAndNudgePoints() does. This accounts for imperfect detection of finder patterns
+	        // in an image where the QR Code runs all the way to the image border. NaN fails too.
+	        if (!(pointX > -2.0 && pointX < width + 1.0 && pointY > -2.0 && pointY < height + 1.0)) {
+	          throw NotFoundException.getNotFoundInstance();
+	        }
+	        int imageX = (int) pointX;
+	        int imageY = (int) pointY;
+	        if (imageX == -1) {
+	          imageX = 0;
+	        } else if (imageX == width) {
+	          imageX = width - 1;
+	        }
+	        if (imageY == -1) {
+	          imageY = 0;
+	        } else if (imageY == height) {
+	          imageY = height - 1;
 	        }
-	      } catch (ArrayIndexOutOfBoundsException aioobe) {
-	        // This feels wrong, but, sometimes if the finder patterns are misidentified, the resulting
-	        // transform gets "twisted" such that it maps a straight line of points to a set of points
-	        // whose endpoints are in bounds, but others are not. There is probably some mathematical
-	        // way to detect this about the transformation that I don't know yet.
-	        // This results in an ugly runtime exception despite our clever checks above -- can't have
-	        // that. We could check each point's coordinates but that feels duplicative. We settle for
-	        // catching and wrapping ArrayIndexOutOfBoundsException.
-	        throw NotFoundException.getNotFoundInstance();
+	        int colorIndex = image.getColorIndex(imageX, imageY);
+	        plane0[x >> 5] |= (colorIndex & 1) << (x & 0x1f);
+	        plane1[x >> 5] |= (colorIndex >> 1) << (x & 0x1f);
+	        numeratorX += stepX;
+	        numeratorY += stepY;
+	        denominator += stepDenominator;
 	      }
+	      bits.setRowWords(0, y, plane0);
+	      bits.setRowWords(1, y, plane1);
+	      Arrays.fill(plane0, 0);
+	      Arrays.fill(plane1, 0);
+	      rowX += differences[6];
+	      rowY += differences[7];
+	      rowDenominator += differences[8];
 	    }
 	    return bits;
 	  }
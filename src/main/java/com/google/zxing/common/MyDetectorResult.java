@@ -7,10 +7,20 @@ public class MyDetectorResult {
 
 	  private final BitVectorMatrix bits;
 	  private final ResultPoint[] points;
+	  private final byte[] confidence;
 
 	  public MyDetectorResult(BitVectorMatrix bits, ResultPoint[] points) {
+	    this(bits, points, null);
+	  }
+
+	  /**
+	   * @param confidence how reliably each module of bits was sampled, as rated by
+	   *  {@link MyGridSampler}, or null
+	   */
+	  public MyDetectorResult(BitVectorMatrix bits, ResultPoint[] points, byte[] confidence) {
 	    this.bits = bits;
 	    this.points = points;
+	    this.confidence = confidence;
 	  }
 
 	  public final BitVectorMatrix getBits() {
@@ -21,4 +31,11 @@ public class MyDetectorResult {
 	    return points;
 	  }
 
+	  /**
+	   * @return how reliably each module was sampled, see {@link MyGridSampler#MAX_CONFIDENCE}, or null
+	   */
+	  public final byte[] getConfidence() {
+	    return confidence;
+	  }
+
 }
@@ -1,10 +1,15 @@
 package main.java.com.google.zxing.common;
 
+import java.util.Arrays;
+
 import main.java.com.google.zxing.NotFoundException;
 
 public abstract class MyGridSampler {
 
-	  private static MyGridSampler gridSampler = new MyDefaultGridSampler();
+	  /** Rating of a module read without any doubt, see the confidence of sampleGrid(). */
+	  public static final int MAX_CONFIDENCE = 255;
+
+	  private static volatile MyGridSampler gridSampler = new MyDefaultGridSampler();
 
 	  /**
 	   * Sets the implementation of GridSampler used by the library. One global
@@ -12,6 +17,7 @@ public abstract class MyGridSampler {
 	   * ought to be appropriate for the entire platform, and all uses of this library
 	   * in the whole lifetime of the JVM. For instance, an Android activity can swap in
 	   * an implementation that takes advantage of native platform libraries.
+	   * The instance is shared by every thread which decodes, so it must be thread-safe.
 	   * 
 	   * @param newGridSampler The platform-specific object to install.
 	   */
@@ -72,6 +78,46 @@ public abstract class MyGridSampler {
 	                                       int dimensionY,
 	                                       PerspectiveTransform transform) throws NotFoundException;
 
+	  /**
+	   * Like {@link #sampleGrid(BitVectorMatrix, int, int, PerspectiveTransform)}, but may sample into
+	   * "reuse" instead of allocating a new matrix. The default implementation always allocates.
+	   *
+	   * @param reuse a matrix owned by the caller, which is cleared and returned if it has the
+	   *   requested dimensions; may be null
+	   * @return "reuse" or a new {@link BitVectorMatrix} with the sampled modules
+	   * @throws NotFoundException if image can't be sampled
+	   */
+	  public BitVectorMatrix sampleGrid(BitVectorMatrix image,
+	                                    int dimensionX,
+	                                    int dimensionY,
+	                                    PerspectiveTransform transform,
+	                                    BitVectorMatrix reuse) throws NotFoundException {
+	    return sampleGrid(image, dimensionX, dimensionY, transform);
+	  }
+
+	  /**
+	   * Like {@link #sampleGrid(BitVectorMatrix, int, int, PerspectiveTransform, BitVectorMatrix)},
+	   * also rating how reliably each module was read. The default implementation reads a single
+	   * pixel per module and rates every module {@link #MAX_CONFIDENCE}.
+	   *
+	   * @param confidence receives the rating of module (x, y) at index y * dimensionX + x, from 0
+	   *   (a coin toss) to {@link #MAX_CONFIDENCE} (no doubt), read as unsigned bytes; may be null
+	   * @return "reuse" or a new {@link BitVectorMatrix} with the sampled modules
+	   * @throws NotFoundException if image can't be sampled
+	   */
+	  public BitVectorMatrix sampleGrid(BitVectorMatrix image,
+	                                    int dimensionX,
+	                                    int dimensionY,
+	                                    PerspectiveTransform transform,
+	                                    BitVectorMatrix reuse,
+	                                    byte[] confidence) throws NotFoundException {
+	    BitVectorMatrix bits = sampleGrid(image, dimensionX, dimensionY, transform, reuse);
+	    if (confidence != null) {
+	      Arrays.fill(confidence, 0, dimensionX * dimensionY, (byte) MAX_CONFIDENCE);
+	    }
+	    return bits;
+	  }
+
 	  /**
 	   * <p>Checks a set of points that have been transformed to sample points on an image against
 	   * the image's dimensions to see if the point are even within the image.</p>
@@ -0,0 +1,214 @@
+package main.java.com.google.zxing.common;
+
+import java.util.Arrays;
+
+import main.java.com.google.zxing.NotFoundException;
+
+/**
+ * <p>{@link MyGridSampler} which reads every module as the majority of a small square of pixels
+ * around its center, rather than as the single pixel at its center, so that a blurred or slightly
+ * misregistered edge between two colours does not flip the module.</p>
+ *
+ * <p>Each plane is voted on by itself: the module takes the value of a plane that more than half
+ * of the pixels of its square have, ties going to the pixel at the center. The squares are counted
+ * from integer prefix sums of both planes over the region covered by the code, in constant time
+ * per module whatever their size. The square is k pixels wide, but never wider than the modules,
+ * so that it does not reach into their neighbours.</p>
+ *
+ * <p>The margin of the vote is the confidence of the module, see
+ * {@link #sampleGrid(BitVectorMatrix, int, int, PerspectiveTransform, BitVectorMatrix, byte[])}:
+ * {@link MyGridSampler#MAX_CONFIDENCE} when the square is of one colour, 0 when one of the planes
+ * is split in half.</p>
+ *
+ * <p>Like {@link MyDefaultGridSampler}, it holds no state, so one instance can be used by any number
+ * of threads.</p>
+ *
+ * @author Francesco Benedetto
+ *
+ */
+public class MyVotingGridSampler extends MyDefaultGridSampler {
+
+	  private static final int DEFAULT_WINDOW = 3;
+
+	  private final int halfWindow;
+
+	  public MyVotingGridSampler() {
+	    this(DEFAULT_WINDOW);
+	  }
+
+	  /**
+	   * @param window width in pixels of the square voting for a module: an odd number, at least 1
+	   */
+	  public MyVotingGridSampler(int window) {
+	    if (window < 1 || (window & 1) == 0) {
+	      throw new IllegalArgumentException("Window must be odd and positive");
+	    }
+	    this.halfWindow = window / 2;
+	  }
+
+	  @Override
+	  public BitVectorMatrix sampleGrid(BitVectorMatrix image,
+	                              int dimensionX,
+	                              int dimensionY,
+	                              PerspectiveTransform transform,
+	                              BitVectorMatrix reuse) throws NotFoundException {
+	    return sampleGrid(image, dimensionX, dimensionY, transform, reuse, null);
+	  }
+
+	  @Override
+	  public BitVectorMatrix sampleGrid(BitVectorMatrix image,
+	                              int dimensionX,
+	                              int dimensionY,
+	                              PerspectiveTransform transform,
+	                              BitVectorMatrix reuse,
+	                              byte[] confidence) throws NotFoundException {
+	    if (dimensionX <= 0 || dimensionY <= 0) {
+	      throw NotFoundException.getNotFoundInstance();
+	    }
+	    int width = image.getWidth();
+	    int height = image.getHeight();
+	    int radius = Math.min(halfWindow, moduleRadius(transform, dimensionX, dimensionY));
+
+	    // The region to count: the corners of the grid, widened by the squares, within the image
+	    float[] corners = {0.0f, 0.0f, dimensionX, 0.0f, 0.0f, dimensionY, dimensionX, dimensionY};
+	    transform.transformPoints(corners);
+	    float minX = Float.POSITIVE_INFINITY;
+	    float maxX = Float.NEGATIVE_INFINITY;
+	    float minY = Float.POSITIVE_INFINITY;
+	    float maxY = Float.NEGATIVE_INFINITY;
+	    for (int i = 0; i < corners.length; i += 2) {
+	      minX = Math.min(minX, corners[i]);
+	      maxX = Math.max(maxX, corners[i]);
+	      minY = Math.min(minY, corners[i + 1]);
+	      maxY = Math.max(maxY, corners[i + 1]);
+	    }
+	    // NaN fails too
+	    if (!(minX < width + 1.0f && maxX > -2.0f && minY < height + 1.0f && maxY > -2.0f)) {
+	      throw NotFoundException.getNotFoundInstance();
+	    }
+	    int left = Math.max(0, (int) minX - radius - 1);
+	    int right = Math.min(width, (int) maxX + radius + 2);
+	    int top = Math.max(0, (int) minY - radius - 1);
+	    int bottom = Math.min(height, (int) maxY + radius + 2);
+	    int regionWidth = right - left;
+	    int[] sums0 = new int[(regionWidth + 1) * (bottom - top + 1)];
+	    int[] sums1 = new int[sums0.length];
+	    prefixSums(image, 0, left, right, top, bottom, sums0);
+	    prefixSums(image, 1, left, right, top, bottom, sums1);
+
+	    BitVectorMatrix bits;
+	    if (reuse != null && reuse.getWidth() == dimensionX && reuse.getHeight() == dimensionY) {
+	      // Every row is overwritten
+	      bits = reuse;
+	    } else {
+	      bits = new BitVectorMatrix(dimensionX, dimensionY);
+	    }
+	    int[] plane0 = new int[bits.getRowSize()];
+	    int[] plane1 = new int[bits.getRowSize()];
+	    int stride = regionWidth + 1;
+	    // Sample the centers of the modules, stepping the transform as MyDefaultGridSampler does
+	    double[] differences = transform.forwardDifferences(0.5f, 0.5f);
+	    double rowX = differences[0];
+	    double rowY = differences[1];
+	    double rowDenominator = differences[2];
+	    double stepX = differences[3];
+	    double stepY = differences[4];
+	    double stepDenominator = differences[5];
+	    for (int y = 0; y < dimensionY; y++) {
+	      double numeratorX = rowX;
+	      double numeratorY = rowY;
+	      double denominator = rowDenominator;
+	      for (int x = 0; x < dimensionX; x++) {
+	        double scale = 1.0 / denominator;
+	        double pointX = numeratorX * scale;
+	        double pointY = numeratorY * scale;
+	        if (!(pointX > -2.0 && pointX < width + 1.0 && pointY > -2.0 && pointY < height + 1.0)) {
+	          throw NotFoundException.getNotFoundInstance();
+	        }
+	        // Nudged onto the counted region, which holds the image near the code
+	        int imageX = Math.min(Math.max((int) pointX, left), right - 1);
+	        int imageY = Math.min(Math.max((int) pointY, top), bottom - 1);
+	        int fromX = Math.max(imageX - radius, left) - left;
+	        int toX = Math.min(imageX + radius + 1, right) - left;
+	        int fromY = Math.max(imageY - radius, top) - top;
+	        int toY = Math.min(imageY + radius + 1, bottom) - top;
+	        int area = (toX - fromX) * (toY - fromY);
+	        int topLeft = fromY * stride + fromX;
+	        int topRight = fromY * stride + toX;
+	        int bottomLeft = toY * stride + fromX;
+	        int bottomRight = toY * stride + toX;
+	        int count0 = sums0[bottomRight] - sums0[bottomLeft] - sums0[topRight] + sums0[topLeft];
+	        int count1 = sums1[bottomRight] - sums1[bottomLeft] - sums1[topRight] + sums1[topLeft];
+	        int margin0 = 2 * count0 - area;
+	        int margin1 = 2 * count1 - area;
+	        int colorIndex = 0;
+	        if (margin0 == 0 || margin1 == 0) {
+	          colorIndex = image.getColorIndex(imageX, imageY);
+	        }
+	        int bit0 = margin0 == 0 ? colorIndex & 1 : margin0 > 0 ? 1 : 0;
+	        int bit1 = margin1 == 0 ? colorIndex >> 1 : margin1 > 0 ? 1 : 0;
+	        plane0[x >> 5] |= bit0 << (x & 0x1f);
+	        plane1[x >> 5] |= bit1 << (x & 0x1f);
+	        if (confidence != null) {
+	          int margin = Math.min(Math.abs(margin0), Math.abs(margin1));
+	          confidence[y * dimensionX + x] = (byte) (margin * MAX_CONFIDENCE / area);
+	        }
+	        numeratorX += stepX;
+	        numeratorY += stepY;
+	        denominator += stepDenominator;
+	      }
+	      bits.setRowWords(0, y, plane0);
+	      bits.setRowWords(1, y, plane1);
+	      Arrays.fill(plane0, 0);
+	      Arrays.fill(plane1, 0);
+	      rowX += differences[6];
+	      rowY += differences[7];
+	      rowDenominator += differences[8];
+	    }
+	    return bits;
+	  }
+
+	  /**
+	   * @return the largest half width of a square that fits in the modules at the center of the
+	   *  grid, where the code is sharpest
+	   */
+	  private static int moduleRadius(PerspectiveTransform transform, int dimensionX, int dimensionY) {
+	    float centerX = dimensionX / 2;
+	    float centerY = dimensionY / 2;
+	    float[] points = {centerX, centerY, centerX + 1.0f, centerY, centerX, centerY + 1.0f};
+	    transform.transformPoints(points);
+	    float sizeX = (float) Math.hypot(points[2] - points[0], points[3] - points[1]);
+	    float sizeY = (float) Math.hypot(points[4] - points[0], points[5] - points[1]);
+	    float moduleSize = Math.min(sizeX, sizeY);
+	    // NaN gives 0
+	    return moduleSize >= 1.0f ? (int) ((moduleSize - 1.0f) / 2.0f) : 0;
+	  }
+
+	  /**
+	   * Fills sums with the number of set pixels of a plane in each rectangle of the region whose
+	   * top left corner is (left, top): sums[(y - top) * (right - left + 1) + (x - left)] counts the
+	   * pixels above y and left of x. The first row and column are zero.
+	   */
+	  private static void prefixSums(BitVectorMatrix image,
+	                                 int plane,
+	                                 int left,
+	                                 int right,
+	                                 int top,
+	                                 int bottom,
+	                                 int[] sums) {
+	    int stride = right - left + 1;
+	    int[] words = new int[image.getRowSize()];
+	    for (int y = top; y < bottom; y++) {
+	      // Only the words of the region, which are all a lazily binarized image needs to binarize
+	      image.getRowWords(plane, y, left, right, words);
+	      int offset = (y - top + 1) * stride;
+	      int above = offset - stride;
+	      int rowCount = 0;
+	      for (int x = left; x < right; x++) {
+	        rowCount += (words[x >> 5] >>> (x & 0x1f)) & 1;
+	        sums[offset + x - left + 1] = sums[above + x - left + 1] + rowCount;
+	      }
+	    }
+	  }
+
+}
@@ -0,0 +1,70 @@
+package main.java.com.google.zxing.common;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <p>Runs the binarization of an image as horizontal strips on a {@link ForkJoinPool}. Every row
+ * of a {@link BitVectorMatrix} begins with a new word, so strips made of whole rows write disjoint
+ * words of the shared matrix and need no locking.</p>
+ *
+ * <p>Strips are multiples of the 8-row blocks of the hybrid binarizers, and hold at least
+ * {@link #MIN_STRIP_PIXELS} pixels so that small images are not split at all.</p>
+ */
+final class ParallelStrips {
+
+  /** Binarizes a range of rows. Called concurrently for disjoint ranges. */
+  interface Rows {
+    void binarize(int fromY, int toY);
+  }
+
+  private static final int BLOCK_SIZE = 8;
+  private static final int BLOCK_SIZE_MASK = BLOCK_SIZE - 1;
+  private static final int MIN_STRIP_PIXELS = 1 << 18;
+
+  private ParallelStrips() {
+  }
+
+  /**
+   * Binarizes rows 0 to height - 1 of an image of the given width, on the calling thread if pool
+   * is null or the image is too small to be worth splitting.
+   */
+  static void binarize(ForkJoinPool pool, int width, int height, Rows rows) {
+    int stripHeight = (MIN_STRIP_PIXELS / width + BLOCK_SIZE_MASK) & ~BLOCK_SIZE_MASK;
+    if (pool == null || height <= stripHeight) {
+      rows.binarize(0, height);
+      return;
+    }
+    pool.invoke(new Strip(rows, 0, height, stripHeight));
+  }
+
+  private static final class Strip extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Rows rows;
+    private final int fromY;
+    private final int toY;
+    private final int stripHeight;
+
+    Strip(Rows rows, int fromY, int toY, int stripHeight) {
+      this.rows = rows;
+      this.fromY = fromY;
+      this.toY = toY;
+      this.stripHeight = stripHeight;
+    }
+
+    @Override
+    protected void compute() {
+      // Split in the middle, on a block boundary
+      int middle = ((fromY + toY) >> 1) & ~BLOCK_SIZE_MASK;
+      if (toY - fromY <= stripHeight || middle <= fromY) {
+        rows.binarize(fromY, toY);
+        return;
+      }
+      invokeAll(new Strip(rows, fromY, middle, stripHeight),
+                new Strip(rows, middle, toY, stripHeight));
+    }
+  }
+
+}
@@ -153,4 +153,19 @@ public final class PerspectiveTransform {
 
   }
 
+  /**
+   * @return the x and y numerators and the denominator of the transform of (x, y), followed by
+   *  their increments for a step of 1 along x, then along y, so that a grid of points can be
+   *  transformed with additions instead of products
+   */
+  double[] forwardDifferences(float x, float y) {
+    return new double[] {
+        (double) a11 * x + (double) a21 * y + a31,
+        (double) a12 * x + (double) a22 * y + a32,
+        (double) a13 * x + (double) a23 * y + a33,
+        a11, a12, a13,
+        a21, a22, a23
+    };
+  }
+
 }
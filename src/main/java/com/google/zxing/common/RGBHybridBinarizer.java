@@ -1,7 +1,10 @@
 package main.java.com.google.zxing.common;
 
+import java.util.concurrent.ForkJoinPool;
+
 import main.java.com.google.zxing.LuminanceSource;
 import main.java.com.google.zxing.NotFoundException;
+import main.java.com.google.zxing.Palette;
 import main.java.com.google.zxing.SimpleBinarizer;
 
 public final class RGBHybridBinarizer extends SimpleGlobalHistogramBinarizer {
@@ -22,6 +25,14 @@ public final class RGBHybridBinarizer extends SimpleGlobalHistogramBinarizer {
 	public RGBHybridBinarizer(LuminanceSource source) {
 	    super(source);
 	}
+
+	/**
+	 * @param source image to binarize
+	 * @param pool if not null, large images are binarized in strips of rows on this pool
+	 */
+	public RGBHybridBinarizer(LuminanceSource source, ForkJoinPool pool) {
+	    super(source, pool);
+	}
 	  
 	public BitVectorMatrix getMatrix () {
 		  return matrix;
@@ -29,7 +40,7 @@ public final class RGBHybridBinarizer extends SimpleGlobalHistogramBinarizer {
 	
 	@Override
 	  public SimpleBinarizer createBinarizer(LuminanceSource source) {
-	    return new SimpleHybridBinarizer(source);
+	    return new SimpleHybridBinarizer(source, getPool());
 	}
 	
 	@Override
@@ -38,23 +49,19 @@ public final class RGBHybridBinarizer extends SimpleGlobalHistogramBinarizer {
 	      return matrix;
 	    }
 	    LuminanceSource source = getLuminanceSource();
-	    int[][] palette = source.getPalette();
-	    int width = source.getWidth();
+	    Palette sourcePalette = source.getPalette();
+	    final Palette palette = sourcePalette != null ? sourcePalette : Palette.IDEAL;
+	    final int width = source.getWidth();
 	    int height = source.getHeight();
 	    if (width >= MINIMUM_DIMENSION && height >= MINIMUM_DIMENSION) {
-	      byte[][] rgbValues = source.getByteMatrix();
-	      int subWidth = width >> BLOCK_SIZE_POWER;
-	      if ((width & BLOCK_SIZE_MASK) != 0) {
-	        subWidth++;
-	      }
-	      int subHeight = height >> BLOCK_SIZE_POWER;
-	      if ((height & BLOCK_SIZE_MASK) != 0) {
-	        subHeight++;
-	      }
-
-	      BitVectorMatrix newMatrix = new BitVectorMatrix(width, height);
-	      
-	      calculateThresholdForBlock(rgbValues, subWidth, subHeight, width, height, newMatrix, palette);
+	      final byte[][] rgbValues = source.getByteMatrix();
+	      final BitVectorMatrix newMatrix = new BitVectorMatrix(width, height);
+	      ParallelStrips.binarize(getPool(), width, height, new ParallelStrips.Rows() {
+	        @Override
+	        public void binarize(int fromY, int toY) {
+	          thresholdRows(rgbValues, width, fromY, toY, newMatrix, palette);
+	        }
+	      });
 	      matrix = newMatrix;
 	      //System.out.println("matrix-toString\n"+matrix.toString());
 	    } else {
@@ -65,116 +72,95 @@ public final class RGBHybridBinarizer extends SimpleGlobalHistogramBinarizer {
 	    return matrix;
 	}
 	
-	private static void calculateThresholdForBlock(byte[][] rgbValues,
-            int subWidth,
-            int subHeight,
+	/**
+	 * Gives every pixel of rows fromY to toY - 1 the colour of the palette nearest to it, a row at
+	 * a time: the bits of 32 pixels are gathered in a register and each plane word is stored once.
+	 */
+	private static void thresholdRows(byte[][] rgbValues,
             int width,
-            int height,
-            BitVectorMatrix matrix, int[][] palette) {
-		for (int y = 0; y < subHeight; y++) {
-			int yoffset = y << BLOCK_SIZE_POWER;
-			int maxYOffset = height - BLOCK_SIZE;
-			if (yoffset > maxYOffset) {
-				yoffset = maxYOffset;
-				}
-			for (int x = 0; x < subWidth; x++) {
-				int xoffset = x << BLOCK_SIZE_POWER;
-				int maxXOffset = width - BLOCK_SIZE;
-				if (xoffset > maxXOffset) {
-					xoffset = maxXOffset;
-					}
-				thresholdBlock(rgbValues, xoffset, yoffset, width, matrix, palette);
-			}
-		 }
-	}
-	
-	private static void thresholdBlock(byte[][] rgbValues,
-            int xoffset,
-            int yoffset,
-            int stride,
-            BitVectorMatrix matrix, int[][] palette) {
+            int fromY,
+            int toY,
+            BitVectorMatrix matrix, Palette palette) {
 		
-		for (int y = 0, offset = yoffset * stride + xoffset; y < BLOCK_SIZE; y++, offset += stride) {
-			for (int x = 0; x < BLOCK_SIZE; x++) {
-				int[] temp = {(rgbValues[0][offset + x] & 0xFF), (rgbValues[1][offset + x] & 0xFF), (rgbValues[2][offset + x] & 0xFF)};
-				//System.out.println("temp-0="+temp[0]+"; temp-1="+temp[1]+"; temp-2="+temp[2]);
-				
-				
-				/*double redSum = Math.pow((temp[0]-red[0]), 2) + Math.pow((temp[1]-red[1]), 2) + Math.pow((temp[2]-red[2]), 2);
-				double distFromRed = Math.sqrt(redSum);
-				
-				double greenSum = Math.pow((temp[0]-green[0]), 2) + Math.pow((temp[1]-green[1]), 2) + Math.pow((temp[2]-green[2]), 2);
-				double distFromGreen = Math.sqrt(greenSum);
-				
-				double blackSum = Math.pow((temp[0]-black[0]), 2) + Math.pow((temp[1]-black[1]), 2) + Math.pow((temp[2]-black[2]), 2);
-				double distFromBlack = Math.sqrt(blackSum);
-				
-				double whiteSum = Math.pow((temp[0]-white[0]), 2) + Math.pow((temp[1]-white[1]), 2) + Math.pow((temp[2]-white[2]), 2);
-				double distFromWhite = Math.sqrt(whiteSum);
-				*/
-				
-				double a1 = (temp[0]-palette[0][0]);
-		    	double a2 = (temp[1]-palette[0][1]);
-		    	double a3 = (temp[2]-palette[0][2]);
-				
-				double redSum = a1*a1 + a2*a2 + a3*a3;
-				//double distFromRed = Math.sqrt(redSum);
-				
-				a1 = (temp[0]-palette[1][0]);
-		    	a2 = (temp[1]-palette[1][1]);
-		    	a3 = (temp[2]-palette[1][2]);
-				
-				double greenSum = a1*a1 + a2*a2 + a3*a3;
-				//double distFromGreen = Math.sqrt(greenSum);
-				
-				a1 = (temp[0]-palette[2][0]);
-		    	a2 = (temp[1]-palette[2][1]);
-		    	a3 = (temp[2]-palette[2][2]);
-				
-				double blackSum = a1*a1 + a2*a2 + a3*a3;
-				//double distFromBlack = Math.sqrt(blackSum);
-				
-				a1 = (temp[0]-palette[3][0]);
-		    	a2 = (temp[1]-palette[3][1]);
-		    	a3 = (temp[2]-palette[3][2]);
-				
-				double whiteSum = a1*a1 + a2*a2 + a3*a3;
-				//double distFromWhite = Math.sqrt(whiteSum);
-				
-				double min = redSum;
-				//System.out.println("dist-red = "+distFromRed);
-				if (min > greenSum) {
-					min = greenSum;
-					//System.out.println("dist-green = "+distFromGreen);
-				}
-				if (min > blackSum) {
-					//System.out.println("dist-black = "+distFromBlack);
-					min = blackSum;
-				}
-				if (min > whiteSum) {
-					min = whiteSum;
-					//System.out.println("dist-white = "+distFromWhite);
+		int redR = (palette.getRed() >> 16) & 0xFF;
+		int redG = (palette.getRed() >> 8) & 0xFF;
+		int redB = palette.getRed() & 0xFF;
+		int greenR = (palette.getGreen() >> 16) & 0xFF;
+		int greenG = (palette.getGreen() >> 8) & 0xFF;
+		int greenB = palette.getGreen() & 0xFF;
+		int blackR = (palette.getBlack() >> 16) & 0xFF;
+		int blackG = (palette.getBlack() >> 8) & 0xFF;
+		int blackB = palette.getBlack() & 0xFF;
+		int whiteR = (palette.getWhite() >> 16) & 0xFF;
+		int whiteG = (palette.getWhite() >> 8) & 0xFF;
+		int whiteB = palette.getWhite() & 0xFF;
+
+		byte[] reds = rgbValues[0];
+		byte[] greens = rgbValues[1];
+		byte[] blues = rgbValues[2];
+		int rowSize = matrix.getRowSize();
+		int[] plane0 = new int[rowSize];
+		int[] plane1 = new int[rowSize];
+		for (int y = fromY, offset = fromY * width; y < toY; y++) {
+			for (int word = 0, x = 0; word < rowSize; word++) {
+				int end = Math.min(x + 32, width);
+				int bits0 = 0;
+				int bits1 = 0;
+				for (int bit = 1; x < end; x++, offset++, bit <<= 1) {
+					int r = reds[offset] & 0xFF;
+					int g = greens[offset] & 0xFF;
+					int b = blues[offset] & 0xFF;
+
+					// Squared euclidean distances from the colours of the palette
+					int a1 = r - redR;
+					int a2 = g - redG;
+					int a3 = b - redB;
+					int redSum = a1*a1 + a2*a2 + a3*a3;
+
+					a1 = r - greenR;
+					a2 = g - greenG;
+					a3 = b - greenB;
+					int greenSum = a1*a1 + a2*a2 + a3*a3;
+
+					a1 = r - blackR;
+					a2 = g - blackG;
+					a3 = b - blackB;
+					int blackSum = a1*a1 + a2*a2 + a3*a3;
+
+					a1 = r - whiteR;
+					a2 = g - whiteG;
+					a3 = b - whiteB;
+					int whiteSum = a1*a1 + a2*a2 + a3*a3;
+
+					int min = redSum;
+					if (min > greenSum) {
+						min = greenSum;
+					}
+					if (min > blackSum) {
+						min = blackSum;
+					}
+					if (min > whiteSum) {
+						min = whiteSum;
+					}
+
+					// On ties black wins over red, red over green and green over white
+					if (min == blackSum) {
+						bits0 |= bit;
+						bits1 |= bit;
+					}
+					else if (min == redSum) {
+						bits0 |= bit;
+					}
+					else if (min == greenSum) {
+						bits1 |= bit;
+					}
 				}
-				//System.out.println("min="+min);
-				
-				
-				
-				if (min == blackSum) {
-					  //System.out.println("black");
-			          matrix.set(xoffset + x, yoffset + y, 0);
-			          matrix.set(xoffset + x, yoffset + y, 1);
-			    }
-			    else if (min == redSum) {
-			    	    //System.out.println("red");
-			        	matrix.set(xoffset + x, yoffset + y, 0);
-			    }
-			    else if (min == greenSum) {
-			    	    //System.out.println("green");
-			        	matrix.set(xoffset + x, yoffset + y, 1);
-			    }
+				plane0[word] = bits0;
+				plane1[word] = bits1;
 			}
+			matrix.setRowWords(0, y, plane0);
+			matrix.setRowWords(1, y, plane1);
 		}
-		//matrix.toString();
 	}
 	
 }
@@ -0,0 +1,307 @@
+package main.java.com.google.zxing.common;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import main.java.com.google.zxing.ByteBufferRGBSource;
+import main.java.com.google.zxing.LuminanceSource;
+import main.java.com.google.zxing.NotFoundException;
+import main.java.com.google.zxing.Palette;
+import main.java.com.google.zxing.SimpleBinarizer;
+import main.java.com.google.zxing.YUVColorSource;
+
+/**
+ * <p>Binarizes the RGB planes of an image straight into the two planes of a
+ * {@link BitVectorMatrix}, without going through luminance.</p>
+ *
+ * <p>Like {@link RGBHybridBinarizer}, every pixel gets the colour of the palette of the image
+ * (see {@link LuminanceSource#getPalette()}) nearest to it. Rather than computing four distances
+ * per pixel, the colour cube is quantized to 32x32x32 cells and the nearest colour of the centre of
+ * every cell is computed once per palette, so each pixel costs a single table lookup and no
+ * branch. Because the table follows the palette estimated for the image, colour-shifted prints
+ * are separated as well as clean ones.</p>
+ *
+ * <p>The pixels of a {@link YUVColorSource} are classified straight from their Y, U and V values,
+ * with a table over the quantized YUV cube, so camera frames are never converted to RGB.</p>
+ *
+ * @author Francesco Benedetto
+ *
+ */
+public final class RGBLookupBinarizer extends SimpleGlobalHistogramBinarizer {
+
+	private static final int MINIMUM_DIMENSION = 40;
+	// Rows kept by the lazily binarized matrix, the height of one of its tiles
+	private static final int CACHED_ROWS = 32;
+	// Bits of each channel used to index the table
+	private static final int CELL_BITS = 5;
+	private static final int CELL_SHIFT = 8 - CELL_BITS;
+	private static final int CELLS = 1 << CELL_BITS;
+	// Colour indices of black, red, green and white
+	private static final int[] COLOR_INDICES =
+	    {BitVectorMatrix.BLACK, BitVectorMatrix.RED, BitVectorMatrix.GREEN, BitVectorMatrix.WHITE};
+
+	private static final byte[] IDEAL_TABLE = buildTable(Palette.IDEAL);
+	private static final byte[] IDEAL_YUV_TABLE = buildYUVTable(Palette.IDEAL);
+
+	private BitVectorMatrix matrix;
+
+	public RGBLookupBinarizer(LuminanceSource source) {
+	    super(source);
+	}
+
+	/**
+	 * @param source image to binarize
+	 * @param pool if not null, large images are binarized in strips of rows on this pool
+	 */
+	public RGBLookupBinarizer(LuminanceSource source, ForkJoinPool pool) {
+	    super(source, pool);
+	}
+
+	@Override
+	public SimpleBinarizer createBinarizer(LuminanceSource source) {
+	    return new RGBLookupBinarizer(source, getPool());
+	}
+
+	@Override
+	public BitVectorMatrix getBlackMatrix() throws NotFoundException {
+	    if (matrix != null) {
+	      return matrix;
+	    }
+	    LuminanceSource source = getLuminanceSource();
+	    final int width = source.getWidth();
+	    int height = source.getHeight();
+	    if (width < MINIMUM_DIMENSION || height < MINIMUM_DIMENSION) {
+	      // If the image is too small, fall back to the global histogram approach.
+	      matrix = super.getBlackMatrix();
+	      return matrix;
+	    }
+	    Palette palette = source.getPalette();
+	    boolean ideal = palette == null || palette.equals(Palette.IDEAL);
+	    final BitVectorMatrix newMatrix = new BitVectorMatrix(width, height);
+	    if (source instanceof YUVColorSource) {
+	      final YUVColorSource yuvSource = (YUVColorSource) source;
+	      final byte[] table = ideal ? IDEAL_YUV_TABLE : buildYUVTable(palette);
+	      ParallelStrips.binarize(getPool(), width, height, new ParallelStrips.Rows() {
+	        @Override
+	        public void binarize(int fromY, int toY) {
+	          classifyYUVRows(yuvSource, table, width, fromY, toY, newMatrix);
+	        }
+	      });
+	      matrix = newMatrix;
+	      return matrix;
+	    }
+	    final byte[] table = ideal ? IDEAL_TABLE : buildTable(palette);
+	    final byte[][] rgbValues = source.getByteMatrix();
+	    ParallelStrips.binarize(getPool(), width, height, new ParallelStrips.Rows() {
+	      @Override
+	      public void binarize(int fromY, int toY) {
+	        classifyRows(rgbValues, table, width, fromY, toY, newMatrix);
+	      }
+	    });
+	    matrix = newMatrix;
+	    return matrix;
+	}
+
+	/**
+	 * Binarizes the RGB planes tile by tile as they are read, see {@link LazyBitVectorMatrix}, with
+	 * the table of {@link #getBlackMatrix()}. The samples of a {@link ByteBufferRGBSource} are read
+	 * a row at a time, so that its frame is never copied onto the heap; the rows of the last band
+	 * of tiles read are kept, as the tiles of a band are mostly binarized one after the other. A
+	 * {@link YUVColorSource} is binarized up front, as are small images.
+	 */
+	@Override
+	public BitVectorMatrix getLazyBlackMatrix() throws NotFoundException {
+	    if (matrix != null) {
+	      return matrix;
+	    }
+	    LuminanceSource source = getLuminanceSource();
+	    final int width = source.getWidth();
+	    int height = source.getHeight();
+	    if (width < MINIMUM_DIMENSION || height < MINIMUM_DIMENSION || source instanceof YUVColorSource) {
+	      return getBlackMatrix();
+	    }
+	    Palette palette = source.getPalette();
+	    boolean ideal = palette == null || palette.equals(Palette.IDEAL);
+	    final byte[] table = ideal ? IDEAL_TABLE : buildTable(palette);
+	    if (source instanceof ByteBufferRGBSource) {
+	      final ByteBufferRGBSource bufferSource = (ByteBufferRGBSource) source;
+	      matrix = new LazyBitVectorMatrix(width, height, new LazyBitVectorMatrix.RowBinarizer() {
+	        // Row y is kept at y % CACHED_ROWS. The matrix calls the binarizer from one thread at a time
+	        private final byte[][][] rows = new byte[CACHED_ROWS][][];
+	        private final int[] rowIndices = new int[CACHED_ROWS];
+
+	        {
+	          Arrays.fill(rowIndices, -1);
+	        }
+
+	        @Override
+	        public void binarize(int y, int fromWord, int toWord, int[] plane0, int[] plane1) {
+	          int slot = y % CACHED_ROWS;
+	          if (rowIndices[slot] != y) {
+	            if (rows[slot] == null) {
+	              rows[slot] = new byte[3][width];
+	            }
+	            bufferSource.getRGBRow(y, rows[slot][0], rows[slot][1], rows[slot][2]);
+	            rowIndices[slot] = y;
+	          }
+	          classifyWords(rows[slot], table, 0, width, fromWord, toWord, plane0, plane1);
+	        }
+	      });
+	      return matrix;
+	    }
+	    final byte[][] rgbValues = source.getByteMatrix();
+	    matrix = new LazyBitVectorMatrix(width, height, new LazyBitVectorMatrix.RowBinarizer() {
+	      @Override
+	      public void binarize(int y, int fromWord, int toWord, int[] plane0, int[] plane1) {
+	        classifyWords(rgbValues, table, y * width, width, fromWord, toWord, plane0, plane1);
+	      }
+	    });
+	    return matrix;
+	}
+
+	/**
+	 * Builds the colour index (see {@link BitVectorMatrix#getColorIndex(int, int)}) of every cell
+	 * of the quantized colour cube, at (r << 10) | (g << 5) | b. Ties are broken like
+	 * {@link RGBHybridBinarizer}: black wins over red, red over green and green over white.
+	 */
+	static byte[] buildTable(Palette palette) {
+	    int[] colors = {palette.getBlack(), palette.getRed(), palette.getGreen(), palette.getWhite()};
+	    byte[] table = new byte[CELLS * CELLS * CELLS];
+	    int half = 1 << (CELL_SHIFT - 1);
+	    for (int r = 0, cell = 0; r < CELLS; r++) {
+	      int red = (r << CELL_SHIFT) + half;
+	      for (int g = 0; g < CELLS; g++) {
+	        int green = (g << CELL_SHIFT) + half;
+	        for (int b = 0; b < CELLS; b++, cell++) {
+	          int blue = (b << CELL_SHIFT) + half;
+	          table[cell] = nearestColorIndex(colors, red, green, blue);
+	        }
+	      }
+	    }
+	    return table;
+	}
+
+	/**
+	 * Like {@link #buildTable(Palette)}, over the quantized YUV cube at (y << 10) | (u << 5) | v:
+	 * the centre of every cell is converted to RGB (see {@link YUVColorSource#toRGB(int, int, int)})
+	 * before looking for the nearest colour.
+	 */
+	static byte[] buildYUVTable(Palette palette) {
+	    int[] colors = {palette.getBlack(), palette.getRed(), palette.getGreen(), palette.getWhite()};
+	    byte[] table = new byte[CELLS * CELLS * CELLS];
+	    int half = 1 << (CELL_SHIFT - 1);
+	    for (int y = 0, cell = 0; y < CELLS; y++) {
+	      int luma = (y << CELL_SHIFT) + half;
+	      for (int u = 0; u < CELLS; u++) {
+	        int cb = (u << CELL_SHIFT) + half;
+	        for (int v = 0; v < CELLS; v++, cell++) {
+	          int rgb = YUVColorSource.toRGB(luma, cb, (v << CELL_SHIFT) + half);
+	          table[cell] = nearestColorIndex(colors, (rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF);
+	        }
+	      }
+	    }
+	    return table;
+	}
+
+	/**
+	 * @param colors black, red, green and white of the palette, in this order, so that ties are
+	 *  broken like {@link RGBHybridBinarizer}: black wins over red, red over green and green over white
+	 */
+	private static byte nearestColorIndex(int[] colors, int red, int green, int blue) {
+	    int best = 0;
+	    int bestDistance = Integer.MAX_VALUE;
+	    for (int i = 0; i < colors.length; i++) {
+	      int dr = red - ((colors[i] >> 16) & 0xFF);
+	      int dg = green - ((colors[i] >> 8) & 0xFF);
+	      int db = blue - (colors[i] & 0xFF);
+	      int distance = dr * dr + dg * dg + db * db;
+	      if (distance < bestDistance) {
+	        best = i;
+	        bestDistance = distance;
+	      }
+	    }
+	    return (byte) COLOR_INDICES[best];
+	}
+
+	private static void classifyRows(byte[][] rgbValues,
+	                                 byte[] table,
+	                                 int width,
+	                                 int fromY,
+	                                 int toY,
+	                                 BitVectorMatrix matrix) {
+	    int rowSize = matrix.getRowSize();
+	    int[] plane0 = new int[rowSize];
+	    int[] plane1 = new int[rowSize];
+	    for (int y = fromY; y < toY; y++) {
+	      classifyWords(rgbValues, table, y * width, width, 0, rowSize, plane0, plane1);
+	      matrix.setRowWords(0, y, plane0);
+	      matrix.setRowWords(1, y, plane1);
+	    }
+	}
+
+	/**
+	 * Classifies the pixels of a row covered by words fromWord to toWord - 1 of a matrix row, the
+	 * row starting at rowOffset in the RGB planes, into the same words of plane0 and plane1.
+	 */
+	private static void classifyWords(byte[][] rgbValues,
+	                                  byte[] table,
+	                                  int rowOffset,
+	                                  int width,
+	                                  int fromWord,
+	                                  int toWord,
+	                                  int[] plane0,
+	                                  int[] plane1) {
+	    byte[] reds = rgbValues[0];
+	    byte[] greens = rgbValues[1];
+	    byte[] blues = rgbValues[2];
+	    for (int word = fromWord, x = fromWord << 5, offset = rowOffset + x; word < toWord; word++) {
+	      int end = Math.min(x + 32, width);
+	      int bits0 = 0;
+	      int bits1 = 0;
+	      for (int shift = 0; x < end; x++, offset++, shift++) {
+	        int colorIndex = table[((reds[offset] & 0xF8) << 7)
+	                               | ((greens[offset] & 0xF8) << 2)
+	                               | ((blues[offset] & 0xFF) >> CELL_SHIFT)];
+	        bits0 |= (colorIndex & 1) << shift;
+	        bits1 |= (colorIndex >> 1) << shift;
+	      }
+	      plane0[word] = bits0;
+	      plane1[word] = bits1;
+	    }
+	}
+
+	private static void classifyYUVRows(YUVColorSource source,
+	                                    byte[] table,
+	                                    int width,
+	                                    int fromY,
+	                                    int toY,
+	                                    BitVectorMatrix matrix) {
+	    int rowSize = matrix.getRowSize();
+	    int[] plane0 = new int[rowSize];
+	    int[] plane1 = new int[rowSize];
+	    byte[] luma = new byte[width];
+	    byte[] u = new byte[width];
+	    byte[] v = new byte[width];
+	    for (int y = fromY; y < toY; y++) {
+	      source.getRow(y, luma);
+	      source.getChromaRow(y, u, v);
+	      for (int word = 0, x = 0; word < rowSize; word++) {
+	        int end = Math.min(x + 32, width);
+	        int bits0 = 0;
+	        int bits1 = 0;
+	        for (int shift = 0; x < end; x++, shift++) {
+	          int colorIndex = table[((luma[x] & 0xF8) << 7)
+	                                 | ((u[x] & 0xF8) << 2)
+	                                 | ((v[x] & 0xFF) >> CELL_SHIFT)];
+	          bits0 |= (colorIndex & 1) << shift;
+	          bits1 |= (colorIndex >> 1) << shift;
+	        }
+	        plane0[word] = bits0;
+	        plane1[word] = bits1;
+	      }
+	      matrix.setRowWords(0, y, plane0);
+	      matrix.setRowWords(1, y, plane1);
+	    }
+	}
+
+}
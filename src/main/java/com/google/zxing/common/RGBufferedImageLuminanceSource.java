@@ -1,15 +1,13 @@
 package main.java.com.google.zxing.common;
 
-import java.lang.Object;
-
 import java.awt.Graphics2D;
 import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
-import java.awt.image.WritableRaster;
 
 
 //import javase.BufferedImageLuminanceSource;
 import main.java.com.google.zxing.LuminanceSource;
+import main.java.com.google.zxing.Palette;
 
 public final class RGBufferedImageLuminanceSource extends LuminanceSource {
 	
@@ -21,15 +19,10 @@ public final class RGBufferedImageLuminanceSource extends LuminanceSource {
 	private final BufferedImage image;
 	private final int left;
 	private final int top;
+	// Red, green and blue of the pixels of the crop rectangle, row by row
+	private final byte[][] rgbValues;
 	
-	//rbg components
-	private static final int[] red = {255, 0, 0};
-	private static final int[] green = {0, 255, 0};
-	private static final int[] black = {0, 0, 0};
-	private static final int[] white = {255, 255, 255};
-	
-	//palette
-	private static int[][] palette = new int[4][3];
+	private final Palette palette;
 
 	public RGBufferedImageLuminanceSource(BufferedImage image) {
 	    this(image, 0, 0, image.getWidth(), image.getHeight());
@@ -39,171 +32,95 @@ public final class RGBufferedImageLuminanceSource extends LuminanceSource {
 		  return this.image;
     }
 	
+    /**
+     * Reads the pixels of the crop rectangle once, splitting them into their red, green and blue
+     * planes and estimating the palette on the way. The pixels of the common image types are read
+     * straight from the array backing the raster (see {@link ImageRowReader}).
+     */
     public RGBufferedImageLuminanceSource(BufferedImage image, int left, int top, int width, int height) {
 	    super(width, height);
 
-	    if (image.getType() == BufferedImage.TYPE_INT_RGB) {
-	      this.image = image;
-	    } else {
-	      int sourceWidth = image.getWidth();
-	      int sourceHeight = image.getHeight();
-	      if (left + width > sourceWidth || top + height > sourceHeight) {
-	        throw new IllegalArgumentException("Crop rectangle does not fit within image data.");
-	      }
-
-	      this.image = new BufferedImage(sourceWidth, sourceHeight, BufferedImage.TYPE_INT_RGB);
-
-	      WritableRaster raster = this.image.getRaster();
-	      int[] buffer = new int[width*3];
-	      
-	      double[] distances = new double[4];
-	      double minDistFromRed = Double.MAX_VALUE;
-	      double minDistFromGreen = Double.MAX_VALUE;
-	      double minDistFromBlack = Double.MAX_VALUE;
-	      double minDistFromWhite = Double.MAX_VALUE;
-	      
-	      for (int y = top; y < top + height; y++) {
-	        image.getRGB(left, y, width, 1, buffer, 0, sourceWidth);
-	        for (int x = 0; x < width; x++) {
-	        	
-	        	int pixel = buffer[x];
-	        	int[] a = new int[3];
-	        	
-	        	a[0] = ((pixel >> 16) & 0xFF); //red component
-	        	a[1] = ((pixel >> 8) & 0xFF); //green component
-	        	a[2] = ((pixel >> 0) & 0xFF); //blue component
-	        	
-	        	
-	        	
-	        	distances = euclideanDistance(a);
-	        	
-	        	if (minDistFromRed > distances[0]) {
-	        		minDistFromRed = distances[0];
-	        		palette[0] = a;
-	        	}
-	        	if (minDistFromGreen > distances[1]) {
-	        		minDistFromGreen = distances[1];
-	        		palette[1] = a;
-	        	}
-	        	if (minDistFromBlack > distances[2]) {
-	        		minDistFromBlack = distances[2];
-	        		palette[2] = a;
-	        	}
-	        	if (minDistFromWhite > distances[3]) {
-	        		minDistFromWhite = distances[3];
-	        		palette[3] = a;
-	        	}
-	        	
-	        	//System.out.println("temp = ("+(a[0] & 0xFF)+","+(a[1] & 0xFF)+","+(a[2] & 0xFF)+")");
-	        	raster.setPixel(x, y, a);  	
-	        }
+	    int sourceWidth = image.getWidth();
+	    int sourceHeight = image.getHeight();
+	    if (left + width > sourceWidth || top + height > sourceHeight) {
+	      throw new IllegalArgumentException("Crop rectangle does not fit within image data.");
+	    }
+
+	    Palette.Estimator estimator = new Palette.Estimator();
+	    ImageRowReader reader = new ImageRowReader(image);
+	    byte[] reds = new byte[width * height];
+	    byte[] greens = new byte[width * height];
+	    byte[] blues = new byte[width * height];
+	    int[] buffer = new int[width];
+	    for (int y = 0, offset = 0; y < height; y++) {
+	      reader.readRow(left, top + y, width, buffer);
+	      estimator.add(buffer, 0, width);
+	      for (int x = 0; x < width; x++, offset++) {
+	        int pixel = buffer[x];
+	        reds[offset] = (byte) (pixel >> 16);
+	        greens[offset] = (byte) (pixel >> 8);
+	        blues[offset] = (byte) pixel;
 	      }
-	      
-      }
-	  this.left = left;
-	  this.top = top;
-    }
-    
-    public double[] euclideanDistance (int[] rgbValues) {
-    	double[] dist = new double[4];
-    	
-    	double a1 = (rgbValues[0]-red[0]);
-    	double a2 = (rgbValues[1]-red[1]);
-    	double a3 = (rgbValues[2]-red[2]);
-    	
-    	double redSum = a1*a1 + a2*a2 + a3*a3;
-		//double distFromRed = Math.sqrt(redSum);
-		dist[0] = redSum;
-		
-		double b1 = (rgbValues[0]-green[0]);
-    	double b2 = (rgbValues[1]-green[1]);
-    	double b3 = (rgbValues[2]-green[2]);
-    	
-		
-		double greenSum = b1*b1 + b2*b2 +b3*b3;
-		//double distFromGreen = Math.sqrt(greenSum);
-		dist[1] = greenSum;
-		
-		double c1 = (rgbValues[0]-black[0]);
-    	double c2 = (rgbValues[1]-black[1]);
-    	double c3 = (rgbValues[2]-black[2]);
-		
-		double blackSum = c1*c1 + c2*c2 + c3*c3;
-		//double distFromBlack = Math.sqrt(blackSum);
-		dist[2] = blackSum;
-		
-		double d1 = (rgbValues[0]-white[0]);
-    	double d2 = (rgbValues[1]-white[1]);
-    	double d3 = (rgbValues[2]-white[2]);
-		
-		double whiteSum = d1*d1 + d2*d2 + d3*d3;
-		//double distFromWhite = Math.sqrt(whiteSum);
-		dist[3] = whiteSum;
-		
-		return dist;
+	    }
+	    this.image = image;
+	    this.left = left;
+	    this.top = top;
+	    this.rgbValues = new byte[][] {reds, greens, blues};
+	    this.palette = estimator.build();
     }
     
     @Override
-    public int[][] getPalette() {
+    public Palette getPalette() {
     	return palette;
     }
     
+    /**
+     * @return the red, green and blue values of one row, interleaved
+     */
     @Override
     public byte[] getRow(int y, byte[] row) {
       if (y < 0 || y >= getHeight()) {
         throw new IllegalArgumentException("Requested row is outside the image: " + y);
       }
       int width = getWidth();
-      System.out.println("width="+width+"; row.length="+row.length);
       if (row == null || row.length < width*3) {
         row = new byte[width*3];
       }
-      int index = 0;
-      int[] temp = new int[3];
-      for (int i = 0; i < width; i++) {
-    	  image.getRaster().getPixel(i, y, temp);
-    	  for (int j = 0; j < 3; j++) {
-    		  row[index] = (byte) temp[j];
-    		  index++;
-    	  }
-      }
-      //image.getRaster().getDataElements(left, top + y, width, 1, row);
+      interleave(y * width, width, row, 0);
       return row;
     }
     
+    /**
+     * @return the red, green and blue planes of the image. The arrays are the ones held by this
+     *  source: do not modify them
+     */
     @Override
     public byte[][] getByteMatrix() {
-      int width = getWidth();
-      int height = getHeight();
-      int area = width * height;
-      byte[][] matrix = new byte[3][area];
-      // The underlying raster of image consists of area bytes with three RGB values for each pixel
-      //image.getRaster().getDataElements(left, top, width, height, matrix);
-      
-      int[] temp = new int[3];
-      for (int y = top; y < top + height; y++) {
-    	  for (int x = 0; x < width; x++) {
-    		  image.getRaster().getPixel(x, y, temp);
-    		  matrix[0][x+y*width] = (byte)temp[0];
-    		  matrix[1][x+y*width] = (byte)temp[1];
-    		  matrix[2][x+y*width] = (byte)temp[2];
-    	  }
-      }
-      return matrix;
+      return rgbValues;
     }
     
+    /**
+     * @return the red, green and blue values of the image, interleaved
+     */
     @Override
     public byte[] getMatrix() {
-    	int width = getWidth();
-        int height = getHeight();
-        int area = width * height;
+    	int area = getWidth() * getHeight();
         byte[] matrix = new byte[area*3];
-        // The underlying raster of image consists of area bytes with three RGB values for each pixel
-        //image.getRaster().getDataElements(left, top, width, height, matrix);
-        image.getRaster().getDataElements(left, top, width, height, matrix);
+        interleave(0, area, matrix, 0);
         return matrix;
     }
     
+    private void interleave(int offset, int length, byte[] output, int outputOffset) {
+      byte[] reds = rgbValues[0];
+      byte[] greens = rgbValues[1];
+      byte[] blues = rgbValues[2];
+      for (int i = offset; i < offset + length; i++) {
+        output[outputOffset++] = reds[i];
+        output[outputOffset++] = greens[i];
+        output[outputOffset++] = blues[i];
+      }
+    }
+    
     @Override
     public boolean isCropSupported() {
       return true;
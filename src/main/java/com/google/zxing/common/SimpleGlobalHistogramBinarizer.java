@@ -1,5 +1,7 @@
 package main.java.com.google.zxing.common;
 
+import java.util.concurrent.ForkJoinPool;
+
 import main.java.com.google.zxing.SimpleBinarizer;
 import main.java.com.google.zxing.LuminanceSource;
 import main.java.com.google.zxing.NotFoundException;
@@ -13,11 +15,28 @@ public class SimpleGlobalHistogramBinarizer extends SimpleBinarizer {
 
 	  private byte[] luminances;
 	  private final int[] buckets;
+	  private final ForkJoinPool pool;
 
 	  public SimpleGlobalHistogramBinarizer(LuminanceSource source) {
+	    this(source, null);
+	  }
+
+	  /**
+	   * @param source image to binarize
+	   * @param pool if not null, large images are binarized in strips of rows on this pool
+	   */
+	  public SimpleGlobalHistogramBinarizer(LuminanceSource source, ForkJoinPool pool) {
 	    super(source);
 	    luminances = EMPTY;
 	    buckets = new int[LUMINANCE_BUCKETS];
+	    this.pool = pool;
+	  }
+
+	  /**
+	   * @return the pool on which the matrix is binarized, or null to use the calling thread
+	   */
+	  public final ForkJoinPool getPool() {
+	    return pool;
 	  }
 
 	  // Applies simple sharpening to the row data to improve performance of the 1D Readers.
@@ -80,17 +99,41 @@ public class SimpleGlobalHistogramBinarizer extends SimpleBinarizer {
 
 	    // We delay reading the entire image luminance until the black point estimation succeeds.
 	    // Although we end up reading four rows twice, it is consistent with our motto of
-	    // "fail quickly" which is necessary for continuous scanning.
-	    byte[] localLuminances = source.getMatrix();
-	    for (int y = 0; y < height; y++) {
-	      int offset = y * width;
-	      for (int x = 0; x< width; x++) {
-	        int pixel = localLuminances[offset + x] & 0xff;
-	        if (pixel < blackPoint) {
-	          System.out.println("ERROR: low end device (see SimpleGlobalHistogramBinarizer)");
-	          matrix.set(x, y, 0);
+	    // "fail quickly" which is necessary for continuous scanning. Rows are read one at a time,
+	    // so that sources backed by buffers off the heap are never copied whole onto it.
+	    final LuminanceSource localSource = source;
+	    final BitVectorMatrix result = matrix;
+	    final int threshold = blackPoint;
+	    final int rowWidth = width;
+	    final boolean[] anyBlack = new boolean[1];
+	    ParallelStrips.binarize(pool, width, height, new ParallelStrips.Rows() {
+	      @Override
+	      public void binarize(int fromY, int toY) {
+	        int rowSize = result.getRowSize();
+	        int[] plane0 = new int[rowSize];
+	        byte[] localLuminances = new byte[rowWidth];
+	        int black = 0;
+	        for (int y = fromY; y < toY; y++) {
+	          localLuminances = localSource.getRow(y, localLuminances);
+	          for (int word = 0, x = 0, offset = 0; word < rowSize; word++) {
+	            int end = Math.min(x + 32, rowWidth);
+	            int bits = 0;
+	            for (int shift = 0; x < end; x++, shift++) {
+	              // 1 iff the pixel is below the black point
+	              bits |= (((localLuminances[offset++] & 0xff) - threshold) >>> 31) << shift;
+	            }
+	            plane0[word] = bits;
+	            black |= bits;
+	          }
+	          result.setRowWords(0, y, plane0);
+	        }
+	        if (black != 0) {
+	          anyBlack[0] = true;
 	        }
 	      }
+	    });
+	    if (anyBlack[0]) {
+	      System.out.println("ERROR: low end device (see SimpleGlobalHistogramBinarizer)");
 	    }
 
 	    return matrix;
@@ -98,7 +141,7 @@ public class SimpleGlobalHistogramBinarizer extends SimpleBinarizer {
 
 	  @Override
 	  public SimpleBinarizer createBinarizer(LuminanceSource source) {
-	    return new SimpleGlobalHistogramBinarizer(source);
+	    return new SimpleGlobalHistogramBinarizer(source, pool);
 	  }
 
 	  private void initArrays(int luminanceSize) {
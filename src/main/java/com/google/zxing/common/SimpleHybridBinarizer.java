@@ -1,5 +1,8 @@
 package main.java.com.google.zxing.common;
 
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
 import main.java.com.google.zxing.SimpleBinarizer;
 import main.java.com.google.zxing.LuminanceSource;
 import main.java.com.google.zxing.NotFoundException;
@@ -11,9 +14,9 @@ public class SimpleHybridBinarizer extends SimpleGlobalHistogramBinarizer {
 	  // So this is the smallest dimension in each axis we can accept.
 	  private static final int BLOCK_SIZE_POWER = 3;
 	  private static final int BLOCK_SIZE = 1 << BLOCK_SIZE_POWER; // ...0100...00
-	  private static final int BLOCK_SIZE_MASK = BLOCK_SIZE - 1;   // ...0011...11
 	  private static final int MINIMUM_DIMENSION = BLOCK_SIZE * 5;
-	  private static final int MIN_DYNAMIC_RANGE = 24;
+	  // Rows kept by the lazily binarized matrix, the height of one of its tiles
+	  private static final int CACHED_ROWS = 32;
 	  private static final int BLACK_LOWER_THREESHOLD = 0;
 	  private static final int BLACK_UPPER_THREESHOLD = 42;
 	  /*private static final int WHITE_LOWER_THREESHOLD = 213;
@@ -23,11 +26,34 @@ public class SimpleHybridBinarizer extends SimpleGlobalHistogramBinarizer {
 	  private static final int GREEN_LOWER_THREESHOLD = 128;
 	  private static final int GREEN_UPPER_THREESHOLD = 212;
 
+	  // Bits of each luminance: bit 0 is the plane 0 bit, bit 32 the plane 1 bit
+	  private static final long[] PLANE_BITS = new long[256];
+
+	  static {
+	    for (int i = 0; i < PLANE_BITS.length; i++) {
+	      if (i >= BLACK_LOWER_THREESHOLD && i <= BLACK_UPPER_THREESHOLD) {
+	        PLANE_BITS[i] = 1L | (1L << 32);
+	      } else if (i >= RED_LOWER_THREESHOLD && i <= RED_UPPER_THREESHOLD) {
+	        PLANE_BITS[i] = 1L;
+	      } else if (i >= GREEN_LOWER_THREESHOLD && i <= GREEN_UPPER_THREESHOLD) {
+	        PLANE_BITS[i] = 1L << 32;
+	      }
+	    }
+	  }
+
 	  private BitVectorMatrix matrix;
 
 	  public SimpleHybridBinarizer(LuminanceSource source) {
 	    super(source);
 	  }
+
+	  /**
+	   * @param source image to binarize
+	   * @param pool if not null, large images are binarized in strips of rows on this pool
+	   */
+	  public SimpleHybridBinarizer(LuminanceSource source, ForkJoinPool pool) {
+	    super(source, pool);
+	  }
 	  
 	  public BitVectorMatrix getMatrix () {
 		  return matrix;
@@ -43,23 +69,19 @@ public class SimpleHybridBinarizer extends SimpleGlobalHistogramBinarizer {
 	    if (matrix != null) {
 	      return matrix;
 	    }
-	    LuminanceSource source = getLuminanceSource();
+	    final LuminanceSource source = getLuminanceSource();
 	    int width = source.getWidth();
 	    int height = source.getHeight();
 	    if (width >= MINIMUM_DIMENSION && height >= MINIMUM_DIMENSION) {
-	      byte[] luminances = source.getMatrix();
-	      int subWidth = width >> BLOCK_SIZE_POWER;
-	      if ((width & BLOCK_SIZE_MASK) != 0) {
-	        subWidth++;
-	      }
-	      int subHeight = height >> BLOCK_SIZE_POWER;
-	      if ((height & BLOCK_SIZE_MASK) != 0) {
-	        subHeight++;
-	      }
-	      int[][] blackPoints = calculateBlackPoints(luminances, subWidth, subHeight, width, height);
-
-	      BitVectorMatrix newMatrix = new BitVectorMatrix(width, height);
-	      calculateThresholdForBlock(luminances, subWidth, subHeight, width, height, blackPoints, newMatrix);
+	      // Rows are read one at a time rather than through getMatrix(), so that sources backed by
+	      // buffers off the heap are never copied whole onto it
+	      final BitVectorMatrix newMatrix = new BitVectorMatrix(width, height);
+	      ParallelStrips.binarize(getPool(), width, height, new ParallelStrips.Rows() {
+	        @Override
+	        public void binarize(int fromY, int toY) {
+	          thresholdRows(source, fromY, toY, newMatrix);
+	        }
+	      });
 	      matrix = newMatrix;
 	      //System.out.println("matrix-toString\n"+matrix.toString());
 	    } else {
@@ -70,160 +92,93 @@ public class SimpleHybridBinarizer extends SimpleGlobalHistogramBinarizer {
 	    return matrix;
 	  }
 
-	  @Override
-	  public SimpleBinarizer createBinarizer(LuminanceSource source) {
-	    return new SimpleHybridBinarizer(source);
-	  }
-
 	  /**
-	   * For each block in the image, calculate the average black point using a 5x5 grid
-	   * of the blocks around it. Also handles the corner cases (fractional blocks are computed based
-	   * on the last pixels in the row/column which are also used in the previous block).
+	   * Binarizes the image tile by tile as it is read, see {@link LazyBitVectorMatrix}. The pixels
+	   * are classified like {@link #getBlackMatrix()}, from rows read with
+	   * {@link LuminanceSource#getRow(int, byte[])}, so that sources backed by buffers off the heap
+	   * or cropped are never copied whole. The rows of the last band of tiles read are kept, as the
+	   * tiles of a band are mostly binarized one after the other. Small images are binarized up front.
 	   */
-	  private static void calculateThresholdForBlock(byte[] luminances,
-	                                                 int subWidth,
-	                                                 int subHeight,
-	                                                 int width,
-	                                                 int height,
-	                                                 int[][] blackPoints,
-	                                                 BitVectorMatrix matrix) {
-	    for (int y = 0; y < subHeight; y++) {
-	      int yoffset = y << BLOCK_SIZE_POWER;
-	      int maxYOffset = height - BLOCK_SIZE;
-	      if (yoffset > maxYOffset) {
-	        yoffset = maxYOffset;
+	  @Override
+	  public BitVectorMatrix getLazyBlackMatrix() throws NotFoundException {
+	    if (matrix != null) {
+	      return matrix;
+	    }
+	    final LuminanceSource source = getLuminanceSource();
+	    final int width = source.getWidth();
+	    int height = source.getHeight();
+	    if (width < MINIMUM_DIMENSION || height < MINIMUM_DIMENSION) {
+	      return getBlackMatrix();
+	    }
+	    matrix = new LazyBitVectorMatrix(width, height, new LazyBitVectorMatrix.RowBinarizer() {
+	      // Row y is kept at y % CACHED_ROWS. The matrix calls the binarizer from one thread at a time
+	      private final byte[][] rows = new byte[CACHED_ROWS][];
+	      private final int[] rowIndices = new int[CACHED_ROWS];
+
+	      {
+	        Arrays.fill(rowIndices, -1);
 	      }
-	      for (int x = 0; x < subWidth; x++) {
-	        int xoffset = x << BLOCK_SIZE_POWER;
-	        int maxXOffset = width - BLOCK_SIZE;
-	        if (xoffset > maxXOffset) {
-	          xoffset = maxXOffset;
-	        }
-	        /*int left = cap(x, 2, subWidth - 3);
-	        int top = cap(y, 2, subHeight - 3);
-	        int sum = 0;
-	        for (int z = -2; z <= 2; z++) {
-	          int[] blackRow = blackPoints[top + z];
-	          sum += blackRow[left - 2] + blackRow[left - 1] + blackRow[left] + blackRow[left + 1] + blackRow[left + 2];
+
+	      @Override
+	      public void binarize(int y, int fromWord, int toWord, int[] plane0, int[] plane1) {
+	        int slot = y % CACHED_ROWS;
+	        if (rowIndices[slot] != y) {
+	          rows[slot] = source.getRow(y, rows[slot]);
+	          rowIndices[slot] = y;
 	        }
-	        int average = sum / 25;*/
-	        thresholdBlock(luminances, xoffset, yoffset, width, matrix);
+	        thresholdWords(rows[slot], width, fromWord, toWord, plane0, plane1);
 	      }
-	    }
+	    });
+	    return matrix;
 	  }
 
-	  /*private static int cap(int value, int min, int max) {
-	    return value < min ? min : value > max ? max : value;
-	  }*/
+	  @Override
+	  public SimpleBinarizer createBinarizer(LuminanceSource source) {
+	    return new SimpleHybridBinarizer(source, getPool());
+	  }
 
 	  /**
-	   * Applies a single threshold to a block of pixels.
+	   * Classifies the pixels of rows fromY to toY - 1 against the fixed luminance bands, a row at a
+	   * time: the bits of 32 pixels are gathered in a register and each plane word is stored once,
+	   * rather than setting the bits one by one.
 	   */
-	  private static void thresholdBlock(byte[] luminances,
-	                                     int xoffset,
-	                                     int yoffset,
-	                                     int stride,
-	                                     BitVectorMatrix matrix) {
-	    for (int y = 0, offset = yoffset * stride + xoffset; y < BLOCK_SIZE; y++, offset += stride) {
-	      for (int x = 0; x < BLOCK_SIZE; x++) {
-	        // Comparison needs to be <= so that black == 0 pixels are black even if the threshold is 0.
-	    	int temp = (luminances[offset + x] & 0xFF);
-	        if (temp >= BLACK_LOWER_THREESHOLD && temp <= BLACK_UPPER_THREESHOLD) {
-	          //System.out.println("black");
-	          matrix.set(xoffset + x, yoffset + y, 0);
-	          matrix.set(xoffset + x, yoffset + y, 1);
-	        }
-	        else if (temp >= RED_LOWER_THREESHOLD && temp <= RED_UPPER_THREESHOLD) {
-	        	//System.out.println("red");
-	        	matrix.set(xoffset + x, yoffset + y, 0);
-	        }
-	        else if (temp >= GREEN_LOWER_THREESHOLD && temp <= GREEN_UPPER_THREESHOLD) {
-	        	//System.out.println("green");
-	        	matrix.set(xoffset + x, yoffset + y, 1);
-	        }
-	      }
+	  private static void thresholdRows(LuminanceSource source,
+	                                    int fromY,
+	                                    int toY,
+	                                    BitVectorMatrix matrix) {
+	    int width = source.getWidth();
+	    int rowSize = matrix.getRowSize();
+	    int[] plane0 = new int[rowSize];
+	    int[] plane1 = new int[rowSize];
+	    byte[] luminances = new byte[width];
+	    for (int y = fromY; y < toY; y++) {
+	      luminances = source.getRow(y, luminances);
+	      thresholdWords(luminances, width, 0, rowSize, plane0, plane1);
+	      matrix.setRowWords(0, y, plane0);
+	      matrix.setRowWords(1, y, plane1);
 	    }
 	  }
 
 	  /**
-	   * Calculates a single black point for each block of pixels and saves it away.
-	   * See the following thread for a discussion of this algorithm:
-	   *  http://groups.google.com/group/zxing/browse_thread/thread/d06efa2c35a7ddc0
+	   * Classifies the pixels of a row of luminances covered by words fromWord to toWord - 1 of a
+	   * matrix row, into the same words of plane0 and plane1.
 	   */
-	  private static int[][] calculateBlackPoints(byte[] luminances,
-	                                              int subWidth,
-	                                              int subHeight,
-	                                              int width,
-	                                              int height) {
-	    int[][] blackPoints = new int[subHeight][subWidth];
-	    for (int y = 0; y < subHeight; y++) {
-	      int yoffset = y << BLOCK_SIZE_POWER;
-	      int maxYOffset = height - BLOCK_SIZE;
-	      if (yoffset > maxYOffset) {
-	        yoffset = maxYOffset;
-	      }
-	      for (int x = 0; x < subWidth; x++) {
-	        int xoffset = x << BLOCK_SIZE_POWER;
-	        int maxXOffset = width - BLOCK_SIZE;
-	        if (xoffset > maxXOffset) {
-	          xoffset = maxXOffset;
-	        }
-	        int sum = 0;
-	        int min = 0xFF;
-	        int max = 0;
-	        for (int yy = 0, offset = yoffset * width + xoffset; yy < BLOCK_SIZE; yy++, offset += width) {
-	          for (int xx = 0; xx < BLOCK_SIZE; xx++) {
-	            int pixel = luminances[offset + xx] & 0xFF;
-	            sum += pixel;
-	            // still looking for good contrast
-	            if (pixel < min) {
-	              min = pixel;
-	            }
-	            if (pixel > max) {
-	              max = pixel;
-	            }
-	          }
-	          // short-circuit min/max tests once dynamic range is met
-	          if (max - min > MIN_DYNAMIC_RANGE) {
-	            // finish the rest of the rows quickly
-	            for (yy++, offset += width; yy < BLOCK_SIZE; yy++, offset += width) {
-	              for (int xx = 0; xx < BLOCK_SIZE; xx++) {
-	                sum += luminances[offset + xx] & 0xFF;
-	              }
-	            }
-	          }
-	        }
-
-	        // The default estimate is the average of the values in the block.
-	        int average = sum >> (BLOCK_SIZE_POWER * 2);
-	        if (max - min <= MIN_DYNAMIC_RANGE) {
-	          // If variation within the block is low, assume this is a block with only light or only
-	          // dark pixels. In that case we do not want to use the average, as it would divide this
-	          // low contrast area into black and white pixels, essentially creating data out of noise.
-	          //
-	          // The default assumption is that the block is light/background. Since no estimate for
-	          // the level of dark pixels exists locally, use half the min for the block.
-	          average = min / 2;
-
-	          if (y > 0 && x > 0) {
-	            // Correct the "white background" assumption for blocks that have neighbors by comparing
-	            // the pixels in this block to the previously calculated black points. This is based on
-	            // the fact that dark barcode symbology is always surrounded by some amount of light
-	            // background for which reasonable black point estimates were made. The bp estimated at
-	            // the boundaries is used for the interior.
-
-	            // The (min < bp) is arbitrary but works better than other heuristics that were tried.
-	            int averageNeighborBlackPoint =
-	                (blackPoints[y - 1][x] + (2 * blackPoints[y][x - 1]) + blackPoints[y - 1][x - 1]) / 4;
-	            if (min < averageNeighborBlackPoint) {
-	              average = averageNeighborBlackPoint;
-	            }
-	          }
-	        }
-	        blackPoints[y][x] = average;
+	  private static void thresholdWords(byte[] luminances,
+	                                     int width,
+	                                     int fromWord,
+	                                     int toWord,
+	                                     int[] plane0,
+	                                     int[] plane1) {
+	    for (int word = fromWord, x = fromWord << 5; word < toWord; word++) {
+	      int end = Math.min(x + 32, width);
+	      // Plane 0 bits in the low half, plane 1 bits in the high half
+	      long bits = 0L;
+	      for (int shift = 0; x < end; x++, shift++) {
+	        bits |= PLANE_BITS[luminances[x] & 0xFF] << shift;
 	      }
+	      plane0[word] = (int) bits;
+	      plane1[word] = (int) (bits >>> 32);
 	    }
-	    return blackPoints;
 	  }
 
 }
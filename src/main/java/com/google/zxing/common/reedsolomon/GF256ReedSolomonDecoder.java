@@ -0,0 +1,565 @@
+/*
+ * Copyright 2007 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package main.java.com.google.zxing.common.reedsolomon;
+
+/**
+ * <p>Reed-Solomon decoder for fields of 256 elements which works directly on a block of bytes.
+ * It computes the same corrections as {@link ReedSolomonDecoder}, but keeps every polynomial in
+ * a primitive array and does its arithmetic with log/exp tables, so decoding a block allocates
+ * nothing.</p>
+ *
+ * <p>A block whose syndromes are all zero, the usual case for a clean scan, is returned as soon as
+ * they have been computed. Otherwise the error locator is found with the Euclidean algorithm, like
+ * {@link ReedSolomonDecoder}, or with Berlekamp-Massey, then the errors are located with Chien's
+ * search and their values computed with Forney's formula. Berlekamp-Massey never corrects more
+ * than twoS / 2 errors, while the Euclidean algorithm sometimes corrects one more when twoS is
+ * odd.</p>
+ *
+ * <p>The caller may also point out erasures, codewords it knows to be doubtful. Their positions
+ * need not be searched for, so each costs one error-correction codeword rather than two: e
+ * erasures and nearly (twoS - e) / 2 errors can be corrected together. The syndromes are then multiplied
+ * by the erasure locator, the error locator is found from these modified syndromes with the
+ * Euclidean algorithm whatever the algorithm chosen, and the errors and erasures are located and
+ * corrected together.</p>
+ *
+ * <p>Instances are thread-safe: the tables are never modified after construction and the
+ * polynomials are kept in per-thread scratch arrays.</p>
+ *
+ * @author Francesco Benedetto
+ */
+public final class GF256ReedSolomonDecoder {
+
+  // The polynomials of the decoding have at most twoS + 1 coefficients, and twoS is at most 255
+  private static final int MAX_COEFFICIENTS = 256;
+  // Syndromes left unused by a decoding with erasures, to check its corrections
+  private static final int CHECK_SYNDROMES = 2;
+
+  /** Shared decoder over {@link GenericGF#QR_CODE_FIELD_256}, using the Euclidean algorithm. */
+  public static final GF256ReedSolomonDecoder QR_CODE =
+      new GF256ReedSolomonDecoder(GenericGF.QR_CODE_FIELD_256, false);
+
+  // expTable[i] is 2^(i mod 255): twice as long as needed, so that the sum of two logs is a valid index
+  private final int[] expTable;
+  private final int[] logTable;
+  // Product of a and 2^k at (k << 8) | a, so that Horner's rule needs one lookup per codeword
+  private final byte[] powerMultiples;
+  private final int generatorBase;
+  private final boolean berlekampMassey;
+
+  private final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+    @Override
+    protected Scratch initialValue() {
+      return new Scratch();
+    }
+  };
+
+  public GF256ReedSolomonDecoder(GenericGF field) {
+    this(field, false);
+  }
+
+  /**
+   * @param field field to decode over; it must have 256 elements
+   * @param berlekampMassey true to find the error locator with Berlekamp-Massey rather than the
+   *  Euclidean algorithm
+   */
+  public GF256ReedSolomonDecoder(GenericGF field, boolean berlekampMassey) {
+    if (field.getSize() != 256) {
+      throw new IllegalArgumentException("Field must have 256 elements: " + field);
+    }
+    this.expTable = new int[2 * 255];
+    for (int i = 0; i < expTable.length; i++) {
+      expTable[i] = field.exp(i % 255);
+    }
+    this.logTable = new int[256];
+    for (int i = 1; i < 256; i++) {
+      logTable[i] = field.log(i);
+    }
+    this.powerMultiples = new byte[255 << 8];
+    for (int k = 0; k < 255; k++) {
+      for (int a = 1; a < 256; a++) {
+        powerMultiples[(k << 8) | a] = (byte) expTable[logTable[a] + k];
+      }
+    }
+    this.generatorBase = field.getGeneratorBase();
+    this.berlekampMassey = berlekampMassey;
+  }
+
+  /**
+   * Decodes a whole block. See {@link #decode(byte[], int, int, int)}.
+   */
+  public int decode(byte[] received, int twoS) throws ReedSolomonException {
+    return decode(received, 0, received.length, twoS);
+  }
+
+  /**
+   * <p>Decodes given set of received codewords, which include both data and error-correction
+   * codewords, correcting the errors in-place.</p>
+   *
+   * @param received array holding the block
+   * @param offset index of the first codeword of the block
+   * @param length number of codewords in the block. Blocks longer than 255 codewords are accepted,
+   *  as by {@link ReedSolomonDecoder}, but only errors in their last 255 codewords can be located
+   * @param twoS number of error-correction codewords available
+   * @return number of codewords which were corrected
+   * @throws ReedSolomonException if decoding fails for any reason
+   */
+  public int decode(byte[] received, int offset, int length, int twoS) throws ReedSolomonException {
+    return decode(received, offset, length, twoS, null, 0);
+  }
+
+  /**
+   * <p>Like {@link #decode(byte[], int, int, int)}, but is told which codewords are likely to be
+   * wrong. When erasures are given, two syndromes are left unused, so that e erasures and
+   * (twoS - 2 - e) / 2 errors can be corrected, and the corrected block is checked against them.
+   * If it is still not a codeword, the corrections are undone before failing, so the block can be
+   * decoded once more with other erasures.</p>
+   *
+   * @param erasures indices in the block of distinct codewords which are likely to be wrong; may
+   *  be null when numErasures is 0
+   * @param numErasures number of erasures, from the start of erasures; more than twoS - 2 always
+   *  fail
+   * @return number of codewords which were corrected
+   * @throws ReedSolomonException if decoding fails for any reason
+   */
+  public int decode(byte[] received, int offset, int length, int twoS, int[] erasures, int numErasures)
+      throws ReedSolomonException {
+    if (twoS >= MAX_COEFFICIENTS || twoS > length) {
+      throw new IllegalArgumentException("Bad twoS: " + twoS + " for block length: " + length);
+    }
+    if (numErasures < 0 || numErasures > twoS) {
+      throw new IllegalArgumentException("Bad number of erasures: " + numErasures + " for twoS: " + twoS);
+    }
+    Scratch s = scratch.get();
+    int[] syndromes = s.syndromes;
+    if (!computeSyndromes(received, offset, length, twoS, syndromes)) {
+      return 0;
+    }
+    if (numErasures > twoS - CHECK_SYNDROMES) {
+      throw new ReedSolomonException("Too many erasures");
+    }
+    int numErrors;
+    if (numErasures == 0) {
+      numErrors = berlekampMassey
+          ? runBerlekampMassey(syndromes, twoS, s)
+          : runEuclideanAlgorithm(syndromes, twoS, 0, s);
+    } else {
+      numErrors = runErasureEuclideanAlgorithm(syndromes, twoS, erasures, numErasures, length, s);
+    }
+    int[] locations = s.locations;
+    findErrorLocations(s.sigma, numErrors, length, locations);
+    applyCorrections(received, offset, length, numErrors, s);
+    if (numErasures != 0 && computeSyndromes(received, offset, length, twoS, syndromes)) {
+      // XOR undoes the corrections
+      applyCorrections(received, offset, length, numErrors, s);
+      throw new ReedSolomonException("Erasures did not lead to a codeword");
+    }
+    return numErrors;
+  }
+
+  /**
+   * Computes the value of each error with Forney's formula and corrects it in the block.
+   */
+  private void applyCorrections(byte[] received, int offset, int length, int numErrors, Scratch s) {
+    int[] locations = s.locations;
+    int[] omega = s.omega;
+    int omegaDegree = s.omegaDegree;
+    for (int i = 0; i < numErrors; i++) {
+      int position = locations[i];
+      // Log of the error location X and of its inverse
+      int logX = length - 1 - position;
+      int logXInverse = logX == 0 ? 0 : 255 - logX;
+      // Forney's formula
+      int denominator = 1;
+      for (int j = 0; j < numErrors; j++) {
+        if (i != j) {
+          int term = multiply(expTable[length - 1 - locations[j]], expTable[logXInverse]);
+          denominator = multiply(denominator, term ^ 1);
+        }
+      }
+      int magnitude = evaluateAt(omega, omegaDegree, expTable[logXInverse]);
+      if (magnitude != 0) {
+        magnitude = expTable[logTable[magnitude] + 255 - logTable[denominator]];
+        if (generatorBase != 0) {
+          magnitude = expTable[logTable[magnitude] + logXInverse];
+        }
+      }
+      received[offset + position] ^= (byte) magnitude;
+    }
+  }
+
+  /**
+   * Sets syndromes[i] to the received polynomial evaluated at 2^(i + generatorBase).
+   *
+   * @return true if any syndrome is not zero, i.e. the block has errors
+   */
+  private boolean computeSyndromes(byte[] received, int offset, int length, int twoS, int[] syndromes) {
+    byte[] powerMultiples = this.powerMultiples;
+    int end = offset + length;
+    boolean error = false;
+    for (int i = 0; i < twoS; i++) {
+      int row = ((i + generatorBase) % 255) << 8;
+      // Horner's rule; the first codeword has the highest degree
+      int eval = 0;
+      for (int j = offset; j < end; j++) {
+        eval = (powerMultiples[row | eval] ^ received[j]) & 0xFF;
+      }
+      syndromes[i] = eval;
+      if (eval != 0) {
+        error = true;
+      }
+    }
+    return error;
+  }
+
+  /**
+   * Finds the locator of the errors and the erasures together: the syndromes are multiplied by the
+   * erasure locator, the product of (1 + X x) for the location X of each erasure, the error locator
+   * is found from them by the Euclidean algorithm, then multiplied by the erasure locator in turn.
+   * Leaves the locator in scratch.sigma and the evaluator in scratch.omega.
+   *
+   * @return degree of the locator, i.e. the number of errors and erasures
+   */
+  private int runErasureEuclideanAlgorithm(int[] syndromes,
+                                           int twoS,
+                                           int[] erasures,
+                                           int numErasures,
+                                           int length,
+                                           Scratch s) throws ReedSolomonException {
+    int[] erasureLocator = s.erasureLocator;
+    erasureLocator[0] = 1;
+    for (int i = 0; i < numErasures; i++) {
+      int position = erasures[i];
+      if (position < 0 || position >= length) {
+        throw new IllegalArgumentException("Bad erasure: " + position + " for block length: " + length);
+      }
+      int logX = length - 1 - position;
+      if (logX >= 255) {
+        throw new ReedSolomonException("Bad erasure location");
+      }
+      // Multiply by (1 + X x)
+      erasureLocator[i + 1] = 0;
+      for (int j = i + 1; j > 0; j--) {
+        int c = erasureLocator[j - 1];
+        if (c != 0) {
+          erasureLocator[j] ^= expTable[logTable[c] + logX];
+        }
+      }
+    }
+    // Modified syndromes: syndromes * erasure locator mod x^twoS
+    int[] modified = s.modifiedSyndromes;
+    for (int k = 0; k < twoS; k++) {
+      int sum = 0;
+      for (int i = 0; i <= Math.min(k, numErasures); i++) {
+        int c = erasureLocator[i];
+        int syndrome = syndromes[k - i];
+        if (c != 0 && syndrome != 0) {
+          sum ^= expTable[logTable[c] + logTable[syndrome]];
+        }
+      }
+      modified[k] = sum;
+    }
+    int numErrors = runEuclideanAlgorithm(modified, twoS, numErasures, s);
+    // Syndromes are kept to check the corrections: without them, any block would be taken for a
+    // codeword when the erasures and errors use them all
+    if (2 * numErrors + numErasures > twoS - CHECK_SYNDROMES) {
+      throw new ReedSolomonException("Too many errors");
+    }
+
+    // Locator of the errors and the erasures, in q which the algorithm no longer needs
+    int[] sigma = s.sigma;
+    int[] product = s.q;
+    int degree = numErrors + numErasures;
+    clear(product, degree + 1);
+    for (int i = 0; i <= numErrors; i++) {
+      int c = sigma[i];
+      if (c != 0) {
+        int logC = logTable[c];
+        for (int j = 0; j <= numErasures; j++) {
+          int e = erasureLocator[j];
+          if (e != 0) {
+            product[i + j] ^= expTable[logC + logTable[e]];
+          }
+        }
+      }
+    }
+    System.arraycopy(product, 0, sigma, 0, degree + 1);
+    return degree;
+  }
+
+  /**
+   * Port of {@link ReedSolomonDecoder}'s Euclidean algorithm to arrays, lowest degree first. Leaves
+   * the error locator in scratch.sigma and the error evaluator in scratch.omega.
+   *
+   * @param numErasures erasures the syndromes have been modified for, which stop the algorithm
+   *  earlier: each leaves half an error fewer to be located
+   * @return degree of the error locator, i.e. the number of errors
+   */
+  private int runEuclideanAlgorithm(int[] syndromes, int R, int numErasures, Scratch s)
+      throws ReedSolomonException {
+    // rLast starts as x^R and r as the syndrome polynomial; tLast as 0 and t as 1. Each step only
+    // needs the two latest remainders and the two latest t, so they live in two buffers each
+    int[] rLast = s.r0;
+    int[] r = s.r1;
+    int[] tLast = s.t0;
+    int[] t = s.t1;
+    int[] q = s.q;
+    clear(rLast, R + 1);
+    clear(tLast, R + 1);
+    clear(t, R + 1);
+    rLast[R] = 1;
+    int rLastDegree = R;
+    System.arraycopy(syndromes, 0, r, 0, R);
+    r[R] = 0;
+    int rDegree = degree(r, R - 1);
+    int tLastDegree = 0;
+    t[0] = 1;
+    int tDegree = 0;
+
+    while (rDegree >= (R + numErasures) / 2) {
+      // rLastLast := rLast, rLast := r, tLastLast := tLast, tLast := t
+      int[] rLastLast = rLast;
+      int rLastLastDegree = rLastDegree;
+      rLast = r;
+      rLastDegree = rDegree;
+      int[] tLastLast = tLast;
+      int tLastLastDegree = tLastDegree;
+      tLast = t;
+      tLastDegree = tDegree;
+
+      if (rLastDegree == 0 && rLast[0] == 0) {
+        throw new ReedSolomonException("r_{i-1} was zero");
+      }
+      // Divide rLastLast by rLast in place: the quotient goes to q, the remainder stays in
+      // rLastLast's buffer, which becomes r
+      r = rLastLast;
+      rDegree = rLastLastDegree;
+      int quotientDegree = rDegree - rLastDegree;
+      clear(q, quotientDegree + 1);
+      int logDltInverse = 255 - logTable[rLast[rLastDegree]];
+      while (rDegree >= rLastDegree && !(rDegree == 0 && r[0] == 0)) {
+        int degreeDiff = rDegree - rLastDegree;
+        int logScale = logTable[r[rDegree]] + logDltInverse;
+        q[degreeDiff] ^= expTable[logScale];
+        for (int i = 0; i <= rLastDegree; i++) {
+          int c = rLast[i];
+          if (c != 0) {
+            r[i + degreeDiff] ^= expTable[logTable[c] + logScale % 255];
+          }
+        }
+        rDegree = degree(r, rDegree);
+      }
+
+      // t := q * tLast + tLastLast, in tLastLast's buffer
+      for (int i = 0; i <= quotientDegree; i++) {
+        int qi = q[i];
+        if (qi != 0) {
+          int logQi = logTable[qi];
+          for (int j = 0; j <= tLastDegree; j++) {
+            int c = tLast[j];
+            if (c != 0) {
+              tLastLast[i + j] ^= expTable[logTable[c] + logQi];
+            }
+          }
+        }
+      }
+      t = tLastLast;
+      tDegree = degree(t, Math.max(quotientDegree + tLastDegree, tLastLastDegree));
+
+      if (rDegree >= rLastDegree && !(rDegree == 0 && r[0] == 0)) {
+        throw new IllegalStateException("Division algorithm failed to reduce polynomial?");
+      }
+    }
+
+    int sigmaTildeAtZero = t[0];
+    if (sigmaTildeAtZero == 0) {
+      throw new ReedSolomonException("sigmaTilde(0) was zero");
+    }
+    int logInverse = 255 - logTable[sigmaTildeAtZero];
+    int[] sigma = s.sigma;
+    for (int i = 0; i <= tDegree; i++) {
+      sigma[i] = t[i] == 0 ? 0 : expTable[logTable[t[i]] + logInverse];
+    }
+    int[] omega = s.omega;
+    for (int i = 0; i <= rDegree; i++) {
+      omega[i] = r[i] == 0 ? 0 : expTable[logTable[r[i]] + logInverse];
+    }
+    s.omegaDegree = rDegree;
+    return tDegree;
+  }
+
+  /**
+   * Finds the error locator with Berlekamp-Massey, then the error evaluator as
+   * (syndromes * locator) mod x^twoS. Leaves them in scratch.sigma and scratch.omega.
+   *
+   * @return degree of the error locator, i.e. the number of errors
+   */
+  private int runBerlekampMassey(int[] syndromes, int twoS, Scratch s) throws ReedSolomonException {
+    int[] sigma = s.sigma;
+    int[] previous = s.t0;
+    int[] copy = s.t1;
+    clear(sigma, twoS + 1);
+    clear(previous, twoS + 1);
+    sigma[0] = 1;
+    previous[0] = 1;
+    int numErrors = 0;
+    int shift = 1;
+    int previousDiscrepancy = 1;
+    for (int n = 0; n < twoS; n++) {
+      int discrepancy = syndromes[n];
+      for (int i = 1; i <= numErrors; i++) {
+        int c = sigma[i];
+        int syndrome = syndromes[n - i];
+        if (c != 0 && syndrome != 0) {
+          discrepancy ^= expTable[logTable[c] + logTable[syndrome]];
+        }
+      }
+      if (discrepancy == 0) {
+        shift++;
+        continue;
+      }
+      // sigma -= (discrepancy / previousDiscrepancy) x^shift previous
+      int logScale = logTable[discrepancy] + 255 - logTable[previousDiscrepancy];
+      boolean lengthChange = 2 * numErrors <= n;
+      if (lengthChange) {
+        System.arraycopy(sigma, 0, copy, 0, twoS + 1);
+      }
+      for (int i = 0; i + shift <= twoS; i++) {
+        int c = previous[i];
+        if (c != 0) {
+          sigma[i + shift] ^= expTable[(logTable[c] + logScale) % 255];
+        }
+      }
+      if (lengthChange) {
+        numErrors = n + 1 - numErrors;
+        int[] temp = previous;
+        previous = copy;
+        copy = temp;
+        previousDiscrepancy = discrepancy;
+        shift = 1;
+      } else {
+        shift++;
+      }
+    }
+    if (2 * numErrors > twoS || degree(sigma, twoS) != numErrors) {
+      throw new ReedSolomonException("Too many errors");
+    }
+
+    // omega = syndromes * sigma mod x^twoS; only the terms below x^numErrors can be non-zero
+    int[] omega = s.omega;
+    int omegaDegree = 0;
+    for (int k = 0; k < numErrors; k++) {
+      int sum = 0;
+      for (int i = 0; i <= k; i++) {
+        int c = sigma[i];
+        int syndrome = syndromes[k - i];
+        if (c != 0 && syndrome != 0) {
+          sum ^= expTable[logTable[c] + logTable[syndrome]];
+        }
+      }
+      omega[k] = sum;
+      if (sum != 0) {
+        omegaDegree = k;
+      }
+    }
+    if (numErrors == 0) {
+      omega[0] = 0;
+    }
+    s.omegaDegree = omegaDegree;
+    return numErrors;
+  }
+
+  /**
+   * Chien's search, limited to the positions inside the block: puts the index in the block of
+   * each error in locations.
+   */
+  private void findErrorLocations(int[] sigma, int numErrors, int length, int[] locations)
+      throws ReedSolomonException {
+    if (numErrors == 1) { // shortcut
+      int logX = logTable[sigma[1]];
+      if (logX >= length) {
+        throw new ReedSolomonException("Bad error location");
+      }
+      locations[0] = length - 1 - logX;
+      return;
+    }
+    int e = 0;
+    // The error at position p has location X = 2^(length - 1 - p), a root of sigma at X^-1
+    int maxLogX = Math.min(length, 255);
+    for (int logX = 0; logX < maxLogX && e < numErrors; logX++) {
+      if (evaluateAt(sigma, numErrors, expTable[logX == 0 ? 0 : 255 - logX]) == 0) {
+        locations[e++] = length - 1 - logX;
+      }
+    }
+    if (e != numErrors) {
+      throw new ReedSolomonException("Error locator degree does not match number of roots");
+    }
+  }
+
+  private int evaluateAt(int[] coefficients, int degree, int a) {
+    if (a == 0) {
+      return coefficients[0];
+    }
+    int logA = logTable[a];
+    int result = 0;
+    for (int i = degree; i >= 0; i--) {
+      if (result != 0) {
+        result = expTable[logTable[result] + logA];
+      }
+      result ^= coefficients[i];
+    }
+    return result;
+  }
+
+  private int multiply(int a, int b) {
+    if (a == 0 || b == 0) {
+      return 0;
+    }
+    return expTable[logTable[a] + logTable[b]];
+  }
+
+  // Degree of the polynomial, looking down from maxDegree; 0 for the zero polynomial
+  private static int degree(int[] coefficients, int maxDegree) {
+    int d = maxDegree;
+    while (d > 0 && coefficients[d] == 0) {
+      d--;
+    }
+    return d;
+  }
+
+  private static void clear(int[] coefficients, int length) {
+    for (int i = 0; i < length; i++) {
+      coefficients[i] = 0;
+    }
+  }
+
+  // Polynomials of the decoding of one block, kept per thread, lowest degree first
+  private static final class Scratch {
+    final int[] syndromes = new int[MAX_COEFFICIENTS];
+    final int[] r0 = new int[MAX_COEFFICIENTS];
+    final int[] r1 = new int[MAX_COEFFICIENTS];
+    final int[] t0 = new int[MAX_COEFFICIENTS];
+    final int[] t1 = new int[MAX_COEFFICIENTS];
+    final int[] q = new int[MAX_COEFFICIENTS];
+    final int[] sigma = new int[MAX_COEFFICIENTS];
+    final int[] omega = new int[MAX_COEFFICIENTS];
+    final int[] locations = new int[MAX_COEFFICIENTS];
+    final int[] erasureLocator = new int[MAX_COEFFICIENTS];
+    final int[] modifiedSyndromes = new int[MAX_COEFFICIENTS];
+    int omegaDegree;
+  }
+
+}
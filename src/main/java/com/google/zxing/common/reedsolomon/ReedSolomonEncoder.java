@@ -16,39 +16,70 @@
 
 package main.java.com.google.zxing.common.reedsolomon;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * <p>Implements Reed-Solomon enbcoding, as the name implies.</p>
  *
+ * <p>Instances are thread-safe and can be shared: generator polynomials are kept in an array which
+ * is only ever replaced by a longer copy, never modified. {@link #QR_CODE} has every generator a
+ * QR Code block needs already built.</p>
+ *
  * @author Sean Owen
  * @author William Rucklidge
  */
 public final class ReedSolomonEncoder {
 
+  // Largest number of error correction codewords in a QR Code block
+  private static final int QR_CODE_MAX_EC_CODEWORDS = 30;
+
+  /** Shared encoder over {@link GenericGF#QR_CODE_FIELD_256}, with generators up to degree 30. */
+  public static final ReedSolomonEncoder QR_CODE =
+      new ReedSolomonEncoder(GenericGF.QR_CODE_FIELD_256, QR_CODE_MAX_EC_CODEWORDS);
+
   private final GenericGF field;
-  private final List<GenericGFPoly> cachedGenerators;
+  // cachedGenerators[d] is the generator of degree d
+  private volatile GenericGFPoly[] cachedGenerators;
+  // For fields of 256 elements: product of a and b at (a << 8) | b, for the byte[] fast path.
+  // Built on first use; two threads may both build it, with the same result.
+  private volatile byte[] multiplyTable;
 
   public ReedSolomonEncoder(GenericGF field) {
+    this(field, 0);
+  }
+
+  /**
+   * @param field field to encode over
+   * @param maxDegree generators up to this degree are built up front; larger ones on demand
+   */
+  public ReedSolomonEncoder(GenericGF field, int maxDegree) {
     this.field = field;
-    this.cachedGenerators = new ArrayList<>();
-    cachedGenerators.add(new GenericGFPoly(field, new int[]{1}));
+    this.cachedGenerators = new GenericGFPoly[] {new GenericGFPoly(field, new int[]{1})};
+    buildGenerator(maxDegree);
   }
 
   private GenericGFPoly buildGenerator(int degree) {
-    if (degree >= cachedGenerators.size()) {
-      GenericGFPoly lastGenerator = cachedGenerators.get(cachedGenerators.size() - 1);
-      for (int d = cachedGenerators.size(); d <= degree; d++) {
-        GenericGFPoly nextGenerator = lastGenerator.multiply(
-            new GenericGFPoly(field, new int[] { 1, field.exp(d - 1 + field.getGeneratorBase()) }));
-        cachedGenerators.add(nextGenerator);
-        lastGenerator = nextGenerator;
+    GenericGFPoly[] generators = cachedGenerators;
+    if (degree < generators.length) {
+      return generators[degree];
+    }
+    synchronized (this) {
+      generators = cachedGenerators;
+      if (degree >= generators.length) {
+        GenericGFPoly[] extended = Arrays.copyOf(generators, degree + 1);
+        GenericGFPoly lastGenerator = generators[generators.length - 1];
+        for (int d = generators.length; d <= degree; d++) {
+          GenericGFPoly nextGenerator = lastGenerator.multiply(
+              new GenericGFPoly(field, new int[] { 1, field.exp(d - 1 + field.getGeneratorBase()) }));
+          extended[d] = nextGenerator;
+          lastGenerator = nextGenerator;
+        }
+        cachedGenerators = extended;
+        generators = extended;
       }
+      return generators[degree];
     }
-    return cachedGenerators.get(degree);
   }
-
   public void encode(int[] toEncode, int ecBytes) {
     if (ecBytes == 0) {
       throw new IllegalArgumentException("No error correction bytes");
@@ -71,4 +102,56 @@ public final class ReedSolomonEncoder {
     System.arraycopy(coefficients, 0, toEncode, dataBytes + numZeroCoefficients, coefficients.length);
   }
 
+  /**
+   * <p>Computes the error correction codewords of a block straight from bytes, with a linear
+   * feedback shift register and a multiplication table. The result is the same as
+   * {@link #encode(int[], int)}. Only for fields of 256 elements.</p>
+   *
+   * @param data data codewords
+   * @param dataOffset index of the first data codeword
+   * @param dataLength number of data codewords
+   * @param ec receives the error correction codewords
+   * @param ecOffset index in "ec" of the first error correction codeword
+   * @param ecBytes number of error correction codewords
+   */
+  public void encode(byte[] data, int dataOffset, int dataLength, byte[] ec, int ecOffset, int ecBytes) {
+    if (field.getSize() != 256) {
+      throw new IllegalStateException("Byte encoding needs a field of 256 elements: " + field);
+    }
+    if (ecBytes == 0) {
+      throw new IllegalArgumentException("No error correction bytes");
+    }
+    if (dataLength <= 0) {
+      throw new IllegalArgumentException("No data bytes provided");
+    }
+    // Coefficients after the leading 1, highest degree first
+    int[] generator = buildGenerator(ecBytes).getCoefficients();
+    byte[] multiplyTable = this.multiplyTable;
+    if (multiplyTable == null) {
+      multiplyTable = new byte[256 * 256];
+      for (int a = 1; a < 256; a++) {
+        for (int b = 1; b < 256; b++) {
+          multiplyTable[(a << 8) | b] = (byte) field.multiply(a, b);
+        }
+      }
+      this.multiplyTable = multiplyTable;
+    }
+    Arrays.fill(ec, ecOffset, ecOffset + ecBytes, (byte) 0);
+    int last = ecOffset + ecBytes - 1;
+    for (int i = dataOffset; i < dataOffset + dataLength; i++) {
+      int feedback = (data[i] ^ ec[ecOffset]) & 0xFF;
+      if (feedback == 0) {
+        // Plain shift
+        System.arraycopy(ec, ecOffset + 1, ec, ecOffset, ecBytes - 1);
+        ec[last] = 0;
+        continue;
+      }
+      int row = feedback << 8;
+      for (int j = ecOffset, k = 1; j < last; j++, k++) {
+        ec[j] = (byte) (ec[j + 1] ^ multiplyTable[row | generator[k]]);
+      }
+      ec[last] = multiplyTable[row | generator[ecBytes]];
+    }
+  }
+
 }
@@ -0,0 +1,393 @@
+package main.java.com.google.zxing.hccqrcode;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+import main.java.com.google.zxing.ChecksumException;
+import main.java.com.google.zxing.DecodeHintType;
+import main.java.com.google.zxing.FormatException;
+import main.java.com.google.zxing.MyBinaryBitmap;
+import main.java.com.google.zxing.NotFoundException;
+import main.java.com.google.zxing.Result;
+
+/**
+ * <p>Decodes many images with a shared {@link HCCQRcodeReader}, running the work on an
+ * {@link Executor} (the common fork-join pool by default, or e.g. a virtual-thread executor).</p>
+ *
+ * <p>Each image goes through two stages, each one a separate task on the executor: binarization
+ * (building the {@link MyBinaryBitmap} and its black matrix), then detection, sampling and
+ * decoding, which share the reader's per-thread scratch. At most {@code maxInFlight} images are
+ * being processed or waiting to be delivered at any time: the thread which feeds the inputs blocks
+ * until there is room, so a lazy {@link Iterator} over millions of images is never read ahead
+ * further than that.</p>
+ *
+ * <p>Every input produces exactly one {@link Item}, holding either the {@link Result} or the
+ * failure and the stage it happened in. Given an {@link HCCQRcodeMultiReader}, every code of each
+ * image is decoded, see {@link Item#getResults()}. Items are delivered in input order or in
+ * completion order, one at a time.</p>
+ *
+ * @author Francesco Benedetto
+ *
+ */
+public final class HCCQRBatchDecoder {
+
+  /** Order in which items are delivered to the {@link Listener}. */
+  public enum Order {
+    /** Same order as the inputs; a slow image holds back the ones after it. */
+    INPUT,
+    /** As soon as each image is done. */
+    COMPLETION
+  }
+
+  /** Stage of the pipeline in which an image failed. */
+  public enum Stage {
+    /** Creating the bitmap from the input, or binarizing it. */
+    BINARIZE,
+    /** Detecting, sampling or decoding the code. */
+    DECODE
+  }
+
+  /**
+   * Turns an input (an image, a buffer...) into the bitmap to decode, choosing the
+   * {@link main.java.com.google.zxing.LuminanceSource} and the binarizer. Called concurrently.
+   */
+  public interface BitmapFactory<T> {
+    MyBinaryBitmap createBitmap(T input) throws Exception;
+  }
+
+  /** Receives the items. Calls are never concurrent. */
+  public interface Listener<T> {
+    void onItem(Item<T> item);
+  }
+
+  /**
+   * Outcome of the decoding of one input: either a {@link Result} or a failure.
+   */
+  public static final class Item<T> {
+
+    private final long index;
+    private final T input;
+    private final Result[] results;
+    private final Exception failure;
+    private final Stage failedStage;
+
+    Item(long index, T input, Result[] results, Exception failure, Stage failedStage) {
+      this.index = index;
+      this.input = input;
+      this.results = results;
+      this.failure = failure;
+      this.failedStage = failedStage;
+    }
+
+    /** @return position of the input, starting from 0 */
+    public long getIndex() {
+      return index;
+    }
+
+    public T getInput() {
+      return input;
+    }
+
+    public boolean isSuccess() {
+      return results != null;
+    }
+
+    /** @return the decoded code, the best-fitting one of a multi reader, or null if decoding failed */
+    public Result getResult() {
+      return results != null ? results[0] : null;
+    }
+
+    /**
+     * @return the decoded codes, best-fitting first: all those of the image with an
+     *  {@link HCCQRcodeMultiReader}, the only one otherwise. Null if decoding failed
+     */
+    public Result[] getResults() {
+      return results != null ? results.clone() : null;
+    }
+
+    /**
+     * @return null on success; otherwise a {@link NotFoundException}, {@link FormatException} or
+     *  {@link ChecksumException} from the reader, or whatever the {@link BitmapFactory} threw. An
+     *  {@link Error} is wrapped in an {@link ExecutionException}, and rethrown by
+     *  {@link HCCQRBatchDecoder#decode(Iterator, BitmapFactory, Order, Listener)} too
+     */
+    public Exception getFailure() {
+      return failure;
+    }
+
+    /** @return stage in which decoding failed, or null on success */
+    public Stage getFailedStage() {
+      return failedStage;
+    }
+
+    public boolean isNotFound() {
+      return failure instanceof NotFoundException;
+    }
+
+    public boolean isChecksumError() {
+      return failure instanceof ChecksumException;
+    }
+
+    public boolean isFormatError() {
+      return failure instanceof FormatException;
+    }
+
+    @Override
+    public String toString() {
+      return index + ": " + (results != null ? results[0].getText() : failedStage + " " + failure);
+    }
+  }
+
+  private final HCCQRcodeReader reader;
+  private final Executor executor;
+  private final int maxInFlight;
+  private final Map<DecodeHintType,?> hints;
+
+  /**
+   * Uses a new {@link HCCQRcodeReader}, the common fork-join pool and no hints; at most twice as
+   * many images as available processors are in flight.
+   */
+  public HCCQRBatchDecoder() {
+    this(new HCCQRcodeReader(), ForkJoinPool.commonPool(),
+         2 * Runtime.getRuntime().availableProcessors(), null);
+  }
+
+  /**
+   * @param reader reader shared by all the tasks. An {@link HCCQRcodeMultiReader} decodes every code
+   *  of each image
+   * @param executor executor running the tasks. The thread calling {@link #decode} blocks while
+   *  waiting, so it should not be one of the executor's threads
+   * @param maxInFlight maximum number of images being processed or waiting to be delivered
+   * @param hints hints passed to the reader, or null
+   */
+  public HCCQRBatchDecoder(HCCQRcodeReader reader,
+                           Executor executor,
+                           int maxInFlight,
+                           Map<DecodeHintType,?> hints) {
+    if (maxInFlight < 1) {
+      throw new IllegalArgumentException("maxInFlight must be at least 1");
+    }
+    this.reader = reader;
+    this.executor = executor;
+    this.maxInFlight = maxInFlight;
+    this.hints = hints;
+  }
+
+  /**
+   * @return the reader shared by all the tasks
+   */
+  public HCCQRcodeReader getReader() {
+    return reader;
+  }
+
+  /**
+   * Decodes all the inputs and returns their items in input order.
+   *
+   * @throws InterruptedException if the calling thread is interrupted while waiting
+   */
+  public <T> List<Item<T>> decodeAll(Collection<? extends T> inputs, BitmapFactory<? super T> factory)
+      throws InterruptedException {
+    final List<Item<T>> items = new ArrayList<>(inputs.size());
+    decode(inputs.iterator(), factory, Order.INPUT, new Listener<T>() {
+      @Override
+      public void onItem(Item<T> item) {
+        items.add(item);
+      }
+    });
+    return Collections.unmodifiableList(items);
+  }
+
+  /**
+   * Decodes the inputs as they are produced by "inputs" and hands every item to "listener".
+   * Returns once all of them have been delivered.
+   *
+   * <p>If a stage throws an {@link Error}, such as running out of memory on a large image, its
+   * item is still delivered as a failure, no further input is read, and the error is rethrown
+   * once the images already submitted have been delivered. So is the first exception or error
+   * thrown by the listener, after which no more items are delivered and no further input is
+   * read either.</p>
+   *
+   * @throws InterruptedException if the calling thread is interrupted while waiting; images
+   *  already submitted keep running but are no longer delivered once this method has returned
+   */
+  public <T> void decode(Iterator<? extends T> inputs,
+                         BitmapFactory<? super T> factory,
+                         Order order,
+                         Listener<T> listener) throws InterruptedException {
+    Batch<T> batch = new Batch<>(factory, order, listener);
+    long index = 0;
+    try {
+      while (batch.error == null && batch.listenerFailure == null && inputs.hasNext()) {
+        batch.permits.acquire();
+        T input = inputs.next();
+        batch.submit(new Binarize<>(batch, index++, input));
+      }
+      // Wait until every image has been delivered
+      batch.permits.acquire(maxInFlight);
+      batch.permits.release(maxInFlight);
+    } finally {
+      batch.closed = true;
+    }
+    if (batch.listenerFailure instanceof Error) {
+      throw (Error) batch.listenerFailure;
+    }
+    if (batch.listenerFailure != null) {
+      throw (RuntimeException) batch.listenerFailure;
+    }
+    if (batch.error != null) {
+      throw batch.error;
+    }
+  }
+
+  // State of one call to decode()
+  private final class Batch<T> {
+
+    final BitmapFactory<? super T> factory;
+    final Order order;
+    final Listener<T> listener;
+    final Semaphore permits = new Semaphore(maxInFlight);
+    // For Order.INPUT: items done but not yet delivered, at index % maxInFlight
+    final Object[] pending;
+    long nextToDeliver;
+    volatile boolean closed;
+    // First error thrown by a stage; no more inputs are read once it is set
+    volatile Error error;
+    // RuntimeException or Error thrown by the listener; no more inputs are read once it is set
+    volatile Throwable listenerFailure;
+
+    Batch(BitmapFactory<? super T> factory, Order order, Listener<T> listener) {
+      this.factory = factory;
+      this.order = order;
+      this.listener = listener;
+      this.pending = order == Order.INPUT ? new Object[maxInFlight] : null;
+    }
+
+    void submit(Runnable task) {
+      try {
+        executor.execute(task);
+      } catch (RejectedExecutionException ree) {
+        // Run it here, rather than losing the image
+        task.run();
+      }
+    }
+
+    // A permit is held for each image until it is delivered, so at most maxInFlight items are
+    // ever pending and their slots in "pending" cannot collide.
+    @SuppressWarnings("unchecked")
+    synchronized void deliver(Item<T> item) {
+      if (order == Order.COMPLETION) {
+        notifyListener(item);
+        permits.release();
+        return;
+      }
+      pending[(int) (item.getIndex() % maxInFlight)] = item;
+      while (true) {
+        int slot = (int) (nextToDeliver % maxInFlight);
+        Item<T> next = (Item<T>) pending[slot];
+        if (next == null || next.getIndex() != nextToDeliver) {
+          return;
+        }
+        pending[slot] = null;
+        nextToDeliver++;
+        notifyListener(next);
+        permits.release();
+      }
+    }
+
+    // Delivers a stage which threw an Error as a failed item, so that its permit is released
+    void fail(long index, T input, Error e, Stage stage) {
+      synchronized (this) {
+        if (error == null) {
+          error = e;
+        }
+      }
+      deliver(new Item<>(index, input, null, new ExecutionException(e), stage));
+    }
+
+    private void notifyListener(Item<T> item) {
+      if (closed || listenerFailure != null) {
+        return;
+      }
+      try {
+        listener.onItem(item);
+      } catch (RuntimeException | Error e) {
+        listenerFailure = e;
+      }
+    }
+  }
+
+  private final class Binarize<T> implements Runnable {
+
+    private final Batch<T> batch;
+    private final long index;
+    private final T input;
+
+    Binarize(Batch<T> batch, long index, T input) {
+      this.batch = batch;
+      this.index = index;
+      this.input = input;
+    }
+
+    @Override
+    public void run() {
+      MyBinaryBitmap bitmap;
+      try {
+        bitmap = batch.factory.createBitmap(input);
+        // MyBinaryBitmap keeps the matrix, so the next stage does not binarize again
+        bitmap.getBlackMatrix();
+      } catch (Exception e) {
+        batch.deliver(new Item<>(index, input, null, e, Stage.BINARIZE));
+        return;
+      } catch (Error e) {
+        batch.fail(index, input, e, Stage.BINARIZE);
+        return;
+      }
+      batch.submit(new Decode<>(batch, index, input, bitmap));
+    }
+  }
+
+  private final class Decode<T> implements Runnable {
+
+    private final Batch<T> batch;
+    private final long index;
+    private final T input;
+    private final MyBinaryBitmap bitmap;
+
+    Decode(Batch<T> batch, long index, T input, MyBinaryBitmap bitmap) {
+      this.batch = batch;
+      this.index = index;
+      this.input = input;
+      this.bitmap = bitmap;
+    }
+
+    @Override
+    public void run() {
+      Item<T> item;
+      try {
+        Result[] results;
+        if (reader instanceof HCCQRcodeMultiReader) {
+          results = ((HCCQRcodeMultiReader) reader).decodeMultiple(bitmap, hints);
+        } else {
+          results = new Result[] {reader.decode(bitmap, hints)};
+        }
+        item = new Item<>(index, input, results, null, null);
+      } catch (Exception e) {
+        item = new Item<>(index, input, null, e, Stage.DECODE);
+      } catch (Error e) {
+        batch.fail(index, input, e, Stage.DECODE);
+        return;
+      }
+      batch.deliver(item);
+    }
+  }
+
+}
@@ -0,0 +1,285 @@
+package main.java.com.google.zxing.hccqrcode;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+
+import javax.imageio.ImageIO;
+
+import main.java.com.google.zxing.EncodeHintType;
+import main.java.com.google.zxing.WriterException;
+import main.java.com.google.zxing.common.BitVectorMatrix;
+import main.java.com.google.zxing.hccqrcode.decoder.ErrorCorrectionLevel;
+import main.java.com.google.zxing.hccqrcode.encoder.ByteVectorMatrix;
+import main.java.com.google.zxing.hccqrcode.encoder.Encoder;
+import main.java.com.google.zxing.hccqrcode.encoder.HCCQRcode;
+
+/**
+ * <p>Encodes many payloads with the same settings (error correction level, quiet zone, module
+ * size, character set), spreading the work over an {@link Executor}, the common fork-join pool by
+ * default.</p>
+ *
+ * <p>Results are delivered in input order. At most {@code maxInFlight} payloads are being encoded
+ * at any time, so a lazy {@link Iterator} is never read far ahead. The function-pattern layout of
+ * each version and the Reed-Solomon generator polynomials are built once and reused by all the
+ * codes.</p>
+ *
+ * @author Francesco Benedetto
+ *
+ */
+public final class HCCQRBatchWriter<R> {
+
+  private static final int QUIET_ZONE_SIZE = 4;
+
+  /**
+   * Turns an encoded code into the output of the batch. Called concurrently.
+   */
+  public interface Renderer<R> {
+    R render(HCCQRcode code, int quietZone, int moduleSize) throws WriterException;
+  }
+
+  /** Receives the outputs in input order. Calls are never concurrent. */
+  public interface Listener<R> {
+    void onEncoded(long index, String contents, R output);
+
+    void onFailure(long index, String contents, WriterException failure);
+  }
+
+  /** Renders codes as a {@link BitVectorMatrix}, like {@link HCCQRcodeWriter}. */
+  public static final Renderer<BitVectorMatrix> MATRIX = new Renderer<BitVectorMatrix>() {
+    @Override
+    public BitVectorMatrix render(HCCQRcode code, int quietZone, int moduleSize) {
+      int size = (code.getMatrix().getWidth() + 2 * quietZone) * moduleSize;
+      return HCCQRcodeWriter.renderResult(code, size, size, quietZone);
+    }
+  };
+
+  /**
+   * Renders codes as raw 24-bit pixels, 3 bytes (r, g, b) per pixel, row by row, with black, red,
+   * green and white modules.
+   */
+  public static final Renderer<byte[]> RGB = new Renderer<byte[]>() {
+    @Override
+    public byte[] render(HCCQRcode code, int quietZone, int moduleSize) {
+      return toRGB(code, quietZone, moduleSize);
+    }
+  };
+
+  /** Renders codes as PNG files. */
+  public static final Renderer<byte[]> PNG = new Renderer<byte[]>() {
+    @Override
+    public byte[] render(HCCQRcode code, int quietZone, int moduleSize) throws WriterException {
+      int size = (code.getMatrix().getWidth() + 2 * quietZone) * moduleSize;
+      BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_3BYTE_BGR);
+      image.getRaster().setDataElements(0, 0, size, size, toRGB(code, quietZone, moduleSize));
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      try {
+        ImageIO.write(image, "png", out);
+      } catch (IOException ioe) {
+        throw new WriterException(ioe);
+      }
+      return out.toByteArray();
+    }
+  };
+
+  // r, g, b of the modules, by packed module value (bit 0 = plane 0, bit 1 = plane 1)
+  private static final byte[][] MODULE_RGB = {
+      {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF}, // white
+      {(byte) 0xFF, 0, 0},                     // red
+      {0, (byte) 0xFF, 0},                     // green
+      {0, 0, 0},                               // black
+  };
+
+  private final ErrorCorrectionLevel ecLevel;
+  private final int quietZone;
+  private final int moduleSize;
+  private final Map<EncodeHintType,Object> hints;
+  private final Renderer<R> renderer;
+  private final Executor executor;
+  private final int maxInFlight;
+
+  /**
+   * Uses ISO-8859-1, the default quiet zone and the common fork-join pool, with at most twice as
+   * many payloads as available processors in flight.
+   */
+  public HCCQRBatchWriter(ErrorCorrectionLevel ecLevel, int moduleSize, Renderer<R> renderer) {
+    this(ecLevel, QUIET_ZONE_SIZE, moduleSize, null, renderer, ForkJoinPool.commonPool(),
+         2 * Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * @param ecLevel error correction level of all the codes
+   * @param quietZone width of the white border, in modules
+   * @param moduleSize size of a module, in pixels
+   * @param characterSet encoding of the payloads, or null for ISO-8859-1
+   * @param renderer builds the output of each code
+   * @param executor executor running the encoding. The thread calling {@link #encode} blocks
+   *  while waiting, so it should not be one of the executor's threads
+   * @param maxInFlight maximum number of payloads being encoded at the same time
+   */
+  public HCCQRBatchWriter(ErrorCorrectionLevel ecLevel,
+                          int quietZone,
+                          int moduleSize,
+                          String characterSet,
+                          Renderer<R> renderer,
+                          Executor executor,
+                          int maxInFlight) {
+    if (quietZone < 0 || moduleSize < 1 || maxInFlight < 1) {
+      throw new IllegalArgumentException("Invalid quiet zone, module size or maxInFlight");
+    }
+    this.ecLevel = ecLevel;
+    this.quietZone = quietZone;
+    this.moduleSize = moduleSize;
+    this.renderer = renderer;
+    this.executor = executor;
+    this.maxInFlight = maxInFlight;
+    // Parsed once here rather than for every payload
+    Map<EncodeHintType,Object> encodeHints = new EnumMap<>(EncodeHintType.class);
+    if (characterSet != null) {
+      encodeHints.put(EncodeHintType.CHARACTER_SET, characterSet);
+    }
+    this.hints = Collections.unmodifiableMap(encodeHints);
+  }
+
+  /**
+   * Encodes and renders one payload on the calling thread.
+   *
+   * @throws WriterException if the payload cannot be encoded
+   */
+  public R encode(String contents) throws WriterException {
+    if (contents.isEmpty()) {
+      throw new WriterException("Found empty contents");
+    }
+    HCCQRcode code = Encoder.encode(contents, ecLevel, hints);
+    return renderer.render(code, quietZone, moduleSize);
+  }
+
+  /**
+   * Encodes all the payloads and returns the outputs in input order.
+   *
+   * @throws WriterException for the first payload which cannot be encoded
+   * @throws InterruptedException if the calling thread is interrupted while waiting
+   */
+  public List<R> encodeAll(Collection<String> contents) throws WriterException, InterruptedException {
+    final List<R> outputs = new ArrayList<>(contents.size());
+    final WriterException[] firstFailure = new WriterException[1];
+    encode(contents.iterator(), new Listener<R>() {
+      @Override
+      public void onEncoded(long index, String text, R output) {
+        outputs.add(output);
+      }
+
+      @Override
+      public void onFailure(long index, String text, WriterException failure) {
+        if (firstFailure[0] == null) {
+          firstFailure[0] = new WriterException("Cannot encode payload " + index + ": " + failure.getMessage());
+          firstFailure[0].initCause(failure);
+        }
+      }
+    });
+    if (firstFailure[0] != null) {
+      throw firstFailure[0];
+    }
+    return outputs;
+  }
+
+  /**
+   * Encodes the payloads as they are produced by "contents" and hands every output or failure to
+   * "listener", in input order. Returns once all of them have been delivered.
+   *
+   * <p>If an encode throws anything but a {@link WriterException}, or the listener throws, the
+   * payloads still in flight are cancelled and the exception or error is rethrown as is.</p>
+   *
+   * @throws InterruptedException if the calling thread is interrupted while waiting
+   */
+  public void encode(Iterator<String> contents, Listener<R> listener) throws InterruptedException {
+    ArrayDeque<FutureTask<R>> inFlight = new ArrayDeque<>(maxInFlight);
+    ArrayDeque<String> inFlightContents = new ArrayDeque<>(maxInFlight);
+    long nextToDeliver = 0;
+    try {
+      while (contents.hasNext() || !inFlight.isEmpty()) {
+        if (contents.hasNext() && inFlight.size() < maxInFlight) {
+          final String text = contents.next();
+          FutureTask<R> task = new FutureTask<>(new Callable<R>() {
+            @Override
+            public R call() throws WriterException {
+              return encode(text);
+            }
+          });
+          inFlight.addLast(task);
+          inFlightContents.addLast(text);
+          executor.execute(task);
+          continue;
+        }
+        // Window full, or no more input: wait for the oldest payload
+        FutureTask<R> task = inFlight.removeFirst();
+        String text = inFlightContents.removeFirst();
+        try {
+          listener.onEncoded(nextToDeliver, text, task.get());
+        } catch (ExecutionException ee) {
+          Throwable cause = ee.getCause();
+          if (cause instanceof WriterException) {
+            listener.onFailure(nextToDeliver, text, (WriterException) cause);
+          } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+          } else if (cause instanceof Error) {
+            throw (Error) cause;
+          } else {
+            throw new IllegalStateException(cause);
+          }
+        } catch (InterruptedException ie) {
+          task.cancel(false);
+          throw ie;
+        }
+        nextToDeliver++;
+      }
+    } finally {
+      // Empty unless the loop was left early: the caller no longer wants these outputs
+      for (FutureTask<R> pending : inFlight) {
+        pending.cancel(false);
+      }
+    }
+  }
+
+  private static byte[] toRGB(HCCQRcode code, int quietZone, int moduleSize) {
+    ByteVectorMatrix input = code.getMatrix();
+    int dimension = input.getWidth();
+    int size = (dimension + 2 * quietZone) * moduleSize;
+    int stride = 3 * size;
+    byte[] pixels = new byte[stride * size];
+    // Start all white, then paint the modules row by row and copy each pixel row moduleSize times
+    Arrays.fill(pixels, (byte) 0xFF);
+    int offset = quietZone * moduleSize;
+    for (int y = 0; y < dimension; y++) {
+      int rowStart = (offset + y * moduleSize) * stride;
+      int pixel = rowStart + 3 * offset;
+      for (int x = 0; x < dimension; x++) {
+        byte[] rgb = MODULE_RGB[input.get(x, y)];
+        for (int i = 0; i < moduleSize; i++) {
+          pixels[pixel++] = rgb[0];
+          pixels[pixel++] = rgb[1];
+          pixels[pixel++] = rgb[2];
+        }
+      }
+      for (int i = 1; i < moduleSize; i++) {
+        System.arraycopy(pixels, rowStart, pixels, rowStart + i * stride, stride);
+      }
+    }
+    return pixels;
+  }
+
+}
@@ -0,0 +1,287 @@
+package main.java.com.google.zxing.hccqrcode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+
+import main.java.com.google.zxing.LuminanceSource;
+import main.java.com.google.zxing.MyBinaryBitmap;
+import main.java.com.google.zxing.Result;
+import main.java.com.google.zxing.ResultPoint;
+import main.java.com.google.zxing.common.MappedImageFile;
+import main.java.com.google.zxing.common.RGBLookupBinarizer;
+import main.java.com.google.zxing.common.SimpleHybridBinarizer;
+
+/**
+ * <p>Finds and decodes the HCC QR Codes of a sheet much larger than the heap, such as a print
+ * sheet scanned at 600 dpi into a {@link MappedImageFile}.</p>
+ *
+ * <p>The sheet is walked in square tiles which overlap by a fixed number of pixels: a code lies
+ * entirely within at least one tile as long as it is no larger than the overlap. The tiles go
+ * through an {@link HCCQRBatchDecoder}, which reads them lazily and keeps at most
+ * {@code maxInFlight} of them in memory, so the memory used is bounded by the tile size and not
+ * by the sheet size. Its reader is an {@link HCCQRcodeMultiReader}, as a tile may hold several
+ * codes.</p>
+ *
+ * <p>The points of the results are translated to the coordinates of the sheet. A code decoded
+ * from several overlapping tiles is reported once.</p>
+ *
+ * @author Francesco Benedetto
+ *
+ */
+public final class HCCQRSheetScanner {
+
+  /** A window of the sheet. */
+  public static final class Tile {
+
+    private final int left;
+    private final int top;
+    private final int width;
+    private final int height;
+
+    Tile(int left, int top, int width, int height) {
+      this.left = left;
+      this.top = top;
+      this.width = width;
+      this.height = height;
+    }
+
+    public int getLeft() {
+      return left;
+    }
+
+    public int getTop() {
+      return top;
+    }
+
+    public int getWidth() {
+      return width;
+    }
+
+    public int getHeight() {
+      return height;
+    }
+
+    @Override
+    public String toString() {
+      return width + "x" + height + " at (" + left + ',' + top + ')';
+    }
+  }
+
+  /**
+   * Binarizes a tile: colour tiles with {@link RGBLookupBinarizer}, grey ones with
+   * {@link SimpleHybridBinarizer}.
+   */
+  public static final HCCQRBatchDecoder.BitmapFactory<LuminanceSource> DEFAULT_BITMAP_FACTORY =
+      new HCCQRBatchDecoder.BitmapFactory<LuminanceSource>() {
+        @Override
+        public MyBinaryBitmap createBitmap(LuminanceSource tile) {
+          if (tile.getPalette() != null) {
+            return new MyBinaryBitmap(new RGBLookupBinarizer(tile));
+          }
+          return new MyBinaryBitmap(new SimpleHybridBinarizer(tile));
+        }
+      };
+
+  private final HCCQRBatchDecoder decoder;
+  private final HCCQRBatchDecoder.BitmapFactory<? super LuminanceSource> bitmapFactory;
+  private final int tileSize;
+  private final int overlap;
+
+  /**
+   * Decodes the tiles with a new {@link HCCQRcodeMultiReader} on the common fork-join pool; at
+   * most twice as many tiles as available processors are in memory.
+   *
+   * @param tileSize width and height of the tiles, in pixels
+   * @param overlap pixels shared by neighbouring tiles: at least the size of the largest code,
+   *  quiet zone included
+   */
+  public HCCQRSheetScanner(int tileSize, int overlap) {
+    this(new HCCQRBatchDecoder(new HCCQRcodeMultiReader(), ForkJoinPool.commonPool(),
+                               2 * Runtime.getRuntime().availableProcessors(), null),
+         tileSize, overlap);
+  }
+
+  /**
+   * @param decoder runs the decoding of the tiles, with an {@link HCCQRcodeMultiReader}
+   * @param tileSize width and height of the tiles, in pixels
+   * @param overlap pixels shared by neighbouring tiles: at least the size of the largest code,
+   *  quiet zone included
+   */
+  public HCCQRSheetScanner(HCCQRBatchDecoder decoder, int tileSize, int overlap) {
+    this(decoder, tileSize, overlap, DEFAULT_BITMAP_FACTORY);
+  }
+
+  /**
+   * @param decoder runs the decoding of the tiles, with an {@link HCCQRcodeMultiReader}
+   * @param tileSize width and height of the tiles, in pixels
+   * @param overlap pixels shared by neighbouring tiles: at least the size of the largest code,
+   *  quiet zone included
+   * @param bitmapFactory binarizes the sources returned by
+   *  {@link MappedImageFile#getTile(int, int, int, int)}
+   */
+  public HCCQRSheetScanner(HCCQRBatchDecoder decoder,
+                           int tileSize,
+                           int overlap,
+                           HCCQRBatchDecoder.BitmapFactory<? super LuminanceSource> bitmapFactory) {
+    if (overlap < 0 || overlap >= tileSize) {
+      throw new IllegalArgumentException("Overlap must be in [0, tileSize)");
+    }
+    if (!(decoder.getReader() instanceof HCCQRcodeMultiReader)) {
+      // A single-code reader finds nothing in tiles holding several codes
+      throw new IllegalArgumentException("Decoder must read tiles with an HCCQRcodeMultiReader");
+    }
+    this.decoder = decoder;
+    this.bitmapFactory = bitmapFactory;
+    this.tileSize = tileSize;
+    this.overlap = overlap;
+  }
+
+  /**
+   * Decodes every code of the sheet.
+   *
+   * @return the results, in the order of the first tile, row by row, from which each code was
+   *  decoded, with points in sheet coordinates. Tiles in which no code could be decoded are skipped
+   * @throws InterruptedException if the calling thread is interrupted while waiting
+   */
+  public List<Result> scan(final MappedImageFile sheet) throws InterruptedException {
+    final List<Result> results = new ArrayList<>();
+    // Index of the first tile in which each result was found, as tiles complete in any order
+    final List<Long> tileIndices = new ArrayList<>();
+    HCCQRBatchDecoder.BitmapFactory<Tile> factory = new HCCQRBatchDecoder.BitmapFactory<Tile>() {
+      @Override
+      public MyBinaryBitmap createBitmap(Tile tile) throws Exception {
+        LuminanceSource source = sheet.getTile(tile.getLeft(), tile.getTop(), tile.getWidth(), tile.getHeight());
+        return bitmapFactory.createBitmap(source);
+      }
+    };
+    decoder.decode(tiles(sheet.getWidth(), sheet.getHeight()), factory, HCCQRBatchDecoder.Order.COMPLETION,
+        new HCCQRBatchDecoder.Listener<Tile>() {
+          @Override
+          public void onItem(HCCQRBatchDecoder.Item<Tile> item) {
+            if (!item.isSuccess()) {
+              return;
+            }
+            for (Result tileResult : item.getResults()) {
+              Result result = translate(tileResult, item.getInput());
+              int duplicate = indexOfDuplicate(result, results);
+              if (duplicate < 0) {
+                results.add(result);
+                tileIndices.add(item.getIndex());
+              } else if (item.getIndex() < tileIndices.get(duplicate)) {
+                results.set(duplicate, result);
+                tileIndices.set(duplicate, item.getIndex());
+              }
+            }
+          }
+        });
+    Integer[] order = new Integer[results.size()];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer a, Integer b) {
+        return tileIndices.get(a).compareTo(tileIndices.get(b));
+      }
+    });
+    List<Result> sorted = new ArrayList<>(order.length);
+    for (Integer i : order) {
+      sorted.add(results.get(i));
+    }
+    return sorted;
+  }
+
+  /**
+   * @return the tiles covering a sheet, row by row, produced lazily
+   */
+  public Iterator<Tile> tiles(final int sheetWidth, final int sheetHeight) {
+    final int step = tileSize - overlap;
+    return new Iterator<Tile>() {
+      private int left;
+      private int top;
+
+      @Override
+      public boolean hasNext() {
+        return top < sheetHeight;
+      }
+
+      @Override
+      public Tile next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        Tile tile = new Tile(left, top, Math.min(tileSize, sheetWidth - left), Math.min(tileSize, sheetHeight - top));
+        if (left + tileSize >= sheetWidth) {
+          // Last tile of the row
+          left = 0;
+          top = top + tileSize >= sheetHeight ? sheetHeight : top + step;
+        } else {
+          left += step;
+        }
+        return tile;
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  private static Result translate(Result result, Tile tile) {
+    ResultPoint[] points = result.getResultPoints();
+    ResultPoint[] translated = new ResultPoint[points == null ? 0 : points.length];
+    for (int i = 0; i < translated.length; i++) {
+      translated[i] = new ResultPoint(points[i].getX() + tile.getLeft(), points[i].getY() + tile.getTop());
+    }
+    Result sheetResult = new Result(result.getText(),
+                                    result.getRawBytes(),
+                                    translated,
+                                    result.getBarcodeFormat(),
+                                    result.getTimestamp());
+    sheetResult.putAllMetadata(result.getResultMetadata());
+    return sheetResult;
+  }
+
+  /**
+   * @return index of a result with the same text at the same place, less than a quarter of the
+   *  distance between its bottom-left and top-right finder patterns away, or -1
+   */
+  private static int indexOfDuplicate(Result result, List<Result> results) {
+    for (int i = 0; i < results.size(); i++) {
+      Result other = results.get(i);
+      if (!other.getText().equals(result.getText())) {
+        continue;
+      }
+      ResultPoint[] points = result.getResultPoints();
+      if (points.length < 3 || other.getResultPoints().length < 3) {
+        // Without points, identical contents are all that can be compared
+        return i;
+      }
+      float dx = centerX(result) - centerX(other);
+      float dy = centerY(result) - centerY(other);
+      float size = ResultPoint.distance(points[0], points[2]);
+      if (dx * dx + dy * dy < size * size / 16) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  // The centre of a code is halfway between its bottom-left and top-right finder patterns
+  private static float centerX(Result result) {
+    ResultPoint[] points = result.getResultPoints();
+    return points.length < 3 ? 0.0f : (points[0].getX() + points[2].getX()) / 2.0f;
+  }
+
+  private static float centerY(Result result) {
+    ResultPoint[] points = result.getResultPoints();
+    return points.length < 3 ? 0.0f : (points[0].getY() + points[2].getY()) / 2.0f;
+  }
+
+}
@@ -0,0 +1,116 @@
+package main.java.com.google.zxing.hccqrcode;
+
+import java.util.Map;
+
+import main.java.com.google.zxing.ChecksumException;
+import main.java.com.google.zxing.DecodeHintType;
+import main.java.com.google.zxing.FormatException;
+import main.java.com.google.zxing.MyBinaryBitmap;
+import main.java.com.google.zxing.MyReader;
+import main.java.com.google.zxing.NotFoundException;
+import main.java.com.google.zxing.ReaderException;
+import main.java.com.google.zxing.Result;
+import main.java.com.google.zxing.common.BitVectorMatrix;
+import main.java.com.google.zxing.common.DecoderResult;
+import main.java.com.google.zxing.common.MyDetectorResult;
+import main.java.com.google.zxing.common.MyGridSampler;
+import main.java.com.google.zxing.hccqrcode.decoder.Decoder;
+import main.java.com.google.zxing.qrcode.detector.FinderPatternInfo;
+import main.java.com.google.zxing.qrcode.detector.MyDetector;
+import main.java.com.google.zxing.qrcode.detector.MyFinderPatternTracker;
+
+/**
+ * <p>Decodes the HCC QR Code seen by a fixed camera, frame after frame of a video stream.</p>
+ *
+ * <p>The finder patterns of the code are followed from one frame to the next by a
+ * {@link MyFinderPatternTracker}, which only searches small windows around their predicted
+ * positions. The whole frame is scanned for finder patterns only for the first frame, and again
+ * whenever the tracked code is lost: when its patterns cannot be found in their windows, or when
+ * those found do not decode, in which case the frame is searched again as a whole before
+ * giving up.</p>
+ *
+ * <p>Unlike {@link HCCQRcodeReader}, this reader is stateful and not thread-safe: use one
+ * instance per stream, and call {@link #reset()} when the stream changes. The sampled grid is
+ * reused from one frame to the next.</p>
+ *
+ * @author Francesco Benedetto
+ *
+ */
+public final class HCCQRTrackingReader implements MyReader {
+
+  private final Decoder decoder = new Decoder();
+  private final MyGridSampler gridSampler;
+  private final MyFinderPatternTracker tracker;
+  private BitVectorMatrix scratchBits;
+
+  public HCCQRTrackingReader() {
+    this(null, new MyFinderPatternTracker());
+  }
+
+  /**
+   * @param gridSampler sampler used by this reader, or null to use {@link MyGridSampler#getInstance()}
+   * @param tracker follows the finder patterns of the code; owned by this reader from now on
+   */
+  public HCCQRTrackingReader(MyGridSampler gridSampler, MyFinderPatternTracker tracker) {
+    this.gridSampler = gridSampler;
+    this.tracker = tracker;
+  }
+
+  /**
+   * @return true iff the next frame will be searched around the code found in the last one
+   */
+  public boolean isTracking() {
+    return tracker.isTracking();
+  }
+
+  @Override
+  public Result decode(MyBinaryBitmap image) throws NotFoundException, ChecksumException, FormatException {
+    return decode(image, null);
+  }
+
+  /**
+   * Locates and decodes the code in the next frame of the stream.
+   *
+   * @throws NotFoundException if a QR code cannot be found
+   * @throws FormatException if a QR code cannot be decoded
+   * @throws ChecksumException if error correction fails
+   */
+  @Override
+  public Result decode(MyBinaryBitmap image, Map<DecodeHintType,?> hints)
+      throws NotFoundException, ChecksumException, FormatException {
+    BitVectorMatrix matrix = image.getBlackMatrix();
+    FinderPatternInfo tracked = tracker.track(matrix, hints);
+    if (tracked != null) {
+      try {
+        return decode(matrix, tracked, hints);
+      } catch (ReaderException re) {
+        // The tracked patterns led nowhere: search the whole frame
+        tracker.reset();
+      }
+    }
+    try {
+      return decode(matrix, tracker.find(matrix, hints), hints);
+    } catch (NotFoundException | ChecksumException | FormatException e) {
+      tracker.reset();
+      throw e;
+    }
+  }
+
+  private Result decode(BitVectorMatrix matrix, FinderPatternInfo info, Map<DecodeHintType,?> hints)
+      throws NotFoundException, ChecksumException, FormatException {
+    MyDetectorResult detectorResult = new MyDetector(matrix, gridSampler, scratchBits).processFinderPatternInfo(info);
+    scratchBits = detectorResult.getBits();
+    DecoderResult decoderResult =
+        decoder.decode(detectorResult.getBits(), detectorResult.getConfidence(), hints);
+    return HCCQRcodeReader.createResult(decoderResult, detectorResult.getPoints());
+  }
+
+  /**
+   * Forgets the tracked code, so that the next frame is scanned as a whole.
+   */
+  @Override
+  public void reset() {
+    tracker.reset();
+  }
+
+}
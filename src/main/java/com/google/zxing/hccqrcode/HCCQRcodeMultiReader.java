@@ -0,0 +1,182 @@
+package main.java.com.google.zxing.hccqrcode;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import main.java.com.google.zxing.DecodeHintType;
+import main.java.com.google.zxing.MyBinaryBitmap;
+import main.java.com.google.zxing.NotFoundException;
+import main.java.com.google.zxing.ReaderException;
+import main.java.com.google.zxing.Result;
+import main.java.com.google.zxing.common.DecoderResult;
+import main.java.com.google.zxing.common.MyDetectorResult;
+import main.java.com.google.zxing.common.MyGridSampler;
+import main.java.com.google.zxing.qrcode.detector.FinderPattern;
+import main.java.com.google.zxing.qrcode.detector.FinderPatternInfo;
+import main.java.com.google.zxing.qrcode.detector.MyMultiDetector;
+
+/**
+ * <p>Locates and decodes all the HCC QR Codes of an image, such as the labels seen by a conveyor
+ * camera.</p>
+ *
+ * <p>The binarized image is scanned once for finder patterns, which are grouped into the triples
+ * that could be the corners of a code (see
+ * {@link main.java.com.google.zxing.qrcode.detector.MyMultiFinderPatternFinder}). Each triple is
+ * then sampled and decoded on its own: in turn, best-fitting triple first, or as tasks of a
+ * {@link ForkJoinPool} if one is given.</p>
+ *
+ * <p>A finder pattern belongs to one code only: once a triple has been decoded, the triples
+ * sharing one of its patterns are dropped. In turn they are not even sampled; in parallel they
+ * are decoded along with the others and their results discarded.</p>
+ *
+ * <p>Like {@link HCCQRcodeReader}, this reader is thread-safe.</p>
+ *
+ * @author Francesco Benedetto
+ *
+ */
+public final class HCCQRcodeMultiReader extends HCCQRcodeReader {
+
+  private static final Result[] EMPTY_RESULT_ARRAY = new Result[0];
+
+  public HCCQRcodeMultiReader() {
+    this(null, null);
+  }
+
+  /**
+   * @param pool runs the sampling and decoding of the codes, or null to decode them in turn on
+   *  the calling thread
+   */
+  public HCCQRcodeMultiReader(ForkJoinPool pool) {
+    this(null, pool);
+  }
+
+  /**
+   * @param gridSampler sampler used by this reader, or null to use {@link MyGridSampler#getInstance()}.
+   *  It must be thread-safe if a pool is given or the reader is shared between threads
+   * @param pool runs the sampling and decoding of the codes, or null to decode them in turn on
+   *  the calling thread
+   */
+  public HCCQRcodeMultiReader(MyGridSampler gridSampler, ForkJoinPool pool) {
+    super(gridSampler, pool);
+  }
+
+  public Result[] decodeMultiple(MyBinaryBitmap image) throws NotFoundException {
+    return decodeMultiple(image, null);
+  }
+
+  /**
+   * Locates and decodes all the codes of an image.
+   *
+   * @return the decoded codes, best-fitting first
+   * @throws NotFoundException if no code could be decoded
+   */
+  public Result[] decodeMultiple(MyBinaryBitmap image, Map<DecodeHintType,?> hints)
+      throws NotFoundException {
+    MyMultiDetector detector = new MyMultiDetector(image.getBlackMatrix(), getGridSampler());
+    FinderPatternInfo[] candidates = detector.findCandidates(hints);
+
+    Result[] decoded;
+    if (getPool() == null || candidates.length == 1) {
+      decoded = decodeInTurn(detector, candidates, hints);
+    } else {
+      decoded = decodeInParallel(detector, candidates, hints);
+    }
+
+    List<Result> results = new ArrayList<>();
+    Map<FinderPattern,Boolean> used = new IdentityHashMap<>();
+    for (int i = 0; i < candidates.length; i++) {
+      if (decoded[i] != null && !sharesPattern(candidates[i], used)) {
+        markPatterns(candidates[i], used);
+        results.add(decoded[i]);
+      }
+    }
+    if (results.isEmpty()) {
+      throw NotFoundException.getNotFoundInstance();
+    }
+    return results.toArray(EMPTY_RESULT_ARRAY);
+  }
+
+  private Result[] decodeInTurn(MyMultiDetector detector,
+                                FinderPatternInfo[] candidates,
+                                Map<DecodeHintType,?> hints) {
+    Result[] decoded = new Result[candidates.length];
+    Map<FinderPattern,Boolean> used = new IdentityHashMap<>();
+    for (int i = 0; i < candidates.length; i++) {
+      if (sharesPattern(candidates[i], used)) {
+        continue;
+      }
+      decoded[i] = decodeCandidate(detector, candidates[i], hints);
+      if (decoded[i] != null) {
+        markPatterns(candidates[i], used);
+      }
+    }
+    return decoded;
+  }
+
+  private Result[] decodeInParallel(final MyMultiDetector detector,
+                                    FinderPatternInfo[] candidates,
+                                    final Map<DecodeHintType,?> hints) throws NotFoundException {
+    List<Callable<Result>> tasks = new ArrayList<>(candidates.length);
+    for (final FinderPatternInfo candidate : candidates) {
+      tasks.add(new Callable<Result>() {
+        @Override
+        public Result call() {
+          return decodeCandidate(detector, candidate, hints);
+        }
+      });
+    }
+    List<Future<Result>> futures = getPool().invokeAll(tasks);
+    Result[] decoded = new Result[candidates.length];
+    try {
+      for (int i = 0; i < decoded.length; i++) {
+        decoded[i] = futures.get(i).get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw NotFoundException.getNotFoundInstance();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw (Error) cause;
+    }
+    return decoded;
+  }
+
+  /**
+   * @return the decoded code, or null if the candidate does not outline one
+   */
+  private Result decodeCandidate(MyMultiDetector detector,
+                                 FinderPatternInfo candidate,
+                                 Map<DecodeHintType,?> hints) {
+    try {
+      MyDetectorResult detectorResult = detector.processFinderPatternInfo(candidate);
+      DecoderResult decoderResult =
+          getDecoder().decode(detectorResult.getBits(), detectorResult.getConfidence(), hints);
+      return createResult(decoderResult, detectorResult.getPoints());
+    } catch (ReaderException re) {
+      // ignore and continue
+      return null;
+    }
+  }
+
+  private static boolean sharesPattern(FinderPatternInfo candidate, Map<FinderPattern,Boolean> used) {
+    return used.containsKey(candidate.getBottomLeft())
+        || used.containsKey(candidate.getTopLeft())
+        || used.containsKey(candidate.getTopRight());
+  }
+
+  private static void markPatterns(FinderPatternInfo candidate, Map<FinderPattern,Boolean> used) {
+    used.put(candidate.getBottomLeft(), Boolean.TRUE);
+    used.put(candidate.getTopLeft(), Boolean.TRUE);
+    used.put(candidate.getTopRight(), Boolean.TRUE);
+  }
+
+}
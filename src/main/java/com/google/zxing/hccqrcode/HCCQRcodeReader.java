@@ -2,6 +2,7 @@ package main.java.com.google.zxing.hccqrcode;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 import main.java.com.google.zxing.BarcodeFormat;
 import main.java.com.google.zxing.MyBinaryBitmap;
@@ -17,19 +18,71 @@ import main.java.com.google.zxing.common.BitMatrix;
 import main.java.com.google.zxing.common.BitVectorMatrix;
 import main.java.com.google.zxing.common.DecoderResult;
 import main.java.com.google.zxing.common.MyDetectorResult;
+import main.java.com.google.zxing.common.MyGridSampler;
 import main.java.com.google.zxing.hccqrcode.decoder.Decoder;
 import main.java.com.google.zxing.qrcode.decoder.QRCodeDecoderMetaData;
 import main.java.com.google.zxing.qrcode.detector.MyDetector;
 
+/**
+ * <p>Locates and decodes an HCC QR Code in an image.</p>
+ *
+ * <p>This reader is thread-safe: a single instance can be shared by a pool of worker threads.
+ * Each thread keeps its own sampled grid, which is reused from one decode to the next, so
+ * decoding codes of the same version does not allocate it again.</p>
+ */
 public class HCCQRcodeReader implements MyReader {
 	
 	  private static final ResultPoint[] NO_POINTS = new ResultPoint[0];
 
 	  private final Decoder decoder = new Decoder();
+	  private final MyGridSampler gridSampler;
+	  private final ForkJoinPool pool;
+	  
+	  // Per-thread sampled grid, reused while the codes keep the same dimension
+	  private final ThreadLocal<BitVectorMatrix[]> scratchBits = new ThreadLocal<BitVectorMatrix[]>() {
+	    @Override
+	    protected BitVectorMatrix[] initialValue() {
+	      return new BitVectorMatrix[1];
+	    }
+	  };
+	  
+	  public HCCQRcodeReader() {
+	    this(null);
+	  }
+	  
+	  /**
+	   * @param gridSampler sampler used by this reader, or null to use {@link MyGridSampler#getInstance()}.
+	   *  It must be thread-safe if the reader is shared between threads
+	   */
+	  public HCCQRcodeReader(MyGridSampler gridSampler) {
+	    this(gridSampler, null);
+	  }
+
+	  /**
+	   * @param gridSampler sampler used by this reader, or null to use {@link MyGridSampler#getInstance()}.
+	   *  It must be thread-safe if the reader is shared between threads
+	   * @param pool if not null, the finder patterns of large images are searched in bands of rows
+	   *  on this pool
+	   */
+	  public HCCQRcodeReader(MyGridSampler gridSampler, ForkJoinPool pool) {
+	    this.gridSampler = gridSampler;
+	    this.pool = pool;
+	  }
 
 	  protected final Decoder getDecoder() {
 	    return decoder;
 	  }
+
+	  protected final MyGridSampler getGridSampler() {
+	    return gridSampler;
+	  }
+
+	  /**
+	   * @return the pool on which this reader runs, or null to use the calling thread
+	   */
+	  public final ForkJoinPool getPool() {
+	    return pool;
+	  }
 	  
 	  /**
 	   * Locates and decodes a QR code in an image.
@@ -50,18 +103,31 @@ public class HCCQRcodeReader implements MyReader {
 		//System.out.println("provaDecode");
 	    DecoderResult decoderResult;
 	    ResultPoint[] points;
+	    BitVectorMatrix[] scratch = scratchBits.get();
 	    if (hints != null && hints.containsKey(DecodeHintType.PURE_BARCODE)) {
-	      BitVectorMatrix bits = extractPureBits(image.getBlackMatrix());
+	      BitVectorMatrix bits = extractPureBits(image.getBlackMatrix(), scratch[0]);
+	      scratch[0] = bits;
 	      
 	      decoderResult = decoder.decode(bits, hints);
 	      points = NO_POINTS;
 	    } else {
-	      MyDetectorResult detectorResult = new MyDetector(image.getBlackMatrix()).detect(hints);
+	      MyDetectorResult detectorResult =
+	          new MyDetector(image.getBlackMatrix(), gridSampler, scratch[0], pool).detect(hints);
+	      scratch[0] = detectorResult.getBits();
 	      //System.out.println(image.getBlackMatrix().toString());
-	      decoderResult = decoder.decode(detectorResult.getBits(), hints);
+	      decoderResult = decoder.decode(detectorResult.getBits(), detectorResult.getConfidence(), hints);
 	      points = detectorResult.getPoints();
 	    }
 
+	    return createResult(decoderResult, points);
+	  }
+
+	  /**
+	   * Builds the result of a decoded code, with its metadata.
+	   *
+	   * @param points where the code was found. Swapped in place if the code was mirrored
+	   */
+	  static Result createResult(DecoderResult decoderResult, ResultPoint[] points) {
 	    // If the code was mirrored: swap the bottom-left and the top-right points.
 	    if (decoderResult.getOther() instanceof QRCodeDecoderMetaData) {
 	      ((QRCodeDecoderMetaData) decoderResult.getOther()).applyMirroredCorrection(points);
@@ -98,7 +164,8 @@ public class HCCQRcodeReader implements MyReader {
 	   *
 	   * @see com.google.zxing.datamatrix.DataMatrixReader#extractPureBits(BitMatrix)
 	   */
-	  private static BitVectorMatrix extractPureBits(BitVectorMatrix image) throws NotFoundException {
+	  private static BitVectorMatrix extractPureBits(BitVectorMatrix image, BitVectorMatrix reuse)
+	      throws NotFoundException {
 
 	    int[] leftTopBlack = image.getTopLeftOnBit();
 	    int[] rightBottomBlack = image.getBottomRightOnBit();
@@ -160,18 +227,17 @@ public class HCCQRcodeReader implements MyReader {
 	    }
 
 	    // Now just read off the bits
-	    BitVectorMatrix bits = new BitVectorMatrix(matrixWidth, matrixHeight);
+	    BitVectorMatrix bits;
+	    if (reuse != null && reuse.getWidth() == matrixWidth && reuse.getHeight() == matrixHeight) {
+	      bits = reuse;
+	      bits.clear();
+	    } else {
+	      bits = new BitVectorMatrix(matrixWidth, matrixHeight);
+	    }
 	    for (int y = 0; y < matrixHeight; y++) {
 	      int iOffset = top + (int) (y * moduleSize);
 	      for (int x = 0; x < matrixWidth; x++) {
-	        if (image.get(left + (int) (x * moduleSize), iOffset)[0] && image.get(left + (int) (x * moduleSize), iOffset)[1]) {
-	          bits.set(x, y, 0);
-	          bits.set(x, y, 1);
-	        }
-	        else if (image.get(left + (int) (x * moduleSize), iOffset)[0] && !image.get(left + (int) (x * moduleSize), iOffset)[1])
-	        	bits.set(x, y, 0);
-	        else  if (!image.get(left + (int) (x * moduleSize), iOffset)[0] && image.get(left + (int) (x * moduleSize), iOffset)[1])
-	        	bits.set(x, y, 1);
+	        bits.setColorIndex(x, y, image.getColorIndex(left + (int) (x * moduleSize), iOffset));
 	      }
 	    }
 	    return bits;
@@ -185,7 +251,7 @@ public class HCCQRcodeReader implements MyReader {
 		    boolean inBlack = true;
 		    int transitions = 0;
 		    while (x < width && y < height) {
-		      if (inBlack != image.get(x, y)[0]) {
+		      if (inBlack != image.getPlane0(x, y)) {
 		        if (++transitions == 5) {
 		          break;
 		        }
@@ -66,7 +66,7 @@ public class HCCQRcodeWriter implements MyWriter {
 
 	  // Note that the input matrix uses 0 == white, 1 == black, while the output matrix uses
 	  // 0 == black, 255 == white (i.e. an 8 bit greyscale bitmap).
-	  private static BitVectorMatrix renderResult(HCCQRcode code, int width, int height, int quietZone) {
+	  static BitVectorMatrix renderResult(HCCQRcode code, int width, int height, int quietZone) {
 	    ByteVectorMatrix input = code.getMatrix();
 	    if (input == null) {
 	      throw new IllegalStateException();
@@ -92,13 +92,13 @@ public class HCCQRcodeWriter implements MyWriter {
 	      // Write the contents of this row of the barcode
 	      for (int inputX = 0, outputX = leftPadding; inputX < inputWidth; inputX++, outputX += multiple) {
 	    	  
-	    	byte[] arr = input.get(inputX, inputY);
+	    	byte value = input.get(inputX, inputY);
 	    	
-	        if (arr[0] == 1) {
+	        if ((value & 1) != 0) {
 	        	output.setRegion(outputX, outputY, multiple, multiple, 0);
 	        }
 	        
-	        if (arr[1] == 1) {
+	        if ((value & 2) != 0) {
 	        	output.setRegion(outputX, outputY, multiple, multiple, 1);
 	        }
 	      }
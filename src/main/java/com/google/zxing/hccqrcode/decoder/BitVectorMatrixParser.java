@@ -2,10 +2,13 @@ package main.java.com.google.zxing.hccqrcode.decoder;
 
 import main.java.com.google.zxing.FormatException;
 import main.java.com.google.zxing.common.BitVectorMatrix;
+import main.java.com.google.zxing.common.MyGridSampler;
 
 public class BitVectorMatrixParser {
 	
 	  private final BitVectorMatrix bitVectorMatrix;
+	  private final byte[] confidence;
+	  private byte[] codewordConfidence;
 	  private Version parsedVersion;
 	  private FormatInformation parsedFormatInfo;
 	  private boolean mirror;
@@ -15,11 +18,25 @@ public class BitVectorMatrixParser {
 	   * @throws FormatException if dimension is not >= 21 and 1 mod 4
 	   */
 	  BitVectorMatrixParser(BitVectorMatrix bitVectorMatrix) throws FormatException {
+	    this(bitVectorMatrix, null);
+	  }
+
+	  /**
+	   * @param bitVectorMatrix {@link BitVectorMatrix} to parse
+	   * @param confidence how reliably each module was sampled, as rated by
+	   *  {@link MyGridSampler}, or null; it is mirrored along with the matrix
+	   * @throws FormatException if dimension is not >= 21 and 1 mod 4
+	   */
+	  BitVectorMatrixParser(BitVectorMatrix bitVectorMatrix, byte[] confidence) throws FormatException {
 	    int dimension = bitVectorMatrix.getHeight();
 	    if (dimension < 21 || (dimension & 0x03) != 1) {
 	      throw FormatException.getFormatInstance();
 	    }
+	    if (confidence != null && confidence.length < dimension * dimension) {
+	      throw new IllegalArgumentException("Confidence of " + confidence.length + " modules for dimension " + dimension);
+	    }
 	    this.bitVectorMatrix = bitVectorMatrix;
+	    this.confidence = confidence;
 	  }
 
 	  /**
@@ -119,7 +136,7 @@ public class BitVectorMatrixParser {
 	  }
 
 	  private int copyBit(int i, int j, int versionBits) {
-	    boolean bit = mirror ? bitVectorMatrix.get(j, i)[0] : bitVectorMatrix.get(i, j)[0];
+	    boolean bit = mirror ? bitVectorMatrix.getPlane0(j, i) : bitVectorMatrix.getPlane0(i, j);
 	    return bit ? (versionBits << 1) | 0x1 : versionBits << 1;
 	  }
 
@@ -128,6 +145,9 @@ public class BitVectorMatrixParser {
 	   * correct order in order to reconstruct the codewords bytes contained within the
 	   * QR Code.</p>
 	   *
+	   * <p>If the confidence of the modules is known, that of each codeword, the lowest of its
+	   * modules, is collected along the way, see {@link #getCodewordConfidence()}.</p>
+	   *
 	   * @return bytes encoded within the QR Code
 	   * @throws FormatException if the exact number of bytes expected is not read
 	   */
@@ -145,57 +165,39 @@ public class BitVectorMatrixParser {
 	    //System.out.println(bitVectorMatrix.toString());
 	    //System.out.println("dimension= "+dimension);
 
-	    BitVectorMatrix functionPattern = version.buildFunctionPattern();
-	    //System.out.println("dim FP="+functionPattern.getHeight());
-        
-	    boolean readingUp = true;
+	    // Data modules in reading order, skipping the function patterns
+	    int[] dataModules = FunctionPatternTemplate.forVersion(version).getDataModules();
+
 	    int totalCodewords = version.getTotalCodewords();
 	    byte[] result = new byte[totalCodewords];
+	    codewordConfidence = confidence == null ? null : new byte[totalCodewords];
 	    int resultOffset = 0;
 	    int currentByte = 0;
+	    int currentConfidence = MyGridSampler.MAX_CONFIDENCE;
 	    int bitsRead = 0;
-	    // Read columns in pairs, from right to left
-	    for (int j = dimension - 1; j > 0; j -= 2) {
-	      if (j == 6) {
-	        // Skip whole column with vertical alignment pattern;
-	        // saves time and makes the other code proceed more cleanly
-	        j--;
+	    for (int index : dataModules) {
+	      int i = index / dimension;
+	      // Read two bits: plane 0 is the most significant one
+	      int color = bitVectorMatrix.getColorIndex(index - i * dimension, i);
+	      currentByte = (currentByte << 2) | ((color & 1) << 1) | (color >> 1);
+	      if (confidence != null) {
+	        currentConfidence = Math.min(currentConfidence, confidence[index] & 0xFF);
 	      }
-	      // Read alternatingly from bottom to top then top to bottom
-	      for (int count = 0; count < dimension; count++) {
-	        int i = readingUp ? dimension - 1 - count : count;
-	        for (int col = 0; col < 2; col++) {
-	          // Ignore bits covered by the function pattern
-	          if (!functionPattern.get(j - col, i)[0] && !functionPattern.get(j - col, i)[1]) {
-	            // Read two bits
-	        	bitsRead = bitsRead + 2;
-	        	boolean temp1 = bitVectorMatrix.get(j - col, i)[0];
-	            boolean temp2 = bitVectorMatrix.get(j - col, i)[1];
-	            
-	            currentByte <<= 1;
-	            if (temp1) {
-	              currentByte |= 1;
-	            }
-	            
-	            currentByte <<= 1;
-	            if (temp2) {
-	            	currentByte |= 1;
-	            }
-	            
-	            //System.out.println("("+temp1+","+temp2+")"+"; position: ("+(j-col)+","+i+")");
-	            // If we've made a whole byte, save it off
-	            if (bitsRead == 8 && resultOffset < totalCodewords) {
-	              result[resultOffset++] = (byte) currentByte;  
-	              //System.out.println("currentByte="+currentByte+"; resultOffset="+resultOffset);
-	              bitsRead = 0;
-	              currentByte = 0;
-	            }
-	          }
-	          /*else
-	        	  System.out.println("function pattern bits, position: "+(j-col)+","+i);*/
+	      bitsRead = bitsRead + 2;
+	      // If we've made a whole byte, save it off
+	      if (bitsRead == 8) {
+	        if (codewordConfidence != null) {
+	          codewordConfidence[resultOffset] = (byte) currentConfidence;
+	          currentConfidence = MyGridSampler.MAX_CONFIDENCE;
 	        }
+	        result[resultOffset++] = (byte) currentByte;
+	        if (resultOffset == totalCodewords) {
+	          // The remaining modules are remainder bits
+	          break;
+	        }
+	        bitsRead = 0;
+	        currentByte = 0;
 	      }
-	      readingUp ^= true; // readingUp = !readingUp; // switch directions
 	    }
 	    if (resultOffset != version.getTotalCodewords()) {
 	    	System.out.println("resultOffset: "+resultOffset+"; totalCodeWords: "+version.getTotalCodewords());
@@ -205,6 +207,14 @@ public class BitVectorMatrixParser {
 	    return result;
 	  }
 
+	  /**
+	   * @return the confidence of each codeword returned by the last {@link #readCodewords()}, in
+	   *  the same order, or null if the confidence of the modules is not known
+	   */
+	  byte[] getCodewordConfidence() {
+	    return codewordConfidence;
+	  }
+
 	  /**
 	   * Revert the mask removal done while reading the code words. The bit matrix should revert to its original state.
 	   */
@@ -235,9 +245,21 @@ public class BitVectorMatrixParser {
 	  void mirror() {
 	    for (int x = 0; x < bitVectorMatrix.getWidth(); x++) {
 	      for (int y = x + 1; y < bitVectorMatrix.getHeight(); y++) {
-	        if (bitVectorMatrix.get(x, y) != bitVectorMatrix.get(y, x)) {
-	          bitVectorMatrix.flip(y, x);
-	          bitVectorMatrix.flip(x, y);          
+	        // Swap the two modules by flipping whichever planes differ
+	        int diff = bitVectorMatrix.getColorIndex(x, y) ^ bitVectorMatrix.getColorIndex(y, x);
+	        if ((diff & 1) != 0) {
+	          bitVectorMatrix.flip(y, x, 0);
+	          bitVectorMatrix.flip(x, y, 0);
+	        }
+	        if ((diff & 2) != 0) {
+	          bitVectorMatrix.flip(y, x, 1);
+	          bitVectorMatrix.flip(x, y, 1);
+	        }
+	        if (confidence != null) {
+	          int dimension = bitVectorMatrix.getHeight();
+	          byte swap = confidence[y * dimension + x];
+	          confidence[y * dimension + x] = confidence[x * dimension + y];
+	          confidence[x * dimension + y] = swap;
 	        }
 	      }
 	    }
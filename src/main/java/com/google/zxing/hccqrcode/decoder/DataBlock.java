@@ -27,11 +27,13 @@ public final class DataBlock {
 
   private final int numDataCodewords;
   private final byte[] codewords;
+  private final byte[] confidence;
 
-  private DataBlock(int numDataCodewords, byte[] codewords) {
+  private DataBlock(int numDataCodewords, byte[] codewords, byte[] confidence) {
     this.numDataCodewords = numDataCodewords;
     //System.out.println("newDataBlock-dim="+numDataCodewords);
     this.codewords = codewords;
+    this.confidence = confidence;
   }
 
   /**
@@ -48,6 +50,19 @@ public final class DataBlock {
   static DataBlock[] getDataBlocks(byte[] rawCodewords,
                                    Version version,
                                    ErrorCorrectionLevel ecLevel) {
+    return getDataBlocks(rawCodewords, null, version, ecLevel);
+  }
+
+  /**
+   * <p>Like {@link #getDataBlocks(byte[], Version, ErrorCorrectionLevel)}, also separating the
+   * confidence of the codewords, which follows them into their blocks.</p>
+   *
+   * @param rawConfidence confidence of each of rawCodewords, or null
+   */
+  static DataBlock[] getDataBlocks(byte[] rawCodewords,
+                                   byte[] rawConfidence,
+                                   Version version,
+                                   ErrorCorrectionLevel ecLevel) {
 
     if (rawCodewords.length != version.getTotalCodewords()) {
       System.out.println("rawCodewords-length="+rawCodewords.length+"; totalCodewords="+version.getTotalCodewords());
@@ -77,7 +92,8 @@ public final class DataBlock {
       for (int i = 0; i < ecBlock.getCount(); i++) {
         int numDataCodewords = ecBlock.getDataCodewords();
         int numBlockCodewords = ecBlocks.getECCodewordsPerBlock() + numDataCodewords;
-        result[numResultBlocks++] = new DataBlock(numDataCodewords, new byte[numBlockCodewords]);
+        result[numResultBlocks++] = new DataBlock(numDataCodewords, new byte[numBlockCodewords],
+            rawConfidence == null ? null : new byte[numBlockCodewords]);
         //System.out.println("block dimension = "+numBlockCodewords);
       }
     }
@@ -101,7 +117,7 @@ public final class DataBlock {
     int rawCodewordsOffset = 0;
     for (int i = 0; i < shorterBlocksNumDataCodewords; i++) {
       for (int j = 0; j < numResultBlocks; j++) {
-        result[j].codewords[i] = rawCodewords[rawCodewordsOffset++];
+        result[j].copy(i, rawCodewords, rawConfidence, rawCodewordsOffset++);
         //System.out.println("DataBlockArray-element ("+j+","+i+") = "+result[j].codewords[i]);
       }
     }
@@ -109,7 +125,7 @@ public final class DataBlock {
     //System.out.println("numResultBlocks"+numResultBlocks);
     // Fill out the last data block in the longer ones
     for (int j = longerBlocksStartAt; j < numResultBlocks; j++) {
-      result[j].codewords[shorterBlocksNumDataCodewords] = rawCodewords[rawCodewordsOffset++];
+      result[j].copy(shorterBlocksNumDataCodewords, rawCodewords, rawConfidence, rawCodewordsOffset++);
       //System.out.println("DataBlockArray-elementLastBlock ("+j+","+shorterBlocksNumDataCodewords+") = "+result[j].codewords[shorterBlocksNumDataCodewords]);
     }
     // Now add in error correction blocks
@@ -117,7 +133,7 @@ public final class DataBlock {
     for (int i = shorterBlocksNumDataCodewords; i < max; i++) {
       for (int j = 0; j < numResultBlocks; j++) {
         int iOffset = j < longerBlocksStartAt ? i : i + 1;
-        result[j].codewords[iOffset] = rawCodewords[rawCodewordsOffset++];
+        result[j].copy(iOffset, rawCodewords, rawConfidence, rawCodewordsOffset++);
         //System.out.println("DataBlockArray-errorElement ("+j+","+iOffset+") = "+result[j].codewords[iOffset]);
         
       }
@@ -125,6 +141,13 @@ public final class DataBlock {
     return result;
   }
 
+  private void copy(int index, byte[] rawCodewords, byte[] rawConfidence, int rawIndex) {
+    codewords[index] = rawCodewords[rawIndex];
+    if (confidence != null) {
+      confidence[index] = rawConfidence[rawIndex];
+    }
+  }
+
   int getNumDataCodewords() {
     return numDataCodewords;
   }
@@ -133,4 +156,11 @@ public final class DataBlock {
     return codewords;
   }
 
+  /**
+   * @return confidence of each of the codewords, or null if not known
+   */
+  byte[] getConfidence() {
+    return confidence;
+  }
+
 }
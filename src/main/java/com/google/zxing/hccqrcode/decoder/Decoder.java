@@ -7,18 +7,35 @@ import main.java.com.google.zxing.DecodeHintType;
 import main.java.com.google.zxing.FormatException;
 import main.java.com.google.zxing.common.BitVectorMatrix;
 import main.java.com.google.zxing.common.DecoderResult;
-import main.java.com.google.zxing.common.reedsolomon.GenericGF;
-import main.java.com.google.zxing.common.reedsolomon.ReedSolomonDecoder;
+import main.java.com.google.zxing.common.MyGridSampler;
+import main.java.com.google.zxing.common.reedsolomon.GF256ReedSolomonDecoder;
 import main.java.com.google.zxing.common.reedsolomon.ReedSolomonException;
 import main.java.com.google.zxing.qrcode.decoder.QRCodeDecoderMetaData;
 
 
+/**
+ * <p>The main class which implements HCC QR Code decoding -- as opposed to locating and extracting
+ * the HCC QR Code from an image.</p>
+ *
+ * <p>When the sampler has rated how reliably each module was read, the codewords read with little
+ * confidence are handed to Reed-Solomon as erasures, which cost half as much error correction as
+ * errors. If a block cannot be corrected that way, some of the erased codewords were right and
+ * others were wrong: it is corrected again with the two most confident erasures taken back, which
+ * leaves room for one more error, and so on down to none, when all codewords are equally
+ * reliable. This is Forney's generalized minimum distance decoding.</p>
+ *
+ * <p>Instances are thread-safe: the Reed-Solomon decoder keeps its scratch arrays per thread.</p>
+ */
 public final class Decoder {
+
+	// Codewords read with less confidence than this may be taken for erasures: any doubt will do,
+	// as the least confident ones are taken first
+	private static final int ERASURE_CONFIDENCE = MyGridSampler.MAX_CONFIDENCE;
 	
-	private final ReedSolomonDecoder rsDecoder;
+	private final GF256ReedSolomonDecoder rsDecoder;
 
 	public Decoder() {
-	    rsDecoder = new ReedSolomonDecoder(GenericGF.QR_CODE_FIELD_256);
+	    rsDecoder = GF256ReedSolomonDecoder.QR_CODE;
 	}
 
 	public DecoderResult decode(boolean[][][] image) throws ChecksumException, FormatException {
@@ -67,9 +84,26 @@ public final class Decoder {
 	*/
     public DecoderResult decode(BitVectorMatrix bits, Map<DecodeHintType,?> hints)
 	      throws FormatException, ChecksumException {
+	    return decode(bits, null, hints);
+    }
+
+	/**
+	* <p>Decodes a QR Code represented as a {@link BitVectorMatrix}, knowing how reliably each of its
+	* modules was sampled.</p>
+	*
+	* @param bits booleans representing white/black QR Code modules
+	* @param confidence rating of each module by the {@link MyGridSampler} which sampled bits, or
+	*  null. Like bits, it is modified if the code turns out to be mirrored
+	* @param hints decoding hints that should be used to influence decoding
+	* @return text and bytes encoded within the QR Code
+	* @throws FormatException if the QR Code cannot be decoded
+	* @throws ChecksumException if error correction fails
+	*/
+    public DecoderResult decode(BitVectorMatrix bits, byte[] confidence, Map<DecodeHintType,?> hints)
+	      throws FormatException, ChecksumException {
 
 	    // Construct a parser and read version, error-correction level
-	    BitVectorMatrixParser parser = new BitVectorMatrixParser(bits);
+	    BitVectorMatrixParser parser = new BitVectorMatrixParser(bits, confidence);
 	    FormatException fe = null;
 	    ChecksumException ce = null;
 	    try {
@@ -126,17 +160,16 @@ public final class Decoder {
     private DecoderResult decode(BitVectorMatrixParser parser, Map<DecodeHintType,?> hints)
     	      throws FormatException, ChecksumException {
     	    Version version = parser.readVersion();
-    	    int versione = version.getVersionNumber();
-    	    System.out.println("Versione="+versione);
+    	    //System.out.println("Versione="+version.getVersionNumber());
     	    ErrorCorrectionLevel ecLevel = parser.readFormatInformation().getErrorCorrectionLevel();
-    	    int level = ecLevel.getBits();
-    	    System.out.println("ECLevel="+level);
+    	    //System.out.println("ECLevel="+ecLevel.getBits());
     	    
 
     	    // Read codewords
     	    byte[] codewords = parser.readCodewords();
     	    // Separate into data blocks
-    	    DataBlock[] dataBlocks = DataBlock.getDataBlocks(codewords, version, ecLevel);
+    	    DataBlock[] dataBlocks =
+    	        DataBlock.getDataBlocks(codewords, parser.getCodewordConfidence(), version, ecLevel);
     	    
     	    //System.out.println("DataBlockLength="+dataBlocks.length);
     	    //System.out.println("CodeWordsLength="+codewords.length);
@@ -162,7 +195,7 @@ public final class Decoder {
     	      
     	      //System.out.println("numDataCodewords="+numDataCodewords+"; numCodewordBytes="+codewordBytes.length);
     	      //System.out.println("beforeCorrectError in Decoder-decode");
-    	      correctErrors(codewordBytes, numDataCodewords);
+    	      correctErrors(codewordBytes, dataBlock.getConfidence(), numDataCodewords);
     	      for (int i = 0; i < numDataCodewords; i++) {
     	        resultBytes[resultOffset++] = codewordBytes[i];
     	      }
@@ -177,31 +210,58 @@ public final class Decoder {
      * correct the errors in-place using Reed-Solomon error correction.</p>
      *
      * @param codewordBytes data and error correction codewords
+     * @param confidence confidence of each codeword, or null
      * @param numDataCodewords number of codewords that are data bytes
      * @throws ChecksumException if error correction fails
      */
-    private void correctErrors(byte[] codewordBytes, int numDataCodewords) throws ChecksumException {
-      int numCodewords = codewordBytes.length;
-      // First read into an array of ints
-      int[] codewordsInts = new int[numCodewords];
-      for (int i = 0; i < numCodewords; i++) {
-        codewordsInts[i] = codewordBytes[i] & 0xFF;
-        //System.out.println("codewordsByte (correct error) = "+codewordBytes[i]+"; converted = "+codewordsInts[i]);
-      }
+    private void correctErrors(byte[] codewordBytes, byte[] confidence, int numDataCodewords)
+        throws ChecksumException {
       int numECCodewords = codewordBytes.length - numDataCodewords;
-      //System.out.println(numECCodewords+"; "+codewordBytes.length+"; "+numDataCodewords);
+      if (confidence != null) {
+        // Reed-Solomon keeps two error-correction codewords to check the corrections
+        int[] erasures = new int[numECCodewords];
+        int numErasures = findErasures(confidence, numECCodewords - 2, erasures);
+        for (; numErasures > 0; numErasures -= 2) {
+          try {
+            rsDecoder.decode(codewordBytes, 0, codewordBytes.length, numECCodewords, erasures, numErasures);
+            return;
+          } catch (ReedSolomonException ignored) {
+            // The block is left as it was: try again with fewer erasures
+          }
+        }
+      }
       try {
-    	//System.out.println("codewordsInts="+codewordsInts.length+", numECCCodewords="+numECCodewords);
-        rsDecoder.decode(codewordsInts, numECCodewords);
+        // Corrects the block in place, without copying it into an array of ints
+        rsDecoder.decode(codewordBytes, numECCodewords);
       } catch (ReedSolomonException ignored) {
-    	System.out.println("correctErrors-??");
         throw ChecksumException.getChecksumInstance();
       }
-      // Copy back into array of bytes -- only need to worry about the bytes that were data
-      // We don't care about errors in the error-correction codewords
-      for (int i = 0; i < numDataCodewords; i++) {
-        codewordBytes[i] = (byte) codewordsInts[i];
+    }
+
+    /**
+     * Puts in erasures the indices of the codewords whose confidence is below
+     * {@link #ERASURE_CONFIDENCE}, the least confident first.
+     *
+     * @param max how many erasures may be taken at most: the least confident ones are kept
+     * @return number of erasures
+     */
+    private static int findErasures(byte[] confidence, int max, int[] erasures) {
+      int numErasures = 0;
+      for (int i = 0; i < confidence.length && max > 0; i++) {
+        int value = confidence[i] & 0xFF;
+        if (value >= ERASURE_CONFIDENCE ||
+            (numErasures == max && value >= (confidence[erasures[max - 1]] & 0xFF))) {
+          continue;
+        }
+        // Insert, dropping the most confident one when full
+        int j = numErasures < max ? numErasures++ : max - 1;
+        while (j > 0 && (confidence[erasures[j - 1]] & 0xFF) > value) {
+          erasures[j] = erasures[j - 1];
+          j--;
+        }
+        erasures[j] = i;
       }
+      return numErasures;
     }
 
 
@@ -0,0 +1,101 @@
+package main.java.com.google.zxing.hccqrcode.decoder;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import main.java.com.google.zxing.common.BitVectorMatrix;
+
+/**
+ * <p>Immutable layout of the function patterns of a {@link Version}: finder patterns, separators,
+ * format and version information, timing and alignment patterns. Besides that, it holds the
+ * position of every data module in the order they are written by the encoder and read by the
+ * decoder: columns in pairs from right to left, going alternatively up and down, skipping the
+ * vertical timing pattern and every function module.</p>
+ *
+ * <p>Templates are built the first time a version is asked for and then shared by all the
+ * threads, so neither the encoder nor the decoder has to walk the function patterns again.</p>
+ *
+ * @author Francesco Benedetto
+ *
+ */
+public final class FunctionPatternTemplate {
+
+  private static final AtomicReferenceArray<FunctionPatternTemplate> TEMPLATES =
+      new AtomicReferenceArray<>(40);
+
+  private final int dimension;
+  private final BitVectorMatrix functionPattern;
+  private final int[] dataModules;
+
+  private FunctionPatternTemplate(Version version) {
+    this.dimension = version.getDimensionForVersion();
+    this.functionPattern = version.buildFunctionPattern();
+    this.dataModules = buildDataModules(functionPattern, dimension);
+  }
+
+  /**
+   * @param version version of the symbol
+   * @return the (shared) template of that version
+   */
+  public static FunctionPatternTemplate forVersion(Version version) {
+    int index = version.getVersionNumber() - 1;
+    FunctionPatternTemplate template = TEMPLATES.get(index);
+    if (template == null) {
+      // Two threads may both build it: they build the same thing, and only one is kept
+      TEMPLATES.compareAndSet(index, null, new FunctionPatternTemplate(version));
+      template = TEMPLATES.get(index);
+    }
+    return template;
+  }
+
+  public int getDimension() {
+    return dimension;
+  }
+
+  /**
+   * @return true if module (x, y) belongs to a function pattern, and so does not hold data
+   */
+  public boolean isFunctionModule(int x, int y) {
+    return !functionPattern.isWhite(x, y);
+  }
+
+  /**
+   * @return positions (y * dimension + x) of the data modules, in placement order. The array is
+   * shared and must not be modified
+   */
+  public int[] getDataModules() {
+    return dataModules;
+  }
+
+  private static int[] buildDataModules(BitVectorMatrix functionPattern, int dimension) {
+    int count = 0;
+    for (int y = 0; y < dimension; y++) {
+      for (int x = 0; x < dimension; x++) {
+        if (functionPattern.isWhite(x, y)) {
+          count++;
+        }
+      }
+    }
+    int[] result = new int[count];
+    int offset = 0;
+    boolean readingUp = true;
+    // Columns in pairs, from right to left
+    for (int j = dimension - 1; j > 0; j -= 2) {
+      if (j == 6) {
+        // Skip whole column with vertical timing pattern
+        j--;
+      }
+      // Alternatingly from bottom to top then top to bottom
+      for (int step = 0; step < dimension; step++) {
+        int i = readingUp ? dimension - 1 - step : step;
+        for (int col = 0; col < 2; col++) {
+          if (functionPattern.isWhite(j - col, i)) {
+            result[offset++] = i * dimension + j - col;
+          }
+        }
+      }
+      readingUp ^= true; // switch directions
+    }
+    return result;
+  }
+
+}
@@ -1,116 +1,93 @@
 package main.java.com.google.zxing.hccqrcode.encoder;
 
+import java.util.Arrays;
+
 /**
  * The original code was a matrix of ints[], but since it only ever gets assigned
  * (-1,-1), (0,0), (1,0), (0,1) and (1,1), I'm going to use less memory and go with bytes[].
- * 
+ *
+ * Each module is packed in a single byte of a flat row-major array: bit 0 holds the first value
+ * of the couple and bit 1 the second one, the same layout as BitVectorMatrix.getColorIndex().
+ * A module which has not been set yet holds {@link #EMPTY}. One byte per module (rather than
+ * four modules per byte) keeps random access and the mask penalty scans free of shifts.
+ *
  * @author Francesco Benedetto
  *
  */
 
 public final class ByteVectorMatrix {
-	
+
+	//value of a module which has not been set yet
+	public static final byte EMPTY = -1;
+
 	//instance and static fields
-	private final byte[][][] bytes; //3D array of bytes
+	private final byte[] bytes; //row-major array of packed modules
 	private final int width;
 	private final int height;
-	
-	
+
+
 	public ByteVectorMatrix (int width, int height) {
-		bytes = new byte[height][width][2];
+		bytes = new byte[width * height];
 		this.width = width;
 		this.height = height;
 	}
-	
+
 	public int getWidth () {
 		return this.width;
 	}
-	
+
 	public int getHeight () {
 		return this.height;
 	}
-	
-	public byte[] get (int x, int y) {
-		return bytes[y][x];
+
+	//return the packed module: 0..3, or EMPTY
+	public byte get (int x, int y) {
+		return bytes[y * width + x];
+	}
+
+	public boolean isEmpty (int x, int y) {
+		return bytes[y * width + x] == EMPTY;
 	}
-	
-	//return a 3D array of bytes rappresenting the HCCQRCode
-	public byte[][][] getArray () {
+
+	//return the row-major array of packed modules rappresenting the HCCQRCode: module (x,y) is at y * width + x
+	public byte[] getArray () {
 		return this.bytes;
 	}
-	
+
 	//set a couple of booleans in a matrix cell: true means 1 and false means 0
 	public void set (int x, int y, boolean value1, boolean value2) {
-		byte[] bits = new byte[2];
-		bits[0]=0;
-		bits[1]=0;
-		bytes[y][x] = bits;
-		if (value1 && value2) {
-			bits[0]=1;
-			bits[1]=1;
-			bytes[y][x] = bits;
-		}
-		else if (value1 && !value2) {
-			bits[0] = 1;
-			bits[1] = 0;
-			bytes[y][x] = bits;
-		}
-		else if (!value1 && value2) {
-			bits[0] = 0;
-			bits[1] = 1;
-			bytes[y][x] = bits;
-		}
+		bytes[y * width + x] = (byte) ((value1 ? 1 : 0) | (value2 ? 2 : 0));
 	}
-	
-	//set a couple of ints in a matrix cell: before to do it, they have to be converted in bytes
+
+	//set a couple of ints in a matrix cell: each of them has to be 0 or 1
 	public void set (int x, int y, int bit1, int bit2) {
-		byte[] bits = new byte[2];
-		bits[0] = (byte)bit1;
-		bits[1] = (byte)bit2;
-		bytes[y][x] = bits;
+		bytes[y * width + x] = (byte) (bit1 | (bit2 << 1));
 	}
-	
-	/*public void set (int x, int y, byte bit1, byte bit2) {
-		byte[] bits = new byte[2];
-		bits[0] = bit1;
-		bits[1] = bit2;
-		bytes[y][x] = bits;
-	}*/
-	
+
 	public void set (int x, int y, int[] bits) {
-		byte[] convert = new byte[2];
-		convert[0] = (byte)bits[0];
-		convert[1] = (byte)bits[1];
-		bytes[y][x] = convert;
+		set(x, y, bits[0], bits[1]);
+	}
+
+	//set an already packed module (0..3, or EMPTY)
+	public void set (int x, int y, byte value) {
+		bytes[y * width + x] = value;
 	}
-	
+
 	public void clear (byte value) {
-		byte[] reset = new byte[2];
-		reset[0] = value;
-		reset[1] = value;
-		
-		for (int i = 0; i < this.height; i++) {
-			for (int j = 0; j < this.width; j++) {
-				bytes[i][j] = reset;
-			}
-		}
+		Arrays.fill(bytes, value);
 	}
-	
+
 	public String toString() {
-	    StringBuilder result = new StringBuilder(2 * width * height + 2);
+	    StringBuilder result = new StringBuilder(7 * width * height + height);
 	    for (int y = 0; y < height; ++y) {
 	      for (int x = 0; x < width; ++x) {
-	    	  byte[] res = bytes[y][x];
-	    			  if( (int)res[0] == 0 && (int)res[1] == 0)
-	    				  result.append(" (0,0) ");
-	    			  else if ((int)res[0] == 0 && (int)res[1] == 1)
-	    				  result.append(" (0,1) ");
-	    			  else if ((int)res[0] == 1 && (int)res[1] == 0)
-	    				  result.append(" (1,0) ");
-	    		      else if ((int)res[0] == 1 && (int)res[1] == 1)
-	    		    	  result.append(" (1,1) ");
-	    		      else
-	    		    	  result.append("    ");
+	    	  byte res = bytes[y * width + x];
+	    	  if (res == EMPTY) {
+	    		  result.append("    ");
+	    	  }
+	    	  else {
+	    		  result.append(" (").append(res & 1).append(',').append((res >> 1) & 1).append(") ");
+	    	  }
 	      }
 	      result.append("\n");
 	    }
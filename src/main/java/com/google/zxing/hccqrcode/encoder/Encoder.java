@@ -3,7 +3,6 @@ import main.java.com.google.zxing.EncodeHintType;
 import main.java.com.google.zxing.WriterException;
 import main.java.com.google.zxing.common.BitArray;
 import main.java.com.google.zxing.common.CharacterSetECI;
-import main.java.com.google.zxing.common.reedsolomon.GenericGF;
 import main.java.com.google.zxing.common.reedsolomon.ReedSolomonEncoder;
 import main.java.com.google.zxing.hccqrcode.decoder.ErrorCorrectionLevel;
 import main.java.com.google.zxing.hccqrcode.decoder.Mode;
@@ -13,6 +12,10 @@ import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 
 public final class Encoder {
@@ -45,6 +48,25 @@ public final class Encoder {
 	        + MaskUtil.applyMaskPenaltyRule4(matrix);
 	  }
 
+	  // Same as above, but gives up as soon as the partial penalty reaches "bound": every rule adds a
+	  // non-negative amount, so such a mask can no longer beat the one that set the bound. The most
+	  // expensive rule is left for last.
+	  private static int calculateMaskPenalty(ByteVectorMatrix matrix, int bound) {
+	    int penalty = MaskUtil.applyMaskPenaltyRule1(matrix);
+	    if (penalty >= bound) {
+	      return penalty;
+	    }
+	    penalty += MaskUtil.applyMaskPenaltyRule2(matrix);
+	    if (penalty >= bound) {
+	      return penalty;
+	    }
+	    penalty += MaskUtil.applyMaskPenaltyRule4(matrix);
+	    if (penalty >= bound) {
+	      return penalty;
+	    }
+	    return penalty + MaskUtil.applyMaskPenaltyRule3(matrix);
+	  }
+
 	  /**
 	   * @param content text to encode
 	   * @param ecLevel error correction level to use
@@ -132,14 +154,21 @@ public final class Encoder {
 	    qrCode.setMode(mode);
 	    qrCode.setVersion(version);
 
-	    //  Choose the mask pattern and set to "qrCode".
+	    // Lay out the function patterns and the data once; the masks only differ on data modules.
 	    int dimension = version.getDimensionForVersion();
-	    ByteVectorMatrix matrix = new ByteVectorMatrix(dimension, dimension);
-	    int maskPattern = chooseMaskPattern(finalBits, ecLevel, version, matrix);
+	    ByteVectorMatrix unmasked = new ByteVectorMatrix(dimension, dimension);
+	    int[] dataModules = MatrixUtil.buildUnmaskedMatrix(finalBits, ecLevel, version, unmasked);
+
+	    //  Choose the mask pattern and set to "qrCode".
+	    Executor executor = hints == null ? null : (Executor) hints.get(EncodeHintType.MASK_SELECTION_EXECUTOR);
+	    int maskPattern = executor == null ?
+	        chooseMaskPattern(unmasked, dataModules, ecLevel) :
+	        chooseMaskPattern(unmasked, dataModules, ecLevel, executor);
 	    qrCode.setMaskPattern(maskPattern);
 
 	    // Build the matrix and set it to "qrCode".
-	    MatrixUtil.buildMatrix(finalBits, ecLevel, version, maskPattern, matrix);
+	    ByteVectorMatrix matrix = new ByteVectorMatrix(dimension, dimension);
+	    MatrixUtil.applyMaskPattern(unmasked, dataModules, ecLevel, maskPattern, matrix);
 	    qrCode.setMatrix(matrix);
 
 	    return qrCode;
@@ -210,17 +239,17 @@ public final class Encoder {
 	    return true;
 	  }
 
-	  private static int chooseMaskPattern(BitArray bits,
-	                                       ErrorCorrectionLevel ecLevel,
-	                                       Version version,
-	                                       ByteVectorMatrix matrix) throws WriterException {
+	  private static int chooseMaskPattern(ByteVectorMatrix unmasked,
+	                                       int[] dataModules,
+	                                       ErrorCorrectionLevel ecLevel) throws WriterException {
 
+	    ByteVectorMatrix matrix = new ByteVectorMatrix(unmasked.getWidth(), unmasked.getHeight());
 	    int minPenalty = Integer.MAX_VALUE;  // Lower penalty is better.
 	    int bestMaskPattern = -1;
 	    // We try all mask patterns to choose the best one.
 	    for (int maskPattern = 0; maskPattern < HCCQRcode.NUM_MASK_PATTERNS; maskPattern++) {
-	      MatrixUtil.buildMatrix(bits, ecLevel, version, maskPattern, matrix);
-	      int penalty = calculateMaskPenalty(matrix);
+	      MatrixUtil.applyMaskPattern(unmasked, dataModules, ecLevel, maskPattern, matrix);
+	      int penalty = calculateMaskPenalty(matrix, minPenalty);
 	      if (penalty < minPenalty) {
 	        minPenalty = penalty;
 	        bestMaskPattern = maskPattern;
@@ -229,6 +258,51 @@ public final class Encoder {
 	    return bestMaskPattern;
 	  }
 
+	  // Scores every mask pattern as a separate task on "executor" and waits for all of them. Ties go
+	  // to the lowest mask pattern, as in the sequential version.
+	  private static int chooseMaskPattern(final ByteVectorMatrix unmasked,
+	                                       final int[] dataModules,
+	                                       final ErrorCorrectionLevel ecLevel,
+	                                       Executor executor) throws WriterException {
+
+	    FutureTask<Integer>[] penalties = newPenaltyTasks(HCCQRcode.NUM_MASK_PATTERNS);
+	    for (int maskPattern = 0; maskPattern < penalties.length; maskPattern++) {
+	      final int pattern = maskPattern;
+	      penalties[maskPattern] = new FutureTask<>(new Callable<Integer>() {
+	        @Override
+	        public Integer call() throws WriterException {
+	          ByteVectorMatrix matrix = new ByteVectorMatrix(unmasked.getWidth(), unmasked.getHeight());
+	          MatrixUtil.applyMaskPattern(unmasked, dataModules, ecLevel, pattern, matrix);
+	          return calculateMaskPenalty(matrix);
+	        }
+	      });
+	      executor.execute(penalties[maskPattern]);
+	    }
+
+	    int minPenalty = Integer.MAX_VALUE;  // Lower penalty is better.
+	    int bestMaskPattern = -1;
+	    try {
+	      for (int maskPattern = 0; maskPattern < penalties.length; maskPattern++) {
+	        int penalty = penalties[maskPattern].get();
+	        if (penalty < minPenalty) {
+	          minPenalty = penalty;
+	          bestMaskPattern = maskPattern;
+	        }
+	      }
+	    } catch (InterruptedException ie) {
+	      Thread.currentThread().interrupt();
+	      throw new WriterException(ie);
+	    } catch (ExecutionException ee) {
+	      throw new WriterException(ee.getCause());
+	    }
+	    return bestMaskPattern;
+	  }
+
+	  @SuppressWarnings("unchecked")
+	  private static FutureTask<Integer>[] newPenaltyTasks(int length) {
+	    return (FutureTask<Integer>[]) new FutureTask<?>[length];
+	  }
+
 	  private static Version chooseVersion(int numInputBits, ErrorCorrectionLevel ecLevel) throws WriterException {
 	    // In the following comments, we use numbers of Version 7-H.
 	    for (int versionNum = 1; versionNum <= 40; versionNum++) {
@@ -419,17 +493,8 @@ public final class Encoder {
 	  }
 
 	  static byte[] generateECBytes(byte[] dataBytes, int numEcBytesInBlock) {
-	    int numDataBytes = dataBytes.length;
-	    int[] toEncode = new int[numDataBytes + numEcBytesInBlock];
-	    for (int i = 0; i < numDataBytes; i++) {
-	      toEncode[i] = dataBytes[i] & 0xFF;
-	    }
-	    new ReedSolomonEncoder(GenericGF.QR_CODE_FIELD_256).encode(toEncode, numEcBytesInBlock);
-
 	    byte[] ecBytes = new byte[numEcBytesInBlock];
-	    for (int i = 0; i < numEcBytesInBlock; i++) {
-	      ecBytes[i] = (byte) toEncode[numDataBytes + i];
-	    }
+	    ReedSolomonEncoder.QR_CODE.encode(dataBytes, 0, dataBytes.length, ecBytes, 0, numEcBytesInBlock);
 	    return ecBytes;
 	  }
 
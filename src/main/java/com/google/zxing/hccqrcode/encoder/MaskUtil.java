@@ -51,16 +51,18 @@ final class MaskUtil {
    */
   static int applyMaskPenaltyRule2(ByteVectorMatrix matrix) {
     int penalty = 0;
-    byte[][][] array = matrix.getArray();
+    byte[] array = matrix.getArray();
     int width = matrix.getWidth();
     int height = matrix.getHeight();
     for (int y = 0; y < height - 1; y++) {
+      int offset = y * width;
       for (int x = 0; x < width - 1; x++) {
-        byte[] value = array[y][x];
         //coding used: black->(1,1) blue->(1,0) yellow->(0,1) white->(0,0)
-        //first bit of array is set to 1 if module is dark, otherwise it's set to 0
-        int value1 = value[0];
-        if (value1 == array[y][x + 1][0] && value1 == array[y + 1][x][0] && value1 == array[y + 1][x + 1][0]) {
+        //first bit of a module is set to 1 if module is dark, otherwise it's set to 0
+        int value1 = array[offset + x] & 1;
+        if (value1 == (array[offset + x + 1] & 1) &&
+            value1 == (array[offset + width + x] & 1) &&
+            value1 == (array[offset + width + x + 1] & 1)) {
           penalty++;
         }
       }
@@ -75,43 +77,51 @@ final class MaskUtil {
    */
   static int applyMaskPenaltyRule3(ByteVectorMatrix matrix) {
     int numPenalties = 0;
-    byte[][][] array = matrix.getArray();
+    byte[] array = matrix.getArray();
     int width = matrix.getWidth();
     int height = matrix.getHeight();
     for (int y = 0; y < height; y++) {
+      int offset = y * width;  // We can at least optimize this access
       for (int x = 0; x < width; x++) {
-        byte[][] arrayY = array[y];  // We can at least optimize this access
+        int o = offset + x;
         if (x + 6 < width &&
-            arrayY[x][0] == 1 &&
-            arrayY[x +  1][0] == 0 &&
-            arrayY[x +  2][0] == 1 &&
-            arrayY[x +  3][0] == 1 &&
-            arrayY[x +  4][0] == 1 &&
-            arrayY[x +  5][0] == 0 &&
-            arrayY[x +  6][0] == 1 &&
-            (isWhiteHorizontal(arrayY, x - 4, x) || isWhiteHorizontal(arrayY, x + 7, x + 11))) {
+            isDark(array[o]) &&
+            !isDark(array[o + 1]) &&
+            isDark(array[o + 2]) &&
+            isDark(array[o + 3]) &&
+            isDark(array[o + 4]) &&
+            !isDark(array[o + 5]) &&
+            isDark(array[o + 6]) &&
+            (isWhiteHorizontal(array, offset, width, x - 4, x) ||
+             isWhiteHorizontal(array, offset, width, x + 7, x + 11))) {
           numPenalties++;
         }
         if (y + 6 < height &&
-            array[y][x][0] == 1  &&
-            array[y +  1][x][0] == 0  &&
-            array[y +  2][x][0] == 1  &&
-            array[y +  3][x][0] == 1  &&
-            array[y +  4][x][0] == 1  &&
-            array[y +  5][x][0] == 0  &&
-            array[y +  6][x][0] == 1 &&
-            (isWhiteVertical(array, x, y - 4, y) || isWhiteVertical(array, x, y + 7, y + 11))) {
+            isDark(array[o]) &&
+            !isDark(array[o + width]) &&
+            isDark(array[o + 2 * width]) &&
+            isDark(array[o + 3 * width]) &&
+            isDark(array[o + 4 * width]) &&
+            !isDark(array[o + 5 * width]) &&
+            isDark(array[o + 6 * width]) &&
+            (isWhiteVertical(array, x, width, height, y - 4, y) ||
+             isWhiteVertical(array, x, width, height, y + 7, y + 11))) {
           numPenalties++;
         }
       }
     }
     return numPenalties * N3;
   }
+
+  //dark modules (black and blue) have their first bit set
+  private static boolean isDark(byte value) {
+    return (value & 1) != 0;
+  }
   
   //to check if a row's elements from "from" to "to" are all white or yellow (light colors)
-  private static boolean isWhiteHorizontal(byte[][] rowArray, int from, int to) {
+  private static boolean isWhiteHorizontal(byte[] array, int rowOffset, int width, int from, int to) {
     for (int i = from; i < to; i++) {
-      if (i >= 0 && i < rowArray.length && rowArray[i][0] == 1) {
+      if (i >= 0 && i < width && isDark(array[rowOffset + i])) {
         return false;
       }
     }
@@ -119,9 +129,9 @@ final class MaskUtil {
   }
   
   //to check if a colomun's elements from "from" to "to" are all white or yellow (light colors)"
-  private static boolean isWhiteVertical(byte[][][] array, int col, int from, int to) {
+  private static boolean isWhiteVertical(byte[] array, int col, int width, int height, int from, int to) {
     for (int i = from; i < to; i++) {
-      if (i >= 0 && i < array.length && array[i][col][0] == 1) {
+      if (i >= 0 && i < height && isDark(array[i * width + col])) {
         return false;
       }
     }
@@ -134,15 +144,9 @@ final class MaskUtil {
    */
   static int applyMaskPenaltyRule4(ByteVectorMatrix matrix) {
     int numDarkCells = 0;
-    byte[][][] array = matrix.getArray();
-    int width = matrix.getWidth();
-    int height = matrix.getHeight();
-    for (int y = 0; y < height; y++) {
-      byte[][] arrayY = array[y];
-      for (int x = 0; x < width; x++) {
-        if (arrayY[x][0] == 1) {
-          numDarkCells++;
-        }
+    for (byte value : matrix.getArray()) {
+      if (isDark(value)) {
+        numDarkCells++;
       }
     }
     int numTotalCells = matrix.getHeight() * matrix.getWidth();
@@ -199,12 +203,13 @@ final class MaskUtil {
     int penalty = 0;
     int iLimit = isHorizontal ? matrix.getHeight() : matrix.getWidth();
     int jLimit = isHorizontal ? matrix.getWidth() : matrix.getHeight();
-    byte[][][] array = matrix.getArray();
+    byte[] array = matrix.getArray();
+    int width = matrix.getWidth();
     for (int i = 0; i < iLimit; i++) {
       int numSameBitCells = 0;
       int prevBit = -1;
       for (int j = 0; j < jLimit; j++) {
-        int bit = isHorizontal ? array[i][j][0] : array[j][i][0];
+        int bit = (isHorizontal ? array[i * width + j] : array[j * width + i]) & 1;
         if (bit == prevBit) {
           numSameBitCells++;
         } else {
@@ -2,6 +2,7 @@ package main.java.com.google.zxing.hccqrcode.encoder;
 import main.java.com.google.zxing.WriterException;
 import main.java.com.google.zxing.common.BitArray;
 import main.java.com.google.zxing.hccqrcode.decoder.ErrorCorrectionLevel;
+import main.java.com.google.zxing.hccqrcode.decoder.FunctionPatternTemplate;
 import main.java.com.google.zxing.hccqrcode.decoder.Version;
 
 /**
@@ -121,6 +122,43 @@ public final class MatrixUtil {
 	    embedDoubleDataBits(dataBits, maskPattern, matrix);
 	}
 	
+	// Build the matrix of QR Code from "dataBits" without applying any mask: the function patterns,
+	// the version information and a placeholder type information are embedded as in buildMatrix().
+	// Return the indices (y * width + x) of the data modules, i.e. the only modules a mask touches.
+	// The array is shared by every symbol of the same version and must not be modified.
+	static int[] buildUnmaskedMatrix(BitArray dataBits,
+	                                 ErrorCorrectionLevel ecLevel,
+	                                 Version version,
+	                                 ByteVectorMatrix matrix) throws WriterException {
+	    clearMatrix(matrix);
+	    embedBasicPatterns(version, matrix);
+	    // Reserve the type information cells; they are rewritten for each mask pattern.
+	    embedTypeInfo(ecLevel, 0, matrix);
+	    maybeEmbedVersionInfo(version, matrix);
+	    embedDoubleDataBits(dataBits, -1, matrix);
+	    return FunctionPatternTemplate.forVersion(version).getDataModules();
+	}
+	
+	// Copy "unmasked" (as built by buildUnmaskedMatrix()) into "matrix", then embed the type
+	// information for "maskPattern" and apply the mask to the data modules only. The result is
+	// the same as buildMatrix() with the same arguments.
+	static void applyMaskPattern(ByteVectorMatrix unmasked,
+	                             int[] dataModules,
+	                             ErrorCorrectionLevel ecLevel,
+	                             int maskPattern,
+	                             ByteVectorMatrix matrix) throws WriterException {
+	    byte[] array = matrix.getArray();
+	    System.arraycopy(unmasked.getArray(), 0, array, 0, array.length);
+	    embedTypeInfo(ecLevel, maskPattern, matrix);
+	    int width = matrix.getWidth();
+	    for (int index : dataModules) {
+	      if (MaskUtil.getDataMaskBit(maskPattern, index % width, index / width)) {
+	        // Masking flips both bits of the module
+	        array[index] ^= 3;
+	      }
+	    }
+	}
+	
 	// Embed basic patterns. On success, modify the matrix and return true.
 	// The basic patterns are:
 	// - Position detection patterns
@@ -284,68 +322,37 @@ public final class MatrixUtil {
 	
 	//embed two bits for each module of QRCcode
 	static void embedDoubleDataBits (BitArray dataBits, int maskPattern, ByteVectorMatrix matrix) {
+		Version version = Version.getVersionForNumber((matrix.getWidth() - 17) / 4);
+		// Data modules in placement order: columns in pairs from the right bottom cell, zig-zagging
+		// up and down and skipping the function patterns
+		int[] dataModules = FunctionPatternTemplate.forVersion(version).getDataModules();
+		byte[] array = matrix.getArray();
+		int width = matrix.getWidth();
+		int size = dataBits.getSize();
 		int bitIndex = 0;
-		int direction = -1;
-		//Start from the right bottom cell
-		int x = matrix.getHeight() - 1;
-		int y = matrix.getWidth() - 1;
-		while (x > 0) {
-			//Skip the vertical timing pattern
-			if(x == 6) {
-				x -= 1;
+		for (int index : dataModules) {
+			int bit1 = 0;
+			int bit2 = 0;
+			// Padding bits. If there is no bit left, we'll fill the left cells with 0, as described
+			// in 8.4.9 of JISX0510:2004 (p. 24).
+			if (bitIndex < size) {
+				bit1 = dataBits.get(bitIndex) ? 1 : 0;
+				if (bitIndex + 1 < size) {
+					bit2 = dataBits.get(bitIndex + 1) ? 1 : 0;
+				}
+				bitIndex = bitIndex + 2;
 			}
-			while (y >= 0 && y < matrix.getHeight()) {
-				//System.out.println(y);
-				for (int i = 0; i < 2; ++i) {
-		            int xx = x - i;
-		            // Skip the cell if it's not empty.
-		            if (!isEmpty(matrix.get(xx, y))) {
-		              continue;
-		            }
-		            
-		            boolean bit1;
-		            boolean bit2;
-		            if (bitIndex < dataBits.getSize()-1) {
-		              bit1 = dataBits.get(bitIndex);
-		              bit2 = dataBits.get(bitIndex+1);
-		              bitIndex = bitIndex + 2;
-		            } else {
-		            	if(bitIndex < dataBits.getSize()) {
-		            		bit1 = dataBits.get(bitIndex);
-		            		bit2 = false;
-		            		++bitIndex;
-		            	}
-		            	else{
-		            		// Padding bit. If there is no bit left, we'll fill the left cells with 0, as described
-		            		// in 8.4.9 of JISX0510:2004 (p. 24).
-		                    bit1 = false;
-		                    bit2 = false;
-		                }
-		            }
-
-		            // Skip masking if mask_pattern is -1.
-		            if (maskPattern != -1 && MaskUtil.getDataMaskBit(maskPattern, xx, y)) {
-		              bit1 = !bit1;
-		              bit2 = !bit2;
-		            }
-		            matrix.set(xx, y, bit1, bit2);
-		          }
-		          y += direction;
-		        }
-		        direction = -direction;  // Reverse the direction.
-		        y += direction;
-		        x -= 2;  // Move to the left.
+			int value = bit1 | (bit2 << 1);
+			// Skip masking if mask_pattern is -1.
+			if (maskPattern != -1 && MaskUtil.getDataMaskBit(maskPattern, index % width, index / width)) {
+				value ^= 3;
 			}
-		
-	}
-	
-    //check if value is "empty" (initialization values of a cell are (-1,-1))
-	private static boolean isEmpty (byte[] value) {
-		return value[0] == -1 && value[1] == -1;
+			array[index] = (byte) value;
+		}
 	}
 	
 	static void clearMatrix (ByteVectorMatrix matrix) {
-		matrix.clear((byte)-1);
+		matrix.clear(ByteVectorMatrix.EMPTY);
 	}
 	
 	static void embedTimingPatterns (ByteVectorMatrix matrix) {
@@ -354,18 +361,18 @@ public final class MatrixUtil {
 	    for (int i = 8; i < matrix.getWidth() - 8; ++i) {
 	      int bit = (i + 1) % 2;
 	      // Horizontal line.
-	      if (isEmpty(matrix.get(i, 6))) {
+	      if (matrix.isEmpty(i, 6)) {
 	        matrix.set(i, 6, bit, bit);
 	      }
 	      // Vertical line.
-	      if (isEmpty(matrix.get(6, i))) {
+	      if (matrix.isEmpty(6, i)) {
 	        matrix.set(6, i, bit, bit);
 	      }
 	    }
 	}
 	
 	private static void embedDarkDotAtLeftBottomCorner(ByteVectorMatrix matrix) throws WriterException {
-	    if (matrix.get(8, matrix.getHeight() - 8)[0] == 0 && matrix.get(8, matrix.getHeight() - 8)[1] == 0) {
+	    if (matrix.get(8, matrix.getHeight() - 8) == 0) {
 	      throw new WriterException();
 	    }
 	    matrix.set(8, matrix.getHeight() - 8, 1,1);
@@ -375,7 +382,7 @@ public final class MatrixUtil {
             int yStart,
             ByteVectorMatrix matrix) throws WriterException {
 		for (int x = 0; x < 8; ++x) {
-			if (!isEmpty(matrix.get(xStart + x, yStart))) {
+			if (!matrix.isEmpty(xStart + x, yStart)) {
 				throw new WriterException();
 			}
 			matrix.set(xStart + x, yStart, 0, 0);
@@ -386,7 +393,7 @@ public final class MatrixUtil {
             int yStart,
             ByteVectorMatrix matrix) throws WriterException {
 		for (int y = 0; y < 7; ++y) {
-			if (!isEmpty(matrix.get(xStart, yStart + y))) {
+			if (!matrix.isEmpty(xStart, yStart + y)) {
 				throw new WriterException();
 			}
 			matrix.set(xStart, yStart + y, 0, 0);
@@ -461,7 +468,7 @@ public final class MatrixUtil {
 	        continue;
 	      }
 	      // If the cell is unset, we embed the position adjustment pattern here.
-	      if (isEmpty(matrix.get(x, y))) {
+	      if (matrix.isEmpty(x, y)) {
 	        // -2 is necessary since the x/y coordinates point to the center of the pattern, not the
 	        // left top corner.
 	        embedPositionAdjustmentPattern(x - 2, y - 2, matrix);
@@ -79,4 +79,18 @@ public final class FinderPattern extends ResultPoint {
     return new FinderPattern(combinedX, combinedY, combinedModuleSize, combinedCount);
   }
 
+  /**
+   * Combines this object's current estimate with that of another finder pattern, found
+   * separately. It returns a new {@code FinderPattern} containing a weighted average based on
+   * both counts.
+   */
+  FinderPattern combineEstimate(FinderPattern other) {
+    int combinedCount = count + other.count;
+    float combinedX = (count * getX() + other.count * other.getX()) / combinedCount;
+    float combinedY = (count * getY() + other.count * other.getY()) / combinedCount;
+    float combinedModuleSize =
+        (count * estimatedModuleSize + other.count * other.estimatedModuleSize) / combinedCount;
+    return new FinderPattern(combinedX, combinedY, combinedModuleSize, combinedCount);
+  }
+
 }
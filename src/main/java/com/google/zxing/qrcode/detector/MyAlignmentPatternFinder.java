@@ -72,12 +72,12 @@ public class MyAlignmentPatternFinder {
 	      // Burn off leading white pixels before anything else; if we start in the middle of
 	      // a white run, it doesn't make sense to count its length, since we don't know if the
 	      // white run continued to the left of the start point
-	      while (j < maxJ && !image.get(j, i)[0] && !image.get(j, i)[1]) {
+	      while (j < maxJ && image.isWhite(j, i)) {
 	        j++;
 	      }
 	      int currentState = 0;
 	      while (j < maxJ) {
-	        if (image.get(j, i)[0] && image.get(j, i)[1]) {
+	        if (image.isBlack(j, i)) {
 	          // Black pixel
 	          if (currentState == 1) { // Counting black pixels
 	            stateCount[currentState]++;
@@ -170,7 +170,7 @@ public class MyAlignmentPatternFinder {
 
 	    // Start counting up from center
 	    int i = startI;
-	    while (i >= 0 && image.get(centerJ, i)[0] && image.get(centerJ, i)[1] && stateCount[1] <= maxCount) {
+	    while (i >= 0 && image.isBlack(centerJ, i) && stateCount[1] <= maxCount) {
 	      stateCount[1]++;
 	      i--;
 	    }
@@ -178,7 +178,7 @@ public class MyAlignmentPatternFinder {
 	    if (i < 0 || stateCount[1] > maxCount) {
 	      return Float.NaN;
 	    }
-	    while (i >= 0 && !image.get(centerJ, i)[0] && !image.get(centerJ, i)[1] && stateCount[0] <= maxCount) {
+	    while (i >= 0 && image.isWhite(centerJ, i) && stateCount[0] <= maxCount) {
 	      stateCount[0]++;
 	      i--;
 	    }
@@ -188,14 +188,14 @@ public class MyAlignmentPatternFinder {
 
 	    // Now also count down from center
 	    i = startI + 1;
-	    while (i < maxI && image.get(centerJ, i)[0] && image.get(centerJ, i)[1]  && stateCount[1] <= maxCount) {
+	    while (i < maxI && image.isBlack(centerJ, i)  && stateCount[1] <= maxCount) {
 	      stateCount[1]++;
 	      i++;
 	    }
 	    if (i == maxI || stateCount[1] > maxCount) {
 	      return Float.NaN;
 	    }
-	    while (i < maxI && !image.get(centerJ, i)[0] && !image.get(centerJ, i)[1] && stateCount[2] <= maxCount) {
+	    while (i < maxI && image.isWhite(centerJ, i) && stateCount[2] <= maxCount) {
 	      stateCount[2]++;
 	      i++;
 	    }
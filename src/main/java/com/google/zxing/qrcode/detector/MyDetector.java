@@ -1,6 +1,7 @@
 package main.java.com.google.zxing.qrcode.detector;
 
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 import main.java.com.google.zxing.DecodeHintType;
 import main.java.com.google.zxing.FormatException;
@@ -24,10 +25,39 @@ import main.java.com.google.zxing.qrcode.decoder.Version;
 public class MyDetector {
 	
 	private final BitVectorMatrix image;
+	private final MyGridSampler gridSampler;
+	private final BitVectorMatrix reusableBits;
+	private final ForkJoinPool pool;
 	private ResultPointCallback resultPointCallback;
 	
 	public MyDetector (BitVectorMatrix image) {
+	    this(image, null, null);
+	}
+	
+	/**
+	 * @param image binarized image to search
+	 * @param gridSampler sampler to use, or null for {@link MyGridSampler#getInstance()}
+	 * @param reusableBits matrix the sampled code may be written into instead of a new one, or null.
+	 *  It is owned by the caller, who must not use it for anything else while the result is in use
+	 */
+	public MyDetector (BitVectorMatrix image, MyGridSampler gridSampler, BitVectorMatrix reusableBits) {
+	    this(image, gridSampler, reusableBits, null);
+	}
+
+	/**
+	 * @param image binarized image to search
+	 * @param gridSampler sampler to use, or null for {@link MyGridSampler#getInstance()}
+	 * @param reusableBits matrix the sampled code may be written into instead of a new one, or null.
+	 *  It is owned by the caller, who must not use it for anything else while the result is in use
+	 * @param pool if not null, the finder patterns of large images are searched in bands of rows on
+	 *  this pool, see {@link MyParallelFinderPatternFinder}
+	 */
+	public MyDetector (BitVectorMatrix image, MyGridSampler gridSampler, BitVectorMatrix reusableBits,
+	    ForkJoinPool pool) {
 	    this.image = image;
+	    this.gridSampler = gridSampler;
+	    this.reusableBits = reusableBits;
+	    this.pool = pool;
 	}
 	
 	protected final BitVectorMatrix getImage() {
@@ -37,6 +67,10 @@ public class MyDetector {
 	protected final ResultPointCallback getResultPointCallback() {
 	    return resultPointCallback;
 	}
+
+	protected final void setResultPointCallback(ResultPointCallback resultPointCallback) {
+	    this.resultPointCallback = resultPointCallback;
+	}
 	
 	/**
 	* <p>Detects a QR Code in an image.</p>
@@ -62,13 +96,24 @@ public class MyDetector {
 	    resultPointCallback = hints == null ? null :
 	        (ResultPointCallback) hints.get(DecodeHintType.NEED_RESULT_POINT_CALLBACK);
 
-	    MyFinderPatternFinder finder = new MyFinderPatternFinder(image, resultPointCallback);
-	    FinderPatternInfo info = finder.find(hints);
+	    FinderPatternInfo info;
+	    if (pool == null) {
+	      info = new MyFinderPatternFinder(image, resultPointCallback).find(hints);
+	    } else {
+	      info = new MyParallelFinderPatternFinder(image, resultPointCallback, pool).findParallel(hints);
+	    }
 
 	    return processFinderPatternInfo(info);
 	}
     
-    protected final MyDetectorResult processFinderPatternInfo(FinderPatternInfo info)
+	/**
+	* <p>Samples the code whose finder patterns are given, such as those found in a previous frame.
+	* Unless the detector reuses a matrix, it can be called concurrently.</p>
+	*
+	* @throws NotFoundException if the patterns do not outline a QR Code
+	* @throws FormatException if the dimension of the QR Code is not valid
+	*/
+    public final MyDetectorResult processFinderPatternInfo(FinderPatternInfo info)
     	      throws NotFoundException, FormatException {
 
     	    FinderPattern topLeft = info.getTopLeft();
@@ -115,7 +160,8 @@ public class MyDetector {
     	    PerspectiveTransform transform =
     	        createTransform(topLeft, topRight, bottomLeft, alignmentPattern, dimension);
 
-    	    BitVectorMatrix bits = sampleGrid(image, transform, dimension);
+    	    byte[] confidence = new byte[dimension * dimension];
+    	    BitVectorMatrix bits = sampleGrid(transform, dimension, confidence);
 
     	    ResultPoint[] points;
     	    if (alignmentPattern == null) {
@@ -123,7 +169,7 @@ public class MyDetector {
     	    } else {
     	      points = new ResultPoint[]{bottomLeft, topLeft, topRight, alignmentPattern};
     	    }
-    	    return new MyDetectorResult(bits, points);
+    	    return new MyDetectorResult(bits, points, confidence);
     }
     
     /**
@@ -243,7 +289,7 @@ public class MyDetector {
         // Does current pixel mean we have moved white to black or vice versa?
         // Scanning black in state 0,2 and white in state 1, so if we find the wrong
         // color, advance to next state or end if we are in state 2 already
-        if ((state == 1) == (image.get(realX, realY)[0] && image.get(realX, realY)[1])) {
+        if ((state == 1) == image.isBlack(realX, realY)) {
           if (state == 2) {
             return MathUtils.distance(x, y, fromX, fromY);
           }
@@ -379,11 +425,10 @@ public class MyDetector {
     			bottomLeft.getY());
     }
     
-    private static BitVectorMatrix sampleGrid(BitVectorMatrix image,
-            PerspectiveTransform transform,
-            int dimension) throws NotFoundException {
-    	MyGridSampler sampler = MyGridSampler.getInstance();
-    	return sampler.sampleGrid(image, dimension, dimension, transform);
+    private BitVectorMatrix sampleGrid(PerspectiveTransform transform,
+            int dimension, byte[] confidence) throws NotFoundException {
+    	MyGridSampler sampler = gridSampler == null ? MyGridSampler.getInstance() : gridSampler;
+    	return sampler.sampleGrid(image, dimension, dimension, transform, reusableBits, confidence);
     }
 
     
@@ -5,6 +5,7 @@ import main.java.com.google.zxing.NotFoundException;
 import main.java.com.google.zxing.ResultPoint;
 import main.java.com.google.zxing.ResultPointCallback;
 import main.java.com.google.zxing.common.BitVectorMatrix;
+import main.java.com.google.zxing.common.LazyBitVectorMatrix;
 
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -53,107 +54,61 @@ public class MyFinderPatternFinder {
 	protected final BitVectorMatrix getImage() {
 	    return image;
 	}
+
+	protected final List<FinderPattern> getPossibleCenters() {
+	    return possibleCenters;
+	}
 	
     final FinderPatternInfo find(Map<DecodeHintType,?> hints) throws NotFoundException {
 		    boolean tryHarder = hints != null && hints.containsKey(DecodeHintType.TRY_HARDER);
 		    boolean pureBarcode = hints != null && hints.containsKey(DecodeHintType.PURE_BARCODE);
-		    int maxI = image.getHeight();
-		    int maxJ = image.getWidth();
+		    int[] region = searchRegion(image);
+		    int minI = region[1];
+		    int maxI = minI + region[3];
+		    int minJ = region[0];
+		    int maxJ = minJ + region[2];
 		    // We are looking for black/white/black/white/black modules in
 		    // 1:1:3:1:1 ratio; this tracks the number of such modules seen so far
 
-		    // Let's assume that the maximum version QR Code we support takes up 1/4 the height of the
-		    // image, and then account for the center being 3 modules in size. This gives the smallest
-		    // number of pixels the center could be, so skip this often. When trying harder, look for all
-		    // QR versions regardless of how dense they are.
-		    int iSkip = (3 * maxI) / (4 * MAX_MODULES);
-		    if (iSkip < MIN_SKIP || tryHarder) {
-		      iSkip = MIN_SKIP;
-		    }
+		    int iSkip = initialRowSkip(region[3], tryHarder);
 
 		    boolean done = false;
 		    int[] stateCount = new int[5];
-		    for (int i = iSkip - 1; i < maxI && !done; i += iSkip) {
-		      // Get a row of black/white values
-		      stateCount[0] = 0;
-		      stateCount[1] = 0;
-		      stateCount[2] = 0;
-		      stateCount[3] = 0;
-		      stateCount[4] = 0;
-		      int currentState = 0;
-		      for (int j = 0; j < maxJ; j++) {
-		        if (image.get(j, i)[0] && image.get(j,i)[1]) { //if black get(i,j) return this array: [1,1]
-		          // Black pixel
-		          if ((currentState & 1) == 1) { // Counting white pixels
-		            currentState++;
-		          }
-		          stateCount[currentState]++;
-		        } else { // White pixel
-		          if ((currentState & 1) == 0) { // Counting black pixels
-		            if (currentState == 4) { // A winner?
-		              if (foundPatternCross(stateCount)) { // Yes
-		                boolean confirmed = handlePossibleCenter(stateCount, i, j, pureBarcode);
-		                if (confirmed) {
-		                  // Start examining every other line. Checking each line turned out to be too
-		                  // expensive and didn't improve performance.
-		                  iSkip = 2;
-		                  if (hasSkipped) {
-		                    done = haveMultiplyConfirmedCenters();
-		                  } else {
-		                    int rowSkip = findRowSkip();
-		                    if (rowSkip > stateCount[2]) {
-		                      // Skip rows between row of lower confirmed center
-		                      // and top of presumed third confirmed center
-		                      // but back up a bit to get a full chance of detecting
-		                      // it, entire width of center of finder pattern
-
-		                      // Skip by rowSkip, but back off by stateCount[2] (size of last center
-		                      // of pattern we saw) to be conservative, and also back off by iSkip which
-		                      // is about to be re-added
-		                      i += rowSkip - stateCount[2] - iSkip;
-		                      j = maxJ - 1;
-		                    }
-		                  }
-		                } else {
-		                  stateCount[0] = stateCount[2];
-		                  stateCount[1] = stateCount[3];
-		                  stateCount[2] = stateCount[4];
-		                  stateCount[3] = 1;
-		                  stateCount[4] = 0;
-		                  currentState = 3;
-		                  continue;
-		                }
-		                // Clear state to start looking again
-		                currentState = 0;
-		                stateCount[0] = 0;
-		                stateCount[1] = 0;
-		                stateCount[2] = 0;
-		                stateCount[3] = 0;
-		                stateCount[4] = 0;
-		              } else { // No, shift counts back by two
-		                stateCount[0] = stateCount[2];
-		                stateCount[1] = stateCount[3];
-		                stateCount[2] = stateCount[4];
-		                stateCount[3] = 1;
-		                stateCount[4] = 0;
-		                currentState = 3;
-		              }
-		            } else {
-		              stateCount[++currentState]++;
-		            }
-		          } else { // Counting white pixels
-		            stateCount[currentState]++;
+		    int[] runs = new int[maxJ - minJ + 1];
+		    int[] position = new int[2];
+		    for (int i = minI + iSkip - 1; i < maxI && !done; i += iSkip) {
+		      // Get a row of black/white runs
+		      int numRuns = image.getBlackRuns(i, minJ, maxJ, runs);
+		      position[0] = 0;
+		      position[1] = minJ;
+		      boolean skipRow = false;
+		      while (!skipRow && findCenterInRow(i, runs, numRuns, position, stateCount, pureBarcode)) {
+		        // Start examining every other line. Checking each line turned out to be too
+		        // expensive and didn't improve performance.
+		        iSkip = 2;
+		        if (hasSkipped) {
+		          done = haveMultiplyConfirmedCenters();
+		        } else {
+		          int rowSkip = findRowSkip();
+		          if (rowSkip > stateCount[2]) {
+		            // Skip rows between row of lower confirmed center
+		            // and top of presumed third confirmed center
+		            // but back up a bit to get a full chance of detecting
+		            // it, entire width of center of finder pattern
+
+		            // Skip by rowSkip, but back off by stateCount[2] (size of last center
+		            // of pattern we saw) to be conservative, and also back off by iSkip which
+		            // is about to be re-added
+		            i += rowSkip - stateCount[2] - iSkip;
+		            skipRow = true;
 		          }
 		        }
 		      }
-		      if (foundPatternCross(stateCount)) {
-		        boolean confirmed = handlePossibleCenter(stateCount, i, maxJ, pureBarcode);
-		        if (confirmed) {
-		          iSkip = stateCount[0];
-		          if (hasSkipped) {
-		            // Found a third one
-		            done = haveMultiplyConfirmedCenters();
-		          }
+		      if (!skipRow && foundPatternCross(stateCount) && handlePossibleCenter(stateCount, i, maxJ, pureBarcode)) {
+		        iSkip = stateCount[0];
+		        if (hasSkipped) {
+		          // Found a third one
+		          done = haveMultiplyConfirmedCenters();
 		        }
 		      }
 		    }
@@ -163,6 +118,139 @@ public class MyFinderPatternFinder {
 
 		    return new FinderPatternInfo(patternInfo);
     }
+
+    /**
+     * @return left, top, width and height of the part of the image to scan for finder patterns:
+     *  the candidate region of a {@link LazyBitVectorMatrix}, so that the tiles elsewhere are never
+     *  binarized, the whole image otherwise
+     */
+    protected static int[] searchRegion(BitVectorMatrix image) {
+      if (image instanceof LazyBitVectorMatrix) {
+        return ((LazyBitVectorMatrix) image).getCandidateRegion();
+      }
+      return new int[] {0, 0, image.getWidth(), image.getHeight()};
+    }
+
+    /**
+     * @return the number of rows {@link #find(Map)} advances before it has confirmed a center, in
+     *  an image of the given height
+     */
+    protected static int initialRowSkip(int height, boolean tryHarder) {
+      // Let's assume that the maximum version QR Code we support takes up 1/4 the height of the
+      // image, and then account for the center being 3 modules in size. This gives the smallest
+      // number of pixels the center could be, so skip this often. When trying harder, look for all
+      // QR versions regardless of how dense they are.
+      int iSkip = (3 * height) / (4 * MAX_MODULES);
+      if (iSkip < MIN_SKIP || tryHarder) {
+        iSkip = MIN_SKIP;
+      }
+      return iSkip;
+    }
+
+    /**
+     * <p>Collects the finder patterns crossed by rows {@code fromI + iSkip - 1}, {@code fromI + 2 * iSkip - 1},
+     * ... below toI, advancing by confirmedSkip rows instead once a center has been confirmed. Unlike
+     * {@link #find(Map)}, it neither skips ahead nor stops early, so that disjoint parts of the
+     * image can be scanned independently.</p>
+     *
+     * <p>Only columns fromJ to toJ - 1 of the rows are read, run by run, see
+     * {@link BitVectorMatrix#getBlackRuns(int, int, int, int[])}. The cross-checks of the
+     * candidates may still read outside.</p>
+     */
+    protected final void findCentersInRegion(int fromJ, int toJ, int fromI, int toI,
+        int iSkip, int confirmedSkip, boolean pureBarcode) {
+      int[] stateCount = new int[5];
+      int[] runs = new int[toJ - fromJ + 1];
+      int[] position = new int[2];
+      for (int i = fromI + iSkip - 1; i < toI; i += iSkip) {
+        // Get a row of black/white runs
+        int numRuns = image.getBlackRuns(i, fromJ, toJ, runs);
+        position[0] = 0;
+        position[1] = fromJ;
+        while (findCenterInRow(i, runs, numRuns, position, stateCount, pureBarcode)) {
+          iSkip = confirmedSkip;
+        }
+        if (foundPatternCross(stateCount) && handlePossibleCenter(stateCount, i, toJ, pureBarcode)) {
+          iSkip = confirmedSkip;
+        }
+      }
+    }
+
+    /**
+     * <p>Reads the black/white runs of row i, as returned by
+     * {@link BitVectorMatrix#getBlackRuns(int, int, int, int[])}, looking for black/white/black/white/black
+     * modules in 1:1:3:1:1 ratio; stateCount tracks the number of such modules seen so far. It stops
+     * at the first center confirmed by {@link #handlePossibleCenter(int[], int, int, boolean)}, so
+     * that the caller may give up the rest of the row, and carries on after it when called again.</p>
+     *
+     * <p>The pattern cut by the end of the row is left in stateCount for the caller to check.</p>
+     *
+     * @param position the run to read next and the column it starts at: 0 and the first column of
+     *  the runs to start the row, updated when a center is confirmed
+     * @return true if a center was confirmed, whose counts are left in stateCount; false once the
+     *  end of the row has been reached
+     */
+    private boolean findCenterInRow(int i, int[] runs, int numRuns, int[] position,
+        int[] stateCount, boolean pureBarcode) {
+      int r = position[0];
+      int j = position[1];
+      int currentState = 0;
+      clearCounts(stateCount);
+      if (r > 0) {
+        // Stopped at the white run which ended a confirmed pattern: its first white pixel ended
+        // the pattern, the others start counting again
+        if (runs[r] > 1) {
+          currentState = 1;
+          stateCount[1] = runs[r] - 1;
+        }
+        j += runs[r++];
+      }
+      // The runs alternate white and black, starting with white; j is where the run starts
+      for (; r < numRuns; j += runs[r++]) {
+        int length = runs[r];
+        if ((r & 1) == 1) { // Black run
+          if ((currentState & 1) == 1) { // Counting white pixels
+            currentState++;
+          }
+          stateCount[currentState] += length;
+        } else if (length > 0) { // White run
+          if ((currentState & 1) == 0) { // Counting black pixels
+            if (currentState == 4) { // A winner?
+              if (foundPatternCross(stateCount) && handlePossibleCenter(stateCount, i, j, pureBarcode)) { // Yes
+                position[0] = r;
+                position[1] = j;
+                return true;
+              }
+              // No, shift counts back by two
+              shiftCountsByTwo(stateCount);
+              stateCount[3] = length;
+              currentState = 3;
+            } else {
+              stateCount[++currentState] += length;
+            }
+          } else { // Counting white pixels
+            stateCount[currentState] += length;
+          }
+        }
+      }
+      return false;
+    }
+
+    private static void clearCounts(int[] stateCount) {
+      stateCount[0] = 0;
+      stateCount[1] = 0;
+      stateCount[2] = 0;
+      stateCount[3] = 0;
+      stateCount[4] = 0;
+    }
+
+    private static void shiftCountsByTwo(int[] stateCount) {
+      stateCount[0] = stateCount[2];
+      stateCount[1] = stateCount[3];
+      stateCount[2] = stateCount[4];
+      stateCount[3] = 1;
+      stateCount[4] = 0;
+    }
     
     /**
      * @param stateCount count of black/white/black/white/black pixels just read
@@ -272,14 +360,14 @@ public class MyFinderPatternFinder {
 
       // Start counting up from center
       int i = startI;
-      while (i >= 0 && image.get(centerJ, i)[0]) {
+      while (i >= 0 && image.getPlane0(centerJ, i)) {
         stateCount[2]++;
         i--;
       }
       if (i < 0) {
         return Float.NaN;
       }
-      while (i >= 0 && !image.get(centerJ, i)[0] && stateCount[1] <= maxCount) {
+      while (i >= 0 && !image.getPlane0(centerJ, i) && stateCount[1] <= maxCount) {
         stateCount[1]++;
         i--;
       }
@@ -287,7 +375,7 @@ public class MyFinderPatternFinder {
       if (i < 0 || stateCount[1] > maxCount) {
         return Float.NaN;
       }
-      while (i >= 0 && image.get(centerJ, i)[0] && stateCount[0] <= maxCount) {
+      while (i >= 0 && image.getPlane0(centerJ, i) && stateCount[0] <= maxCount) {
         stateCount[0]++;
         i--;
       }
@@ -297,21 +385,21 @@ public class MyFinderPatternFinder {
 
       // Now also count down from center
       i = startI + 1;
-      while (i < maxI && image.get(centerJ, i)[0]) {
+      while (i < maxI && image.getPlane0(centerJ, i)) {
         stateCount[2]++;
         i++;
       }
       if (i == maxI) {
         return Float.NaN;
       }
-      while (i < maxI && !image.get(centerJ, i)[0] && stateCount[3] < maxCount) {
+      while (i < maxI && !image.getPlane0(centerJ, i) && stateCount[3] < maxCount) {
         stateCount[3]++;
         i++;
       }
       if (i == maxI || stateCount[3] >= maxCount) {
         return Float.NaN;
       }
-      while (i < maxI && image.get(centerJ, i)[0] && stateCount[4] < maxCount) {
+      while (i < maxI && image.getPlane0(centerJ, i) && stateCount[4] < maxCount) {
         stateCount[4]++;
         i++;
       }
@@ -351,21 +439,21 @@ public class MyFinderPatternFinder {
       int[] stateCount = getCrossCheckStateCount();
 
       int j = startJ;
-      while (j >= 0 && image.get(j, centerI)[0]) {
+      while (j >= 0 && image.getPlane0(j, centerI)) {
         stateCount[2]++;
         j--;
       }
       if (j < 0) {
         return Float.NaN;
       }
-      while (j >= 0 && !image.get(j, centerI)[0] && stateCount[1] <= maxCount) {
+      while (j >= 0 && !image.getPlane0(j, centerI) && stateCount[1] <= maxCount) {
         stateCount[1]++;
         j--;
       }
       if (j < 0 || stateCount[1] > maxCount) {
         return Float.NaN;
       }
-      while (j >= 0 && image.get(j, centerI)[0] && stateCount[0] <= maxCount) {
+      while (j >= 0 && image.getPlane0(j, centerI) && stateCount[0] <= maxCount) {
         stateCount[0]++;
         j--;
       }
@@ -374,21 +462,21 @@ public class MyFinderPatternFinder {
       }
 
       j = startJ + 1;
-      while (j < maxJ && image.get(j, centerI)[0]) {
+      while (j < maxJ && image.getPlane0(j, centerI)) {
         stateCount[2]++;
         j++;
       }
       if (j == maxJ) {
         return Float.NaN;
       }
-      while (j < maxJ && !image.get(j, centerI)[0] && stateCount[3] < maxCount) {
+      while (j < maxJ && !image.getPlane0(j, centerI) && stateCount[3] < maxCount) {
         stateCount[3]++;
         j++;
       }
       if (j == maxJ || stateCount[3] >= maxCount) {
         return Float.NaN;
       }
-      while (j < maxJ && image.get(j, centerI)[0] && stateCount[4] < maxCount) {
+      while (j < maxJ && image.getPlane0(j, centerI) && stateCount[4] < maxCount) {
         stateCount[4]++;
         j++;
       }
@@ -424,7 +512,7 @@ public class MyFinderPatternFinder {
 
       // Start counting up, left from center finding black center mass
       int i = 0;
-      while (startI >= i && centerJ >= i && image.get(centerJ - i, startI - i)[0] && image.get(centerJ - i, startI - i)[1]) {
+      while (startI >= i && centerJ >= i && image.isBlack(centerJ - i, startI - i)) {
         stateCount[2]++;
         i++;
       }
@@ -434,8 +522,7 @@ public class MyFinderPatternFinder {
       }
 
       // Continue up, left finding white space
-      while (startI >= i && centerJ >= i && !image.get(centerJ - i, startI - i)[0] &&
-             !image.get(centerJ - i, startI - i)[1] && stateCount[1] <= maxCount) {
+      while (startI >= i && centerJ >= i && image.isWhite(centerJ - i, startI - i) && stateCount[1] <= maxCount) {
         stateCount[1]++;
         i++;
       }
@@ -446,8 +533,7 @@ public class MyFinderPatternFinder {
       }
 
       // Continue up, left finding black border
-      while (startI >= i && centerJ >= i && image.get(centerJ - i, startI - i)[0] &&
-             image.get(centerJ - i, startI - i)[1] && stateCount[0] <= maxCount) {
+      while (startI >= i && centerJ >= i && image.isBlack(centerJ - i, startI - i) && stateCount[0] <= maxCount) {
         stateCount[0]++;
         i++;
       }
@@ -460,7 +546,7 @@ public class MyFinderPatternFinder {
 
       // Now also count down, right from center
       i = 1;
-      while (startI + i < maxI && centerJ + i < maxJ && image.get(centerJ + i, startI + i)[0] && image.get(centerJ + i, startI + i)[1]) {
+      while (startI + i < maxI && centerJ + i < maxJ && image.isBlack(centerJ + i, startI + i)) {
         stateCount[2]++;
         i++;
       }
@@ -470,8 +556,7 @@ public class MyFinderPatternFinder {
          return false;
       }
 
-      while (startI + i < maxI && centerJ + i < maxJ && !image.get(centerJ + i, startI + i)[0] &&
-    		 !image.get(centerJ + i, startI + i)[1] && stateCount[3] < maxCount) {
+      while (startI + i < maxI && centerJ + i < maxJ && image.isWhite(centerJ + i, startI + i) && stateCount[3] < maxCount) {
         stateCount[3]++;
         i++;
       }
@@ -480,8 +565,7 @@ public class MyFinderPatternFinder {
         return false;
       }
 
-      while (startI + i < maxI && centerJ + i < maxJ && image.get(centerJ + i, startI + i)[0] &&
-    		  image.get(centerJ + i, startI + i)[1] && stateCount[4] < maxCount) {
+      while (startI + i < maxI && centerJ + i < maxJ && image.isBlack(centerJ + i, startI + i) && stateCount[4] < maxCount) {
         stateCount[4]++;
         i++;
       }
@@ -565,7 +649,7 @@ public class MyFinderPatternFinder {
      *         size differs from the average among those patterns the least
      * @throws NotFoundException if 3 such finder patterns do not exist
      */
-    private FinderPattern[] selectBestPatterns() throws NotFoundException {
+    protected final FinderPattern[] selectBestPatterns() throws NotFoundException {
 
       int startSize = possibleCenters.size();
       if (startSize < 3) {
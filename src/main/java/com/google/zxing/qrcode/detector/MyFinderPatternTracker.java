@@ -0,0 +1,190 @@
+package main.java.com.google.zxing.qrcode.detector;
+
+import java.util.List;
+import java.util.Map;
+
+import main.java.com.google.zxing.DecodeHintType;
+import main.java.com.google.zxing.NotFoundException;
+import main.java.com.google.zxing.ResultPoint;
+import main.java.com.google.zxing.ResultPointCallback;
+import main.java.com.google.zxing.common.BitVectorMatrix;
+import main.java.com.google.zxing.common.detector.MathUtils;
+
+/**
+ * <p>Follows the finder patterns of a QR Code from one frame of a video stream to the next, for
+ * fixed cameras which see the same code drift by a few pixels between consecutive frames.</p>
+ *
+ * <p>Once the patterns of a code have been found, those of the next frame are searched only in a
+ * small window around the position predicted for each of them, assuming the code keeps moving
+ * as it did between the last two frames. If one of the three patterns is not found in its
+ * window, the track is lost and the caller scans the whole frame again with
+ * {@link #find(BitVectorMatrix, Map)}.</p>
+ *
+ * <p>This class is stateful and not thread-safe: use one instance per stream.</p>
+ *
+ * @author Francesco Benedetto
+ *
+ */
+public final class MyFinderPatternTracker {
+
+  // Modules a pattern may move beyond the predicted position between two frames
+  private static final float DEFAULT_MAX_DRIFT = 4.0f;
+  // Rows scanned in a window, as in MyFinderPatternFinder.find() once a center is confirmed
+  private static final int WINDOW_ROW_SKIP = 2;
+
+  private final float maxDrift;
+  // Patterns of the last two frames, in the order of FinderPatternInfo, or null
+  private FinderPattern[] last;
+  private FinderPattern[] previous;
+
+  public MyFinderPatternTracker() {
+    this(DEFAULT_MAX_DRIFT);
+  }
+
+  /**
+   * @param maxDrift how far, in modules, a pattern may move beyond its predicted position
+   *  between two frames and still be tracked
+   */
+  public MyFinderPatternTracker(float maxDrift) {
+    if (maxDrift < 0.0f) {
+      throw new IllegalArgumentException("Drift must not be negative");
+    }
+    this.maxDrift = maxDrift;
+  }
+
+  /**
+   * @return true iff the patterns of the next frame will be searched around those of the last
+   */
+  public boolean isTracking() {
+    return last != null;
+  }
+
+  /**
+   * Forgets the tracked code. Called when the patterns returned by
+   * {@link #track(BitVectorMatrix, Map)} or {@link #find(BitVectorMatrix, Map)} do not lead to
+   * a code.
+   */
+  public void reset() {
+    last = null;
+    previous = null;
+  }
+
+  /**
+   * Finds the finder patterns of the tracked code in a new frame, in the windows around their
+   * predicted positions.
+   *
+   * @param image binarized frame
+   * @param hints optional hints to detector
+   * @return the patterns found, or null if the code is not tracked or has been lost
+   */
+  public FinderPatternInfo track(BitVectorMatrix image, Map<DecodeHintType,?> hints) {
+    if (last == null) {
+      return null;
+    }
+    boolean pureBarcode = hints != null && hints.containsKey(DecodeHintType.PURE_BARCODE);
+    FinderPattern[] found = findNearPrediction(image, pureBarcode);
+    if (found == null) {
+      reset();
+      return null;
+    }
+    ResultPointCallback resultPointCallback = hints == null ? null :
+        (ResultPointCallback) hints.get(DecodeHintType.NEED_RESULT_POINT_CALLBACK);
+    if (resultPointCallback != null) {
+      for (FinderPattern pattern : found) {
+        resultPointCallback.foundPossibleResultPoint(pattern);
+      }
+    }
+    ResultPoint.orderBestPatterns(found);
+    return remember(new FinderPatternInfo(found));
+  }
+
+  /**
+   * Scans a whole frame for the finder patterns of a code, like {@link MyDetector#detect(Map)}
+   * does, and starts tracking it.
+   *
+   * @param image binarized frame
+   * @param hints optional hints to detector
+   * @throws NotFoundException if no code is found
+   */
+  public FinderPatternInfo find(BitVectorMatrix image, Map<DecodeHintType,?> hints)
+      throws NotFoundException {
+    reset();
+    ResultPointCallback resultPointCallback = hints == null ? null :
+        (ResultPointCallback) hints.get(DecodeHintType.NEED_RESULT_POINT_CALLBACK);
+    return remember(new MyFinderPatternFinder(image, resultPointCallback).find(hints));
+  }
+
+  private FinderPatternInfo remember(FinderPatternInfo info) {
+    previous = last;
+    last = new FinderPattern[] {info.getBottomLeft(), info.getTopLeft(), info.getTopRight()};
+    return info;
+  }
+
+  /**
+   * @return the three patterns of the tracked code, in the order of the last ones, or null if
+   *  one of them is not within its window
+   */
+  private FinderPattern[] findNearPrediction(BitVectorMatrix image, boolean pureBarcode) {
+    FinderPattern[] found = new FinderPattern[3];
+    for (int p = 0; p < 3; p++) {
+      FinderPattern pattern = last[p];
+      float moduleSize = pattern.getEstimatedModuleSize();
+      float predictedX = pattern.getX();
+      float predictedY = pattern.getY();
+      if (previous != null) {
+        // Constant velocity
+        predictedX += pattern.getX() - previous[p].getX();
+        predictedY += pattern.getY() - previous[p].getY();
+      }
+      // Half the pattern, plus the drift
+      float radius = (3.5f + maxDrift) * moduleSize;
+      int left = Math.max(0, (int) (predictedX - radius));
+      int right = Math.min(image.getWidth(), (int) (predictedX + radius) + 1);
+      int top = Math.max(0, (int) (predictedY - radius));
+      int bottom = Math.min(image.getHeight(), (int) (predictedY + radius) + 1);
+      if (left >= right || top >= bottom) {
+        return null;
+      }
+
+      MyFinderPatternFinder finder = new MyFinderPatternFinder(image);
+      finder.findCentersInRegion(left, right, top, bottom, WINDOW_ROW_SKIP, WINDOW_ROW_SKIP, pureBarcode);
+      found[p] = closest(finder.getPossibleCenters(), predictedX, predictedY, moduleSize, radius);
+      if (found[p] == null) {
+        return null;
+      }
+      // Windows overlap when the code is small, but two patterns cannot be the same
+      for (int other = 0; other < p; other++) {
+        if (ResultPoint.distance(found[p], found[other]) < moduleSize) {
+          return null;
+        }
+      }
+    }
+    return found;
+  }
+
+  /**
+   * @return the pattern nearest to (x, y), within radius, whose module size is within a factor
+   *  of 2 of moduleSize, or null
+   */
+  private static FinderPattern closest(List<FinderPattern> centers,
+                                       float x,
+                                       float y,
+                                       float moduleSize,
+                                       float radius) {
+    FinderPattern closest = null;
+    float closestDistance = radius;
+    for (FinderPattern center : centers) {
+      float size = center.getEstimatedModuleSize();
+      if (size < moduleSize / 2.0f || size > moduleSize * 2.0f) {
+        continue;
+      }
+      float distance = MathUtils.distance(center.getX(), center.getY(), x, y);
+      if (distance <= closestDistance) {
+        closest = center;
+        closestDistance = distance;
+      }
+    }
+    return closest;
+  }
+
+}
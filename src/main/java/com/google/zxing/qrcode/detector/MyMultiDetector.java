@@ -0,0 +1,80 @@
+package main.java.com.google.zxing.qrcode.detector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import main.java.com.google.zxing.DecodeHintType;
+import main.java.com.google.zxing.NotFoundException;
+import main.java.com.google.zxing.ReaderException;
+import main.java.com.google.zxing.ResultPointCallback;
+import main.java.com.google.zxing.common.BitVectorMatrix;
+import main.java.com.google.zxing.common.MyDetectorResult;
+import main.java.com.google.zxing.common.MyGridSampler;
+
+/**
+ * <p>Encapsulates logic that can detect one or more HCCQR Codes in an image, even if the QR Code
+ * is rotated or skewed, or partially obscured.</p>
+ *
+ * <p>Detection is split in two steps, so that the codes can be sampled in parallel: one scan of
+ * the image for the plausible triples of finder patterns ({@link #findCandidates(Map)}), then the
+ * sampling of each triple ({@link #processFinderPatternInfo(FinderPatternInfo)}), which may run
+ * concurrently once the candidates have been found.</p>
+ *
+ * @author Sean Owen
+ * @author Hannes Erven
+ */
+public final class MyMultiDetector extends MyDetector {
+
+  private static final MyDetectorResult[] EMPTY_DETECTOR_RESULTS = new MyDetectorResult[0];
+
+  public MyMultiDetector(BitVectorMatrix image) {
+    this(image, null);
+  }
+
+  /**
+   * @param image binarized image to search
+   * @param gridSampler sampler to use, or null for {@link MyGridSampler#getInstance()}. It must
+   *  be thread-safe if the candidates are sampled concurrently
+   */
+  public MyMultiDetector(BitVectorMatrix image, MyGridSampler gridSampler) {
+    // Every code gets its own sampled matrix, as several may be in use at once
+    super(image, gridSampler, null);
+  }
+
+  /**
+   * @param hints optional hints to detector
+   * @return the plausible triples of finder patterns, best-fitting first
+   * @throws NotFoundException if no plausible triple exists
+   */
+  public FinderPatternInfo[] findCandidates(Map<DecodeHintType,?> hints) throws NotFoundException {
+    ResultPointCallback resultPointCallback = hints == null ? null :
+        (ResultPointCallback) hints.get(DecodeHintType.NEED_RESULT_POINT_CALLBACK);
+    setResultPointCallback(resultPointCallback);
+    MyMultiFinderPatternFinder finder = new MyMultiFinderPatternFinder(getImage(), resultPointCallback);
+    return finder.findMulti(hints);
+  }
+
+  /**
+   * Samples every candidate in turn.
+   *
+   * @return the sampled codes, skipping the candidates which could not be sampled
+   * @throws NotFoundException if no candidate could be sampled
+   */
+  public MyDetectorResult[] detectMulti(Map<DecodeHintType,?> hints) throws NotFoundException {
+    FinderPatternInfo[] infos = findCandidates(hints);
+    List<MyDetectorResult> result = new ArrayList<>();
+    for (FinderPatternInfo info : infos) {
+      try {
+        result.add(processFinderPatternInfo(info));
+      } catch (ReaderException e) {
+        // ignore
+      }
+    }
+    if (result.isEmpty()) {
+      throw NotFoundException.getNotFoundInstance();
+    }
+    return result.toArray(EMPTY_DETECTOR_RESULTS);
+  }
+
+}
@@ -0,0 +1,203 @@
+package main.java.com.google.zxing.qrcode.detector;
+
+import main.java.com.google.zxing.DecodeHintType;
+import main.java.com.google.zxing.NotFoundException;
+import main.java.com.google.zxing.ResultPoint;
+import main.java.com.google.zxing.ResultPointCallback;
+import main.java.com.google.zxing.common.BitVectorMatrix;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>This class attempts to find finder patterns in an image showing several HCCQR Codes. Unlike
+ * {@link MyFinderPatternFinder}, which stops as soon as it has three confirmed patterns and keeps
+ * the best three, it scans the whole image once and groups all the patterns into the triples which
+ * could be the three corners of a code.</p>
+ *
+ * <p>A triple is plausible if its patterns have about the same module size and form a right
+ * isosceles triangle whose sides hold between {@link #MIN_MODULE_COUNT_PER_EDGE} and
+ * {@link #MAX_MODULE_COUNT_PER_EDGE} modules. A pattern may belong to several triples (e.g. the
+ * top-left corners of three codes laid out in a grid), which then fail to decode.</p>
+ *
+ * <p>This class is not thread-safe. Each thread must allocate its own object.</p>
+ *
+ * @author Sean Owen
+ * @author Hannes Erven
+ */
+public final class MyMultiFinderPatternFinder extends MyFinderPatternFinder {
+
+  private static final FinderPatternInfo[] EMPTY_RESULT_ARRAY = new FinderPatternInfo[0];
+
+  // Modules between the centers of two finder patterns of the largest and smallest codes, with
+  // some slack for skew
+  private static final float MAX_MODULE_COUNT_PER_EDGE = 180;
+  private static final float MIN_MODULE_COUNT_PER_EDGE = 9;
+
+  // Two patterns belong to the same code only if their module sizes differ by less than
+  // DIFF_MODSIZE_CUTOFF_PERCENT of the smaller one or DIFF_MODSIZE_CUTOFF pixels
+  private static final float DIFF_MODSIZE_CUTOFF_PERCENT = 0.05f;
+  private static final float DIFF_MODSIZE_CUTOFF = 0.5f;
+
+  // Largest relative difference between the two sides of the triangle, and between its
+  // hypotenuse and the one given by Pythagoras
+  private static final float MAX_EDGE_VARIANCE = 0.1f;
+
+  /**
+   * Orders by decreasing estimated module size.
+   */
+  private static final class ModuleSizeComparator implements Comparator<FinderPattern>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public int compare(FinderPattern center1, FinderPattern center2) {
+      float value = center2.getEstimatedModuleSize() - center1.getEstimatedModuleSize();
+      return value < 0.0 ? -1 : value > 0.0 ? 1 : 0;
+    }
+  }
+
+  public MyMultiFinderPatternFinder(BitVectorMatrix image) {
+    super(image);
+  }
+
+  public MyMultiFinderPatternFinder(BitVectorMatrix image, ResultPointCallback resultPointCallback) {
+    super(image, resultPointCallback);
+  }
+
+  /**
+   * Scans every {@link #MIN_SKIP}-th row of the image, since the codes may be small compared with
+   * it, and collects every finder pattern found. Only the candidate region of a lazily binarized
+   * image is scanned, see {@link #searchRegion(BitVectorMatrix)}.
+   *
+   * @return the plausible triples of patterns, each ordered like {@link FinderPatternInfo} expects
+   * @throws NotFoundException if no plausible triple exists
+   */
+  public FinderPatternInfo[] findMulti(Map<DecodeHintType,?> hints) throws NotFoundException {
+    boolean pureBarcode = hints != null && hints.containsKey(DecodeHintType.PURE_BARCODE);
+    int[] region = searchRegion(getImage());
+    findCentersInRegion(region[0], region[0] + region[2], region[1], region[1] + region[3],
+        MIN_SKIP, MIN_SKIP, pureBarcode);
+
+    FinderPattern[][] patternInfo = selectMultipleBestPatterns();
+    List<FinderPatternInfo> result = new ArrayList<>(patternInfo.length);
+    for (FinderPattern[] pattern : patternInfo) {
+      ResultPoint.orderBestPatterns(pattern);
+      result.add(new FinderPatternInfo(pattern));
+    }
+    return result.isEmpty() ? EMPTY_RESULT_ARRAY : result.toArray(EMPTY_RESULT_ARRAY);
+  }
+
+  /**
+   * @return the plausible triples of finder patterns, best-fitting first
+   * @throws NotFoundException if no plausible triple exists
+   */
+  private FinderPattern[][] selectMultipleBestPatterns() throws NotFoundException {
+    List<FinderPattern> possibleCenters = getPossibleCenters();
+    int size = possibleCenters.size();
+
+    if (size < 3) {
+      // Couldn't find enough finder patterns
+      throw NotFoundException.getNotFoundInstance();
+    }
+
+    if (size == 3) {
+      return new FinderPattern[][] {
+          {possibleCenters.get(0), possibleCenters.get(1), possibleCenters.get(2)}
+      };
+    }
+
+    // Sort by estimated module size to speed up the upcoming checks: once the module sizes of two
+    // patterns differ too much, so do those of every pattern after them
+    Collections.sort(possibleCenters, new ModuleSizeComparator());
+
+    final List<FinderPattern[]> results = new ArrayList<>();
+    final List<Float> variances = new ArrayList<>();
+
+    for (int i1 = 0; i1 < size - 2; i1++) {
+      FinderPattern p1 = possibleCenters.get(i1);
+
+      for (int i2 = i1 + 1; i2 < size - 1; i2++) {
+        FinderPattern p2 = possibleCenters.get(i2);
+        if (!similarModuleSize(p1, p2)) {
+          break;
+        }
+
+        for (int i3 = i2 + 1; i3 < size; i3++) {
+          FinderPattern p3 = possibleCenters.get(i3);
+          if (!similarModuleSize(p2, p3)) {
+            break;
+          }
+
+          FinderPattern[] test = {p1, p2, p3};
+          ResultPoint.orderBestPatterns(test);
+
+          // Calculate the distances: a = topleft-bottomleft, b=topleft-topright, c = diagonal
+          FinderPatternInfo info = new FinderPatternInfo(test);
+          float dA = ResultPoint.distance(info.getTopLeft(), info.getBottomLeft());
+          float dC = ResultPoint.distance(info.getTopRight(), info.getBottomLeft());
+          float dB = ResultPoint.distance(info.getTopLeft(), info.getTopRight());
+
+          // Check the sizes
+          float estimatedModuleCount = (dA + dB) / (p1.getEstimatedModuleSize() * 2.0f);
+          if (estimatedModuleCount > MAX_MODULE_COUNT_PER_EDGE ||
+              estimatedModuleCount < MIN_MODULE_COUNT_PER_EDGE) {
+            continue;
+          }
+
+          // Calculate the difference of the edge lengths in percent
+          float vABBC = Math.abs((dA - dB) / Math.min(dA, dB));
+          if (vABBC >= MAX_EDGE_VARIANCE) {
+            continue;
+          }
+
+          // Calculate the diagonal length by assuming a right angle at topleft
+          float dCpy = (float) Math.sqrt((double) dA * dA + (double) dB * dB);
+          // Compare to the real distance in %
+          float vPyC = Math.abs((dC - dCpy) / Math.min(dC, dCpy));
+          if (vPyC >= MAX_EDGE_VARIANCE) {
+            continue;
+          }
+
+          // All tests passed!
+          results.add(test);
+          variances.add(vABBC + vPyC);
+        }
+      }
+    }
+
+    if (results.isEmpty()) {
+      // Nothing found!
+      throw NotFoundException.getNotFoundInstance();
+    }
+
+    // Best-fitting triangles first, so that callers which stop early try real codes first
+    Integer[] order = new Integer[results.size()];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer a, Integer b) {
+        return variances.get(a).compareTo(variances.get(b));
+      }
+    });
+    FinderPattern[][] sorted = new FinderPattern[order.length][];
+    for (int i = 0; i < order.length; i++) {
+      sorted[i] = results.get(order[i]);
+    }
+    return sorted;
+  }
+
+  private static boolean similarModuleSize(FinderPattern larger, FinderPattern smaller) {
+    float difference = larger.getEstimatedModuleSize() - smaller.getEstimatedModuleSize();
+    return difference <= DIFF_MODSIZE_CUTOFF
+        || difference / smaller.getEstimatedModuleSize() < DIFF_MODSIZE_CUTOFF_PERCENT;
+  }
+
+}
@@ -0,0 +1,150 @@
+package main.java.com.google.zxing.qrcode.detector;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import main.java.com.google.zxing.DecodeHintType;
+import main.java.com.google.zxing.NotFoundException;
+import main.java.com.google.zxing.ResultPoint;
+import main.java.com.google.zxing.ResultPointCallback;
+import main.java.com.google.zxing.common.BitVectorMatrix;
+
+/**
+ * <p>Like {@link MyFinderPatternFinder}, but scans horizontal bands of the image concurrently on
+ * a {@link ForkJoinPool}, so that all the cores search a large frame.</p>
+ *
+ * <p>Each band is scanned by a finder of its own, the way {@link MyFinderPatternFinder#find(Map)}
+ * scans the whole image: every few rows until it confirms a center, every other row after that.
+ * As the bands cannot skip ahead or stop once three centers are confirmed, the whole image, or
+ * the candidate region of a lazily binarized one, is always scanned. The patterns found by the
+ * bands are merged, those which {@link FinderPattern#aboutEquals(float, float, float) about equal}
+ * one another combined, before the best three are selected.</p>
+ *
+ * <p>Bands hold at least {@link #MIN_BAND_PIXELS} pixels, so that small images are scanned on
+ * the calling thread. The result point callback, if any, is told about the merged patterns
+ * only, on the calling thread.</p>
+ *
+ * @author Francesco Benedetto
+ *
+ */
+public final class MyParallelFinderPatternFinder extends MyFinderPatternFinder {
+
+  private static final int MIN_BAND_PIXELS = 1 << 18;
+  // Rows scanned once a band has confirmed a center, as in MyFinderPatternFinder.find()
+  private static final int CONFIRMED_SKIP = 2;
+
+  private final ResultPointCallback resultPointCallback;
+  private final ForkJoinPool pool;
+
+  /**
+   * @param image image to search
+   * @param resultPointCallback told about the patterns found, or null
+   * @param pool runs the bands, or null to scan them in turn on the calling thread
+   */
+  public MyParallelFinderPatternFinder(BitVectorMatrix image,
+                                       ResultPointCallback resultPointCallback,
+                                       ForkJoinPool pool) {
+    super(image);
+    this.resultPointCallback = resultPointCallback;
+    this.pool = pool;
+  }
+
+  /**
+   * @return the three best finder patterns of the image
+   * @throws NotFoundException if three such patterns do not exist
+   */
+  public FinderPatternInfo findParallel(Map<DecodeHintType,?> hints) throws NotFoundException {
+    boolean tryHarder = hints != null && hints.containsKey(DecodeHintType.TRY_HARDER);
+    boolean pureBarcode = hints != null && hints.containsKey(DecodeHintType.PURE_BARCODE);
+    BitVectorMatrix image = getImage();
+    int[] region = searchRegion(image);
+    int iSkip = initialRowSkip(region[3], tryHarder);
+
+    // Bands start on a multiple of iSkip, so that they scan the rows a single band would
+    int bandHeight = Math.max(1, MIN_BAND_PIXELS / Math.max(1, region[2]) / iSkip) * iSkip;
+    Band band = new Band(image, region[0], region[0] + region[2], region[1], region[1] + region[3],
+        iSkip, bandHeight, pureBarcode);
+    List<FinderPattern> centers = pool == null || region[3] <= bandHeight ? band.compute() : pool.invoke(band);
+
+    List<FinderPattern> possibleCenters = getPossibleCenters();
+    possibleCenters.addAll(centers);
+    if (resultPointCallback != null) {
+      for (FinderPattern center : centers) {
+        resultPointCallback.foundPossibleResultPoint(center);
+      }
+    }
+
+    FinderPattern[] patternInfo = selectBestPatterns();
+    ResultPoint.orderBestPatterns(patternInfo);
+
+    return new FinderPatternInfo(patternInfo);
+  }
+
+  /**
+   * Merges the patterns of a band into those of another.
+   */
+  private static void mergeCenters(List<FinderPattern> into, List<FinderPattern> from) {
+    int size = into.size();
+    for (FinderPattern center : from) {
+      boolean found = false;
+      // Patterns found twice within one band have been combined already
+      for (int index = 0; index < size; index++) {
+        FinderPattern other = into.get(index);
+        if (other.aboutEquals(center.getEstimatedModuleSize(), center.getY(), center.getX())) {
+          into.set(index, other.combineEstimate(center));
+          found = true;
+          break;
+        }
+      }
+      if (!found) {
+        into.add(center);
+      }
+    }
+  }
+
+  private static final class Band extends RecursiveTask<List<FinderPattern>> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final BitVectorMatrix image;
+    private final int fromJ;
+    private final int toJ;
+    private final int fromI;
+    private final int toI;
+    private final int iSkip;
+    private final int bandHeight;
+    private final boolean pureBarcode;
+
+    Band(BitVectorMatrix image, int fromJ, int toJ, int fromI, int toI, int iSkip, int bandHeight,
+        boolean pureBarcode) {
+      this.image = image;
+      this.fromJ = fromJ;
+      this.toJ = toJ;
+      this.fromI = fromI;
+      this.toI = toI;
+      this.iSkip = iSkip;
+      this.bandHeight = bandHeight;
+      this.pureBarcode = pureBarcode;
+    }
+
+    @Override
+    protected List<FinderPattern> compute() {
+      // Split in the middle, on a multiple of iSkip
+      int middle = fromI + (toI - fromI) / (2 * iSkip) * iSkip;
+      if (toI - fromI <= bandHeight || middle <= fromI) {
+        MyFinderPatternFinder finder = new MyFinderPatternFinder(image);
+        finder.findCentersInRegion(fromJ, toJ, fromI, toI, iSkip, CONFIRMED_SKIP, pureBarcode);
+        return finder.getPossibleCenters();
+      }
+      Band top = new Band(image, fromJ, toJ, fromI, middle, iSkip, bandHeight, pureBarcode);
+      Band bottom = new Band(image, fromJ, toJ, middle, toI, iSkip, bandHeight, pureBarcode);
+      bottom.fork();
+      List<FinderPattern> centers = top.compute();
+      mergeCenters(centers, bottom.join());
+      return centers;
+    }
+  }
+
+}
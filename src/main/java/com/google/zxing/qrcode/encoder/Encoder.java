@@ -20,7 +20,6 @@ import main.java.com.google.zxing.EncodeHintType;
 import main.java.com.google.zxing.WriterException;
 import main.java.com.google.zxing.common.BitArray;
 import main.java.com.google.zxing.common.CharacterSetECI;
-import main.java.com.google.zxing.common.reedsolomon.GenericGF;
 import main.java.com.google.zxing.common.reedsolomon.ReedSolomonEncoder;
 import main.java.com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
 import main.java.com.google.zxing.qrcode.decoder.Mode;
@@ -430,7 +429,7 @@ public final class Encoder {
     for (int i = 0; i < numDataBytes; i++) {
       toEncode[i] = dataBytes[i] & 0xFF;
     }
-    new ReedSolomonEncoder(GenericGF.QR_CODE_FIELD_256).encode(toEncode, numEcBytesInBlock);
+    ReedSolomonEncoder.QR_CODE.encode(toEncode, numEcBytesInBlock);
 
     byte[] ecBytes = new byte[numEcBytesInBlock];
     for (int i = 0; i < numEcBytesInBlock; i++) {
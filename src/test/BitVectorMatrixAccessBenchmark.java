@@ -0,0 +1,81 @@
+package test;
+import java.util.Random;
+
+import main.java.com.google.zxing.common.BitVectorMatrix;
+
+/**
+ * Times the ways of reading every module of a {@link BitVectorMatrix}: the allocating
+ * {@link BitVectorMatrix#get(int, int)}, the packed {@link BitVectorMatrix#getColorIndex(int, int)}
+ * and whole words of each plane with {@link BitVectorMatrix#getRowWords(int, int, int[])}.
+ */
+public class BitVectorMatrixAccessBenchmark {
+
+	private static final int DIMENSION = 2000;
+	private static final int WARMUP_ROUNDS = 10;
+	private static final int ROUNDS = 20;
+
+	public static void main(String[] args) {
+		Random random = new Random(42);
+		BitVectorMatrix matrix = new BitVectorMatrix(DIMENSION);
+		for (int y = 0; y < DIMENSION; y++) {
+			for (int x = 0; x < DIMENSION; x++) {
+				matrix.setColorIndex(x, y, random.nextInt(4));
+			}
+		}
+
+		String[] report = new String[3];
+		report[0] = "get(): " + format(time(matrix, 0));
+		report[1] = "getColorIndex(): " + format(time(matrix, 1));
+		report[2] = "getRowWords(): " + format(time(matrix, 2));
+		for (String line : report) {
+			System.out.println(line);
+		}
+	}
+
+	private static String format(long picosPerModule) {
+		return (picosPerModule / 1000) + "." + (picosPerModule % 1000 / 100) + " ns/module";
+	}
+
+	// Average time per module, in picoseconds. The black modules are counted, so that the reads
+	// cannot be optimized away
+	private static long time(BitVectorMatrix matrix, int method) {
+		int[] plane0 = new int[matrix.getRowSize()];
+		int[] plane1 = new int[matrix.getRowSize()];
+		long total = 0;
+		long black = 0;
+		for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+			long start = System.nanoTime();
+			for (int y = 0; y < DIMENSION; y++) {
+				if (method == 2) {
+					matrix.getRowWords(0, y, plane0);
+					matrix.getRowWords(1, y, plane1);
+					for (int x = 0; x < DIMENSION; x++) {
+						int shift = x & 0x1f;
+						black += (plane0[x >> 5] >>> shift) & (plane1[x >> 5] >>> shift) & 1;
+					}
+				} else if (method == 1) {
+					for (int x = 0; x < DIMENSION; x++) {
+						if (matrix.getColorIndex(x, y) == BitVectorMatrix.BLACK) {
+							black++;
+						}
+					}
+				} else {
+					for (int x = 0; x < DIMENSION; x++) {
+						boolean[] bits = matrix.get(x, y);
+						if (bits[0] && bits[1]) {
+							black++;
+						}
+					}
+				}
+			}
+			if (round >= WARMUP_ROUNDS) {
+				total += System.nanoTime() - start;
+			}
+		}
+		if (black < 0) {
+			System.out.println(black);
+		}
+		return total * 1000 / ((long) ROUNDS * DIMENSION * DIMENSION);
+	}
+
+}
@@ -47,16 +47,16 @@ public static void main (String agrs[]) {
 			
 			for (int i = 0; i < width; i++) {
 				for (int j = 0; j < width; j++) {
-					boolean[] test = bitVectorMatrix.get(i, j);
-					if(test[0] && test[1]) {
+					int color = bitVectorMatrix.getColorIndex(i, j);
+					if (color == BitVectorMatrix.BLACK) {
 						graphics.setColor(Color.BLACK);
 						graphics.fillRect(i, j, 1, 1);
 					}
-					else if (test[0] && !test[1]) {
+					else if (color == BitVectorMatrix.RED) {
 						graphics.setColor(red);
 						graphics.fillRect(i, j, 1, 1);
 					}
-					else if (!test[0] && test[1]) {
+					else if (color == BitVectorMatrix.GREEN) {
 						graphics.setColor(green);
 						graphics.fillRect(i, j, 1, 1);
 					}
@@ -27,13 +27,7 @@ public class RGBTest {
 				System.out.println("row-element ("+i+") = "+row[i]);
 			}*/
 			
-			int[][] palette = image.getPalette();
-			for (int i = 0; i < 4; i++) {
-				for (int j = 0; j < 3; j++) {
-					System.out.print(palette[i][j]+" ");
-				}
-				System.out.println();
-			}
+			System.out.println(image.getPalette());
 			
 			RGBHybridBinarizer rgb = new RGBHybridBinarizer(image);
 			
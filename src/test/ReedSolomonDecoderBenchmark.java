@@ -0,0 +1,96 @@
+package test;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+
+import main.java.com.google.zxing.common.reedsolomon.GF256ReedSolomonDecoder;
+import main.java.com.google.zxing.common.reedsolomon.GenericGF;
+import main.java.com.google.zxing.common.reedsolomon.ReedSolomonDecoder;
+import main.java.com.google.zxing.common.reedsolomon.ReedSolomonEncoder;
+import main.java.com.google.zxing.common.reedsolomon.ReedSolomonException;
+
+/**
+ * Times {@link ReedSolomonDecoder} against {@link GF256ReedSolomonDecoder} (Euclidean and
+ * Berlekamp-Massey) on blocks like the largest ones of an HCC QR Code: clean blocks, and blocks
+ * with as many errors as can be corrected.
+ */
+public class ReedSolomonDecoderBenchmark {
+
+	private static final int BLOCK_LENGTH = 150;
+	private static final int EC_CODEWORDS = 30;
+	private static final int BLOCKS = 2000;
+	private static final int WARMUP_ROUNDS = 20;
+	private static final int ROUNDS = 50;
+
+	public static void main(String[] args) throws ReedSolomonException {
+		Random random = new Random(42);
+		byte[][] clean = new byte[BLOCKS][];
+		byte[][] corrupted = new byte[BLOCKS][];
+		for (int i = 0; i < BLOCKS; i++) {
+			byte[] block = new byte[BLOCK_LENGTH];
+			int numData = BLOCK_LENGTH - EC_CODEWORDS;
+			for (int j = 0; j < numData; j++) {
+				block[j] = (byte) random.nextInt(256);
+			}
+			ReedSolomonEncoder.QR_CODE.encode(block, 0, numData, block, numData, EC_CODEWORDS);
+			clean[i] = block;
+			corrupted[i] = block.clone();
+			for (int j = 0; j < EC_CODEWORDS / 2; j++) {
+				corrupted[i][random.nextInt(BLOCK_LENGTH)] ^= (byte) (1 + random.nextInt(255));
+			}
+		}
+
+		// ReedSolomonDecoder prints while decoding
+		PrintStream out = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+		}));
+		ReedSolomonDecoder zxing = new ReedSolomonDecoder(GenericGF.QR_CODE_FIELD_256);
+		GF256ReedSolomonDecoder euclidean = GF256ReedSolomonDecoder.QR_CODE;
+		GF256ReedSolomonDecoder berlekampMassey = new GF256ReedSolomonDecoder(GenericGF.QR_CODE_FIELD_256, true);
+		String[] report = new String[6];
+		report[0] = "ReedSolomonDecoder, clean: " + time(zxing, null, clean);
+		report[1] = "ReedSolomonDecoder, errors: " + time(zxing, null, corrupted);
+		report[2] = "GF256ReedSolomonDecoder (Euclidean), clean: " + time(null, euclidean, clean);
+		report[3] = "GF256ReedSolomonDecoder (Euclidean), errors: " + time(null, euclidean, corrupted);
+		report[4] = "GF256ReedSolomonDecoder (Berlekamp-Massey), clean: " + time(null, berlekampMassey, clean);
+		report[5] = "GF256ReedSolomonDecoder (Berlekamp-Massey), errors: " + time(null, berlekampMassey, corrupted);
+		System.setOut(out);
+		for (String line : report) {
+			System.out.println(line);
+		}
+	}
+
+	// Average time per block, in nanoseconds, like ReedSolomonDecoder's callers: copying to ints
+	// and back
+	private static long time(ReedSolomonDecoder zxing, GF256ReedSolomonDecoder decoder, byte[][] blocks)
+			throws ReedSolomonException {
+		byte[] block = new byte[BLOCK_LENGTH];
+		long total = 0;
+		for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+			long start = System.nanoTime();
+			for (byte[] original : blocks) {
+				System.arraycopy(original, 0, block, 0, BLOCK_LENGTH);
+				if (decoder != null) {
+					decoder.decode(block, EC_CODEWORDS);
+				} else {
+					int[] ints = new int[BLOCK_LENGTH];
+					for (int i = 0; i < BLOCK_LENGTH; i++) {
+						ints[i] = block[i] & 0xFF;
+					}
+					zxing.decode(ints, EC_CODEWORDS);
+					for (int i = 0; i < BLOCK_LENGTH; i++) {
+						block[i] = (byte) ints[i];
+					}
+				}
+			}
+			if (round >= WARMUP_ROUNDS) {
+				total += System.nanoTime() - start;
+			}
+		}
+		return total / ((long) ROUNDS * blocks.length);
+	}
+
+}